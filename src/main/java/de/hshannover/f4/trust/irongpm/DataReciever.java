@@ -38,27 +38,31 @@
  */
 package de.hshannover.f4.trust.irongpm;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.jgrapht.Graphs;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
-import de.hshannover.f4.trust.irongpm.rest.IfmapGraphJsonAdapter;
+import de.hshannover.f4.trust.irongpm.rest.ChangeTimestampIndex;
+import de.hshannover.f4.trust.irongpm.rest.GraphFeed;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDelta;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDeltaLog;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDeltaLog.DeltaHandler;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphJsonReader;
+import de.hshannover.f4.trust.irongpm.rest.PollingGraphFeed;
+import de.hshannover.f4.trust.irongpm.rest.StreamingGraphFeed;
 import de.hshannover.f4.trust.irongpm.rest.VisitmetaResource;
+import de.hshannover.f4.trust.irongpm.rest.VisitmetaResource.ResponseHandler;
 
 /**
  * 
@@ -70,13 +74,15 @@ import de.hshannover.f4.trust.irongpm.rest.VisitmetaResource;
 public final class DataReciever {
 
 	private static VisitmetaResource visitmeta;
-	private static GsonBuilder gsob = new GsonBuilder().disableHtmlEscaping();
-	private static Gson gson;
-	private static JsonParser parser = new JsonParser();
+	private static ChangeTimestampIndex changes;
+	private static String restUri;
+	private static boolean rawXml;
+	private static IfmapGraphJsonReader graphReader = new IfmapGraphJsonReader();
 	private static boolean isInitialized = false;
 	private static final Logger LOGGER = Logger.getLogger(DataReciever.class);
 
 	private static final String RESTPOSTFIX = "graph";
+	private static final String STREAMPATH = "stream";
 
 	/**
 	 * Cause security.
@@ -88,11 +94,24 @@ public final class DataReciever {
 	 * Initializes the shared components.
 	 */
 	public static void init() {
-		String restUri = IronGpm.getConfig().getString("dataservice.url", "http://localhost:8000") + "/"
+		restUri = IronGpm.getConfig().getString("dataservice.url", "http://localhost:8000") + "/"
 				+ IronGpm.getConfig().getString("dataservice.connection", "localMAPServer") + "/" + RESTPOSTFIX + "/";
-		visitmeta = new VisitmetaResource(restUri, IronGpm.getConfig().getBoolean("dataservice.rawxml", true));
-		gsob.registerTypeAdapter(IfmapGraphImpl.class, new IfmapGraphJsonAdapter());
-		gson = gsob.create();
+		rawXml = IronGpm.getConfig().getBoolean("dataservice.rawxml", true);
+		visitmeta = new VisitmetaResource(restUri, rawXml);
+		visitmeta.setTimeouts(IronGpm.getConfig().getInt("dataservice.http.connecttimeout", 2000),
+				IronGpm.getConfig().getInt("dataservice.http.readtimeout", 30000));
+		visitmeta.setRetryDelays(IronGpm.getConfig().getInt("dataservice.http.retry.initialdelay", 500),
+				IronGpm.getConfig().getInt("dataservice.http.retry.maxdelay", 30000));
+		visitmeta.setGzip(IronGpm.getConfig().getBoolean("dataservice.http.gzip", true));
+		visitmeta.setParallelism(IronGpm.getConfig().getInt("dataservice.http.parallel", 4));
+		changes = new ChangeTimestampIndex(visitmeta);
+		List<String> dropped = new ArrayList<>();
+		for (String type : IronGpm.getConfig().getString("dataservice.metadata.droprawdata", "").split(",")) {
+			if (!type.trim().isEmpty()) {
+				dropped.add(type.trim());
+			}
+		}
+		MetadataImpl.setRawDataDropped(dropped);
 		isInitialized = true;
 	}
 
@@ -100,103 +119,142 @@ public final class DataReciever {
 	 * Gets the current graph from the visitmeta dataservice.
 	 * 
 	 * @return The graph of the newest timestamp.
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
 	 */
-	public static IfmapGraphImpl getCurrentGraph() {
+	public static IfmapGraphImpl getCurrentGraph() throws InterruptedException {
 		if (!isInitialized) {
 			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
 			init();
 		}
-		String json = visitmeta.get("current");
-		JsonArray array = parser.parse(json).getAsJsonArray();
-		IfmapGraphImpl graph = new IfmapGraphImpl();
-		for (JsonElement elem : array) {
-			IfmapGraphImpl graphPart = gson.fromJson(elem, IfmapGraphImpl.class);
-			graph.setLastUpdated(graphPart.getLastUpdated());
-			Graphs.addGraph(graph, graphPart);
-		}
+		IfmapGraphImpl graph = visitmeta.get("current", new ResponseHandler<IfmapGraphImpl>() {
+			@Override
+			public IfmapGraphImpl handle(JsonReader reader) throws IOException {
+				IfmapGraphImpl graph = new IfmapGraphImpl();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					IfmapGraphImpl graphPart = graphReader.readGraph(reader);
+					graph.setLastUpdated(graphPart.getLastUpdated());
+					Graphs.addGraph(graph, graphPart);
+				}
+				reader.endArray();
+				return graph;
+			}
+		});
 		LOGGER.debug("Recieved current graph: " + graph);
 		return graph;
 	}
 
 	/**
-	 * @param timestamp
-	 * @return Whether a newer version of the graph (newer than the provided timestamp) is available
+	 * Creates the feed delivering the changes of the graph, as configured by <i>dataservice.feed</i>: "poll" requests
+	 * the changes periodically, "stream" receives the deltas pushed by the dataservice.
+	 * 
+	 * @return The feed
 	 */
-	public static boolean isUpdateAvailable(Long timestamp) {
+	public static GraphFeed createFeed() {
 		if (!isInitialized) {
 			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
 			init();
 		}
-		String json = visitmeta.get("changes");
-		JsonObject object = parser.parse(json).getAsJsonObject();
+		String feed = IronGpm.getConfig().getString("dataservice.feed", "poll");
+		if ("stream".equals(feed)) {
+			StreamingGraphFeed stream = new StreamingGraphFeed(restUri + STREAMPATH, rawXml);
+			stream.setTimeouts(IronGpm.getConfig().getInt("dataservice.http.connecttimeout", 2000),
+					IronGpm.getConfig().getInt("dataservice.http.readtimeout", 30000));
+			stream.setRetryDelays(IronGpm.getConfig().getInt("dataservice.http.retry.initialdelay", 500),
+					IronGpm.getConfig().getInt("dataservice.http.retry.maxdelay", 30000));
+			return stream;
+		}
+		if (!"poll".equals(feed)) {
+			LOGGER.warn("Unknown dataservice feed '" + feed + "'. Using poll instead.");
+		}
+		return new PollingGraphFeed(visitmeta, IronGpm.getConfig().getInt("dataservice.catchup.maxspan", 100));
+	}
 
-		@SuppressWarnings("unchecked")
-		Map<String, String> changesMap = gson.fromJson(object, Map.class);
-		if (changesMap.isEmpty()) {
-			return false;
+	/**
+	 * @return The timestamp of the newest version of the graph known to the dataservice, null if there is none
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
+	 */
+	public static Long getNewestTimestamp() throws InterruptedException {
+		if (!isInitialized) {
+			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
+			init();
 		}
-		List<String> changeTimestamps = new ArrayList<String>(changesMap.keySet());
-		Collections.sort(changeTimestamps);
-		int index = changeTimestamps.indexOf(timestamp.toString());
-		return index < changeTimestamps.size() - 1;
+		changes.refresh();
+		return changes.getNewest();
 	}
 
 	/**
 	 * @param timestamp
-	 * @return The timestamp of the next newer version of the graph
+	 * @return Whether a newer version of the graph (newer than the provided timestamp) is available
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
 	 */
-	public static Long getNextTimestamp(Long timestamp) {
+	public static boolean isUpdateAvailable(Long timestamp) throws InterruptedException {
 		if (!isInitialized) {
 			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
 			init();
 		}
-		String json = visitmeta.get("changes");
-		JsonObject object = parser.parse(json).getAsJsonObject();
-
-		@SuppressWarnings("unchecked")
-		Map<String, String> changesMap = gson.fromJson(object, Map.class);
-		List<String> changeTimestamps = new ArrayList<String>(changesMap.keySet());
-		Collections.sort(changeTimestamps);
+		changes.refresh();
+		changes.prune(timestamp);
+		return changes.next(timestamp) != null;
+	}
 
-		int index = changeTimestamps.indexOf(timestamp.toString());
-		if (index == -1) {
-			return Long.valueOf(changeTimestamps.get(0));
+	/**
+	 * @param timestamp
+	 * @return The timestamp of the next newer version of the graph
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
+	 */
+	public static Long getNextTimestamp(Long timestamp) throws InterruptedException {
+		if (!isInitialized) {
+			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
+			init();
 		}
-		if (isUpdateAvailable(timestamp)) {
-			return Long.valueOf(changeTimestamps.get(index + 1));
-		} else {
-			return timestamp;
+		Long next = changes.next(timestamp);
+		if (next == null && changes.refresh() > 0) {
+			next = changes.next(timestamp);
 		}
+		return next == null ? timestamp : next;
 	}
 
 	/**
 	 * @return The initial graph from the visitmeta dataservice
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
 	 */
-	public static IfmapGraphImpl getInitialGraph() {
+	public static IfmapGraphImpl getInitialGraph() throws InterruptedException {
 		if (!isInitialized) {
 			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
 			init();
 		}
-		String json = visitmeta.get("initial");
-		JsonArray array = parser.parse(json).getAsJsonArray();
-		IfmapGraphImpl graph = new IfmapGraphImpl();
-		graph.setLastUpdated((long) 1);
-		for (JsonElement elem : array) {
-			IfmapGraphImpl graphPart = gson.fromJson(elem, IfmapGraphImpl.class);
-			graph.setLastUpdated(graphPart.getLastUpdated());
-			for (IfmapVertex v : graphPart.vertexSet()) {
-				if (!graph.containsVertex(v)) {
-					graph.addVertex(v);
-				}
-			}
-			for (IfmapEdge edge : graphPart.edgeSet()) {
-				if (!graph.containsEdge(edge)) {
-					IfmapVertex source = graphPart.getEdgeSource(edge);
-					IfmapVertex target = graphPart.getEdgeTarget(edge);
-					graph.addEdgeSensitive(source, target, edge);
+		IfmapGraphImpl graph = visitmeta.get("initial", new ResponseHandler<IfmapGraphImpl>() {
+			@Override
+			public IfmapGraphImpl handle(JsonReader reader) throws IOException {
+				IfmapGraphImpl graph = new IfmapGraphImpl();
+				graph.setLastUpdated((long) 1);
+				reader.beginArray();
+				while (reader.hasNext()) {
+					IfmapGraphImpl graphPart = graphReader.readGraph(reader);
+					graph.setLastUpdated(graphPart.getLastUpdated());
+					for (IfmapVertex v : graphPart.vertexSet()) {
+						if (!graph.containsVertex(v)) {
+							graph.addVertex(v);
+						}
+					}
+					for (IfmapEdge edge : graphPart.edgeSet()) {
+						if (!graph.containsEdge(edge)) {
+							IfmapVertex source = graphPart.getEdgeSource(edge);
+							IfmapVertex target = graphPart.getEdgeTarget(edge);
+							graph.addEdgeSensitive(source, target, edge);
+						}
+					}
 				}
+				reader.endArray();
+				return graph;
 			}
-		}
+		});
 		LOGGER.debug("Recieved initial graph: " + graph);
 		return graph;
 	}
@@ -207,8 +265,10 @@ public final class DataReciever {
 	 * @param oldGraph
 	 *            The graph to update
 	 * @return The updated graph (it is the oldGraph object!!)
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
 	 */
-	public static synchronized boolean nextUpdate(IfmapGraphImpl oldGraph) {
+	public static synchronized boolean nextUpdate(IfmapGraphImpl oldGraph) throws InterruptedException {
 		if (!isInitialized) {
 			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
 			init();
@@ -225,8 +285,11 @@ public final class DataReciever {
 	 * @param timestamp
 	 *            The timestamp of the desired version
 	 * @return The updated graph (it is the oldGraph object!!)
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of a request
 	 */
-	public static synchronized boolean updateGraph(IfmapGraphImpl oldGraph, Long timestamp) {
+	public static synchronized boolean updateGraph(IfmapGraphImpl oldGraph, Long timestamp)
+			throws InterruptedException {
 		if (!isInitialized) {
 			LOGGER.warn("DataReciever was not initialized properly. Call init() first! Trying to initilaize now.");
 			init();
@@ -235,41 +298,93 @@ public final class DataReciever {
 			return false;
 		}
 
-		String json = visitmeta.get(oldGraph.getLastUpdated() + "/" + timestamp);
+		// the delta is read completely before it is applied, so a failed request leaves the graph untouched
+		IfmapGraphDelta delta = visitmeta.get(oldGraph.getLastUpdated() + "/" + timestamp,
+				new ResponseHandler<IfmapGraphDelta>() {
+					@Override
+					public IfmapGraphDelta handle(JsonReader reader) throws IOException {
+						return graphReader.readDelta(reader);
+					}
+				});
+
+		applyDelta(oldGraph, delta.withTimestamp(timestamp));
+		return true;
+	}
 
-		JsonObject obj = parser.parse(json).getAsJsonObject();
-		JsonArray updates = (JsonArray) obj.get("updates");
-		JsonArray deletes = (JsonArray) obj.get("deletes");
+	/**
+	 * Replays the deltas of a delta log which continue the version of the graph, e.g. onto a checkpoint. The replay
+	 * stops at the first delta which was not applied to the version the graph has reached, i.e. at a gap in the log.
+	 * 
+	 * @param directory
+	 *            The directory of the delta log
+	 * @param graph
+	 *            The graph to update
+	 * @param until
+	 *            Only deltas up to this timestamp (inclusive) are applied, null for all
+	 * @return The number of applied deltas
+	 * @throws IOException
+	 *             If the log cannot be read
+	 */
+	public static int replay(File directory, final IfmapGraphImpl graph, Long until) throws IOException {
+		if (graph.getLastUpdated() == null) {
+			return 0;
+		}
+		return IfmapGraphDeltaLog.read(directory, graph.getLastUpdated(), until, new DeltaHandler() {
+			@Override
+			public boolean handle(IfmapGraphDelta delta, long previous) {
+				if (previous != graph.getLastUpdated()) {
+					LOGGER.warn("The delta log does not continue version " + graph.getLastUpdated()
+							+ ", stopping the replay.");
+					return false;
+				}
+				applyDelta(graph, delta);
+				return true;
+			}
+		});
+	}
 
-		oldGraph.setLastUpdated(timestamp);
-		for (JsonElement elem : deletes) {
-			IfmapGraphImpl graphPart = gson.fromJson(elem, IfmapGraphImpl.class);
-			for (IfmapEdge e : graphPart.edgeSet()) {
-				IfmapVertex source = graphPart.getEdgeSource(e);
-				IfmapVertex target = graphPart.getEdgeTarget(e);
-				for (IfmapVertex v : oldGraph.vertexSet()) {
-					if (source.equals(v)) {
-						oldGraph.removeMetadataFromVertex(v, source.getMetadata());
+	/**
+	 * Applies a delta of the visitmeta dataservice to the graph.
+	 * 
+	 * @param oldGraph
+	 *            The graph to update
+	 * @param delta
+	 *            The delta to apply; its timestamp (if known) becomes the new version of the graph
+	 */
+	public static synchronized void applyDelta(IfmapGraphImpl oldGraph, IfmapGraphDelta delta) {
+		if (delta.getTimestamp() != null) {
+			oldGraph.setLastUpdated(delta.getTimestamp());
+		}
+		// the whole delta is reported to the change set listeners at once
+		oldGraph.beginUpdate();
+		try {
+			for (IfmapGraphImpl graphPart : delta.getDeletes()) {
+				for (IfmapEdge e : graphPart.edgeSet()) {
+					IfmapVertex source = graphPart.getEdgeSource(e);
+					IfmapVertex target = graphPart.getEdgeTarget(e);
+					IfmapVertex existingSource = oldGraph.findVertex(source);
+					if (existingSource != null) {
+						oldGraph.removeMetadataFromVertex(existingSource, source.getMetadata());
 					}
-					if (target.equals(v)) {
-						oldGraph.removeMetadataFromVertex(v, source.getMetadata());
+					IfmapVertex existingTarget = oldGraph.findVertex(target);
+					if (existingTarget != null) {
+						oldGraph.removeMetadataFromVertex(existingTarget, source.getMetadata());
 					}
-				}
-				oldGraph.removeEdgeSensitive(e);
-				if (oldGraph.containsVertex(source)) {
-					if (oldGraph.edgesOf(source).isEmpty() && source.getMetadata().isEmpty()) {
-						oldGraph.removeVertex(source);
+					oldGraph.removeEdgeSensitive(e);
+					if (oldGraph.containsVertex(source)) {
+						if (oldGraph.edgesOf(source).isEmpty() && source.getMetadata().isEmpty()) {
+							oldGraph.removeVertex(source);
+						}
 					}
-				}
-				if (oldGraph.containsVertex(target)) {
-					if (oldGraph.edgesOf(target).isEmpty() && target.getMetadata().isEmpty()) {
-						oldGraph.removeVertex(target);
+					if (oldGraph.containsVertex(target)) {
+						if (oldGraph.edgesOf(target).isEmpty() && target.getMetadata().isEmpty()) {
+							oldGraph.removeVertex(target);
+						}
 					}
 				}
-			}
-			for (IfmapVertex v : graphPart.vertexSet()) {
-				for (IfmapVertex orig : oldGraph.vertexSet()) {
-					if (orig.equals(v)) {
+				for (IfmapVertex v : graphPart.vertexSet()) {
+					IfmapVertex orig = oldGraph.findVertex(v);
+					if (orig != null) {
 						oldGraph.removeMetadataFromVertex(orig, v.getMetadata());
 						if (oldGraph.edgesOf(orig).isEmpty() && orig.getMetadata().isEmpty()) {
 							oldGraph.removeVertex(orig);
@@ -277,51 +392,30 @@ public final class DataReciever {
 					}
 				}
 			}
-		}
-		for (JsonElement elem : updates) {
-			IfmapGraphImpl graphPart = gson.fromJson(elem, IfmapGraphImpl.class);
-			for (IfmapVertex v : graphPart.vertexSet()) {
-				if (!oldGraph.containsVertex(v)) {
-					oldGraph.addVertex(v);
-				} else {
-					IfmapVertex existingVertex = findVertex(v, oldGraph);
-					for (Metadata m : v.getMetadata()) {
-						if (!existingVertex.getMetadata().contains(m)) {
-							oldGraph.addMetadataToVertex(v, m);
+			for (IfmapGraphImpl graphPart : delta.getUpdates()) {
+				for (IfmapVertex v : graphPart.vertexSet()) {
+					if (!oldGraph.containsVertex(v)) {
+						oldGraph.addVertex(v);
+					} else {
+						IfmapVertex existingVertex = oldGraph.findVertex(v);
+						for (Metadata m : v.getMetadata()) {
+							if (!existingVertex.getMetadata().contains(m)) {
+								oldGraph.addMetadataToVertex(v, m);
+							}
 						}
 					}
 				}
-			}
-			for (IfmapEdge edge : graphPart.edgeSet()) {
-				if (!oldGraph.containsEdge(edge)) {
-					IfmapVertex source = graphPart.getEdgeSource(edge);
-					IfmapVertex target = graphPart.getEdgeTarget(edge);
-					oldGraph.addEdgeSensitive(source, target, edge);
+				for (IfmapEdge edge : graphPart.edgeSet()) {
+					if (!oldGraph.containsEdge(edge)) {
+						IfmapVertex source = graphPart.getEdgeSource(edge);
+						IfmapVertex target = graphPart.getEdgeTarget(edge);
+						oldGraph.addEdgeSensitive(source, target, edge);
+					}
 				}
 			}
+		} finally {
+			oldGraph.commitUpdate();
 		}
-		return true;
-	}
-
-	/**
-	 * Finds the equivalent vertex in the graph
-	 * 
-	 * @param other
-	 *            The vertex to compare with
-	 * @param graph
-	 *            The graph in which to search
-	 * @return The corresponding (equal) vertex within the graph - or null
-	 */
-	private static IfmapVertex findVertex(IfmapVertex other, IfmapGraphImpl graph) {
-		if (!graph.containsVertex(other)) {
-			return null;
-		}
-		for (IfmapVertex v : graph.vertexSet()) {
-			if (v.equals(other)) {
-				return v;
-			}
-		}
-		return null;
 	}
 
 }
@@ -38,20 +38,32 @@
  */
 package de.hshannover.f4.trust.irongpm;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EventListener;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.jgrapht.Graphs;
 import org.jgrapht.event.GraphListener;
 
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphCheckpoint;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListener;
 import de.hshannover.f4.trust.irongpm.listener.VertexStateListener;
+import de.hshannover.f4.trust.irongpm.rest.GraphFeed;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDelta;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDeltaLog;
 
 /**
- * Class used to periodically pull for updates from the visitmeta dataservice and update the graph. Should be used
- * within a Thread.
+ * Class used to receive the updates from the visitmeta dataservice and update the graph. The updates are either
+ * pulled periodically or pushed by the dataservice, depending on the configured {@link GraphFeed}. If configured, the
+ * graph is periodically written to a local checkpoint, which replaces the initial graph on the next start, and every
+ * applied delta is recorded in a local {@link IfmapGraphDeltaLog}, which brings the checkpoint up to date on the next
+ * start. Should be used within a Thread.
  * 
  * @author Leonard Renners
  * 
@@ -60,9 +72,15 @@ public class Pulldozer extends Thread {
 
 	private static final Logger LOGGER = Logger.getLogger(Pulldozer.class);
 
-	private boolean mIsDone = false;
+	private volatile boolean mIsDone = false;
 	private long mInterval;
 	private IfmapGraphImpl mGraph;
+	private GraphFeed mFeed;
+	private File mCheckpoint;
+	private long mCheckpointInterval;
+	private long mLastCheckpoint;
+	private Long mCheckpointVersion;
+	private IfmapGraphDeltaLog mDeltaLog;
 
 	/**
 	 * Constructor.
@@ -71,13 +89,38 @@ public class Pulldozer extends Thread {
 		mGraph = new IfmapGraphImpl();
 		mIsDone = false;
 		mInterval = IronGpm.getConfig().getInt("irongpm.updateinterval", 1000);
+		List<String> indexed = new ArrayList<>();
+		for (String property : IronGpm.getConfig().getString("irongpm.index.properties",
+				"/ip-address[@value],/mac-address[@value],/device/name").split(",")) {
+			if (!property.trim().isEmpty()) {
+				indexed.add(property.trim());
+			}
+		}
+		mGraph.setIndexedProperties(indexed);
+		mFeed = DataReciever.createFeed();
+		String checkpoint = IronGpm.getConfig().getString("irongpm.checkpoint.path", "");
+		if (!checkpoint.trim().isEmpty()) {
+			mCheckpoint = new File(checkpoint.trim());
+		}
+		mCheckpointInterval = IronGpm.getConfig().getInt("irongpm.checkpoint.interval", 60000);
+		String deltaLog = IronGpm.getConfig().getString("irongpm.deltalog.path", "");
+		if (!deltaLog.trim().isEmpty()) {
+			try {
+				mDeltaLog = new IfmapGraphDeltaLog(new File(deltaLog.trim()),
+						IronGpm.getConfig().getInt("irongpm.deltalog.segmentsize", 64 * 1024 * 1024),
+						IronGpm.getConfig().getInt("irongpm.deltalog.segments", 16));
+			} catch (IOException e) {
+				LOGGER.warn("Could not open the delta log " + deltaLog + ": " + e);
+			}
+		}
 	}
 
 	/**
 	 * Adds a listener to the graph model.
 	 * 
 	 * @param l
-	 *            The listener to add. So far mainly used for GraphListener and VertexStateListener
+	 *            The listener to add. So far mainly used for GraphListener, VertexStateListener and
+	 *            GraphChangeSetListener
 	 */
 	@SuppressWarnings("unchecked")
 	public void addListener(EventListener l) {
@@ -87,37 +130,149 @@ public class Pulldozer extends Thread {
 		if (l instanceof VertexStateListener) {
 			mGraph.addVertexStateListener((VertexStateListener<IfmapVertex>) l);
 		}
+		if (l instanceof GraphChangeSetListener) {
+			mGraph.addChangeSetListener((GraphChangeSetListener<IfmapVertex, IfmapEdge>) l);
+		}
 	}
 
 	@Override
 	public void run() {
 		try {
-			synchronized (this) {
+			IfmapGraphImpl tmp = loadCheckpoint();
+			if (tmp == null) {
 				LOGGER.info("Establishing inital connection and getting initial graph");
-				IfmapGraphImpl tmp = DataReciever.getInitialGraph();
-				mGraph.setLastUpdated(tmp.getLastUpdated());
+				tmp = DataReciever.getInitialGraph();
+			}
+			mLastCheckpoint = System.currentTimeMillis();
+			mGraph.setLastUpdated(tmp.getLastUpdated());
+			mGraph.beginUpdate();
+			try {
 				Graphs.addGraph(mGraph, tmp);
-				while (!mIsDone) {
-					if (DataReciever.isUpdateAvailable(mGraph.getLastUpdated())) {
-						while (DataReciever.isUpdateAvailable(mGraph.getLastUpdated())) {
-							DataReciever.nextUpdate(mGraph);
-						}
-					}
-					wait(mInterval);
+			} finally {
+				mGraph.commitUpdate();
+			}
+			while (!mIsDone) {
+				// waits at most one interval, so finishing is noticed in time
+				IfmapGraphDelta delta = mFeed.nextUpdate(mGraph.getLastUpdated(), mInterval);
+				if (delta != null) {
+					Long previous = mGraph.getLastUpdated();
+					DataReciever.applyDelta(mGraph, delta);
+					logDelta(delta, previous);
+				}
+				if (System.currentTimeMillis() - mLastCheckpoint >= mCheckpointInterval) {
+					writeCheckpoint();
 				}
 			}
+			writeCheckpoint();
 		} catch (InterruptedException e) {
 			e.printStackTrace();
+		} finally {
+			mFeed.close();
+			closeDeltaLog();
 		}
 		LOGGER.info("Loop which updates the Graph has ended.");
 	}
 
+	/**
+	 * Records an applied delta in the delta log, with the versions of the graph it was applied to and led to.
+	 */
+	private void logDelta(IfmapGraphDelta delta, Long previous) {
+		if (mDeltaLog == null || previous == null || mGraph.getLastUpdated() == null) {
+			return;
+		}
+		try {
+			mDeltaLog.append(delta.withTimestamp(mGraph.getLastUpdated()), previous);
+		} catch (IOException e) {
+			LOGGER.warn("Could not append to the delta log: " + e);
+		}
+	}
+
+	private void closeDeltaLog() {
+		if (mDeltaLog == null) {
+			return;
+		}
+		try {
+			mDeltaLog.close();
+		} catch (IOException e) {
+			LOGGER.warn("Could not close the delta log: " + e);
+		}
+	}
+
+	/**
+	 * @return The graph of the checkpoint, null if there is none or if it is newer than every change of the
+	 *         dataservice (e.g. because the MAP server was reset)
+	 */
+	private IfmapGraphImpl loadCheckpoint() throws InterruptedException {
+		if (mCheckpoint == null || !mCheckpoint.isFile()) {
+			return null;
+		}
+		try {
+			IfmapGraphImpl graph = IfmapGraphCheckpoint.read(mCheckpoint);
+			Long newest = DataReciever.getNewestTimestamp();
+			if (graph.getLastUpdated() == null || newest == null || graph.getLastUpdated() > newest) {
+				LOGGER.warn("Ignoring checkpoint " + mCheckpoint + " of version " + graph.getLastUpdated()
+						+ ", which is unknown to the dataservice");
+				return null;
+			}
+			LOGGER.info("Restored graph of version " + graph.getLastUpdated() + " from checkpoint " + mCheckpoint);
+			mCheckpointVersion = graph.getLastUpdated();
+			replayDeltaLog(graph, newest);
+			return graph;
+		} catch (IOException e) {
+			LOGGER.warn("Could not read checkpoint " + mCheckpoint + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Brings the graph of the checkpoint up to date with the deltas recorded in the delta log after it, so only the
+	 * changes which are not logged have to be requested from the dataservice.
+	 * 
+	 * @param graph
+	 *            The graph of the checkpoint
+	 * @param newest
+	 *            The newest version known to the dataservice, newer logged deltas are ignored
+	 */
+	private void replayDeltaLog(IfmapGraphImpl graph, Long newest) {
+		if (mDeltaLog == null) {
+			return;
+		}
+		Long version = graph.getLastUpdated();
+		try {
+			int replayed = DataReciever.replay(mDeltaLog.getDirectory(), graph, newest);
+			LOGGER.info("Replayed " + replayed + " deltas from the delta log onto version " + version
+					+ ", now at version " + graph.getLastUpdated());
+		} catch (IOException e) {
+			LOGGER.warn("Could not replay the delta log " + mDeltaLog.getDirectory() + ": " + e);
+		}
+	}
+
+	/**
+	 * Writes the graph to the checkpoint, if it changed since the last one. The graph is only changed by this thread,
+	 * so it is consistent while it is written.
+	 */
+	private void writeCheckpoint() {
+		mLastCheckpoint = System.currentTimeMillis();
+		if (mCheckpoint == null || mGraph.getLastUpdated() == null
+				|| mGraph.getLastUpdated().equals(mCheckpointVersion)) {
+			return;
+		}
+		try {
+			IfmapGraphCheckpoint.write(mGraph, mCheckpoint);
+			mCheckpointVersion = mGraph.getLastUpdated();
+			LOGGER.debug("Wrote checkpoint of version " + mCheckpointVersion + " in "
+					+ (System.currentTimeMillis() - mLastCheckpoint) + " ms");
+		} catch (IOException e) {
+			LOGGER.warn("Could not write checkpoint " + mCheckpoint + ": " + e);
+		}
+	}
+
 	public IfmapGraphImpl getGraph() {
 		return mGraph;
 	}
 
 	/**
-	 * Quits the while loop and stops pulling on the dataservice.
+	 * Quits the while loop and stops receiving updates from the dataservice.
 	 */
 	public void finish() {
 		mIsDone = true;
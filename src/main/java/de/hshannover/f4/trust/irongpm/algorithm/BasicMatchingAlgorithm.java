@@ -39,60 +39,123 @@
 package de.hshannover.f4.trust.irongpm.algorithm;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
-import org.jgrapht.event.GraphChangeEvent;
-import org.jgrapht.event.GraphEdgeChangeEvent;
-import org.jgrapht.event.GraphListener;
-import org.jgrapht.event.GraphVertexChangeEvent;
 
 import com.google.gson.GsonBuilder;
 
-import de.hshannover.f4.trust.irongpm.algorithm.action.RuleAction;
-import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternEdge;
+import de.hshannover.f4.trust.ironcommon.properties.Properties;
+import de.hshannover.f4.trust.irongpm.IronGpm;
+import de.hshannover.f4.trust.irongpm.algorithm.action.ActionPipeline;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternRule;
-import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternVertex;
-import de.hshannover.f4.trust.irongpm.algorithm.util.ComparatorUtil;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphSnapshot;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
-import de.hshannover.f4.trust.irongpm.listener.GraphVertexModifyEvent;
-import de.hshannover.f4.trust.irongpm.listener.VertexStateListener;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetEvent;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListener;
 import de.hshannover.f4.trust.irongpm.rest.IfmapGraphJsonAdapter;
 
 /**
- * Simple Matching algorithm - will be triggered whenever a change in the graph occurs, but does not work on the change,
- * but look for the whole graph structure.
+ * Simple Matching algorithm - will be triggered once for every committed set of changes in the graph (e.g. one delta of
+ * the dataservice). Each affected rule is evaluated once per change set. In the incremental mode (default) only matches
+ * containing one of the changed elements are searched for, otherwise the whole graph structure is searched. The
+ * matching runs on a snapshot of the graph version the change set was committed in.
  * 
  * @author Leonard Renners
  * 
  */
-public class BasicMatchingAlgorithm implements GraphListener<IfmapVertex, IfmapEdge>, VertexStateListener<IfmapVertex> {
+public class BasicMatchingAlgorithm implements GraphChangeSetListener<IfmapVertex, IfmapEdge> {
 
 	private static final Logger LOGGER = Logger.getLogger(BasicMatchingAlgorithm.class);
 
-	private static HashMap<Long, ArrayList<Integer>> mFiredPatterns = new HashMap<>();
-	// TODO: Check if Hash calculation on a graph is correct!
+	private static final long STATISTICS_INTERVAL = 60000;
 
 	private static ArrayList<PatternRule> mRulePatterns = new ArrayList<>();
 
-	private static final Executor EXEC = Executors.newCachedThreadPool();
+	private static Map<PatternRule, MatchPlan> mMatchPlans = new ConcurrentHashMap<>();
 
 	private static GsonBuilder gsob = new GsonBuilder();
 
+	private boolean mIncremental;
+
+	private MatchingExecutor mExecutor;
+
+	private FiredMatchStore mFiredMatches;
+
+	private ActionPipeline mActions;
+
+	private long mStatisticsLogged = System.currentTimeMillis();
+
 	/**
-	 * Constructor.
+	 * Constructor. Reads the matching mode and the executor settings from the configuration.
 	 */
 	public BasicMatchingAlgorithm() {
+		this(IronGpm.getConfig().getBoolean("irongpm.matching.incremental", true), createExecutor(),
+				new FiredMatchStore(IronGpm.getConfig().getInt("irongpm.matching.dedup.maxsize", 10000), IronGpm
+						.getConfig().getInt("irongpm.matching.dedup.ttl", 0)), createActionPipeline());
+	}
+
+	/**
+	 * Constructor. Uses one matching thread per processor and blocks if 1000 tasks are waiting.
+	 * 
+	 * @param incremental
+	 *            Whether only the neighbourhood of a change is searched (true) or the whole graph (false)
+	 */
+	public BasicMatchingAlgorithm(boolean incremental) {
+		this(incremental, new MatchingExecutor(Runtime.getRuntime().availableProcessors(), 1000,
+				MatchingExecutor.OverflowPolicy.BLOCK), new FiredMatchStore(10000, 0), new ActionPipeline(1, 1000,
+				30000, 2, 1000));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param incremental
+	 *            Whether only the neighbourhood of a change is searched (true) or the whole graph (false)
+	 * @param executor
+	 *            The executor running the matching tasks
+	 * @param firedMatches
+	 *            The store remembering the matches which have already fired
+	 * @param actions
+	 *            The pipeline performing the actions of fired rules
+	 */
+	public BasicMatchingAlgorithm(boolean incremental, MatchingExecutor executor, FiredMatchStore firedMatches,
+			ActionPipeline actions) {
 		super();
+		mIncremental = incremental;
+		mExecutor = executor;
+		mFiredMatches = firedMatches;
+		mActions = actions;
 		gsob.registerTypeAdapter(IfmapGraphImpl.class, new IfmapGraphJsonAdapter());
 	}
 
+	private static MatchingExecutor createExecutor() {
+		Properties config = IronGpm.getConfig();
+		int threads = config.getInt("irongpm.matching.threads", Runtime.getRuntime().availableProcessors());
+		int queueSize = config.getInt("irongpm.matching.queuesize", 1000);
+		String overflow = config.getString("irongpm.matching.overflow", "block");
+		MatchingExecutor.OverflowPolicy policy;
+		try {
+			policy = MatchingExecutor.OverflowPolicy.valueOf(overflow.toUpperCase().replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			LOGGER.warn("Unknown overflow policy '" + overflow + "' - using block.");
+			policy = MatchingExecutor.OverflowPolicy.BLOCK;
+		}
+		return new MatchingExecutor(threads, queueSize, policy);
+	}
+
+	private static ActionPipeline createActionPipeline() {
+		Properties config = IronGpm.getConfig();
+		return new ActionPipeline(config.getInt("irongpm.actions.threads", 1), config.getInt(
+				"irongpm.actions.queuesize", 1000), config.getInt("irongpm.actions.timeout", 30000), config.getInt(
+				"irongpm.actions.retries", 2), config.getInt("irongpm.actions.retrydelay", 1000));
+	}
+
 	/**
 	 * Adds a rule to the patterns to compare on a change in the graph structure.
 	 * 
@@ -100,8 +163,9 @@ public class BasicMatchingAlgorithm implements GraphListener<IfmapVertex, IfmapE
 	 *            the new rule
 	 */
 	public void addRule(PatternRule rule) {
+		mMatchPlans.put(rule, new MatchPlan(rule.getPattern()));
 		mRulePatterns.add(rule);
-		mFiredPatterns.put(rule.getId(), new ArrayList<Integer>());
+		mFiredMatches.addRule(rule.getId());
 	}
 
 	/**
@@ -112,103 +176,146 @@ public class BasicMatchingAlgorithm implements GraphListener<IfmapVertex, IfmapE
 	 * @return Wether the ruleId is already in use.
 	 */
 	public boolean hasRuleId(long id) {
-		return mFiredPatterns.containsKey(id);
+		return mFiredMatches.hasRule(id);
 	}
 
 	/**
-	 * Checks wehter rules the rules are affected by the incoming event and fires all rules whcih might be affected,
-	 * i.e. which might be fulfilled since the event is part of the pattern.
+	 * Checks which rules are affected by the incoming change set and fires all rules which might be affected, i.e.
+	 * which might be fulfilled since one of the changes is part of the pattern. Every affected rule is evaluated once.
 	 * 
 	 * @param event
+	 *            the committed change set
 	 */
-	public void checkAndFireRules(final GraphChangeEvent event) {
-		final IfmapGraphImpl graphCopy = new IfmapGraphImpl((IfmapGraphImpl) event.getSource());
-		for (final PatternRule r : mRulePatterns) {
-			Runnable doIt = new Runnable() {
-				@Override
-				public void run() {
-					if (isRuleAffected(r, event)) {
-						LOGGER.debug("Rule " + r.getId() + " affected - checking.");
-						matchRule(graphCopy, r);
-					}
+	public void checkAndFireRules(GraphChangeSetEvent<IfmapVertex, IfmapEdge> event) {
+		IfmapGraphImpl graph = (IfmapGraphImpl) event.getSource();
+		for (PatternRule r : mRulePatterns) {
+			MatchPlan plan = mMatchPlans.get(r);
+			Set<IfmapEdge> edges = new LinkedHashSet<>();
+			Set<IfmapVertex> vertices = new LinkedHashSet<>();
+			for (IfmapEdge e : event.getAddedEdges()) {
+				if (plan.mayContain(e)) {
+					edges.add(e);
 				}
-			};
-			EXEC.execute(doIt);
-		}
-	}
-
-	private void matchRule(IfmapGraphImpl graph, PatternRule rule) {
-		Set<RuleMatch> resultSet = new RuleComparison(rule, graph).getResult();
-		for (RuleMatch r : resultSet) {
-			int matchedHash = r.getResultGraph().hashCode();
-			synchronized (this) {
-				List<Integer> firedHashes = mFiredPatterns.get(r.getRuleId());
-				if (!firedHashes.contains(matchedHash)) {
-					mFiredPatterns.get(r.getRuleId()).add(matchedHash);
-					LOGGER.debug("Rule " + rule.getId() + " fired - performing actions...");
-					for (RuleAction action : rule.getActions()) {
-						action.performAction(rule, r);
-					}
+			}
+			for (IfmapVertex v : event.getChangedVertices()) {
+				if (plan.mayContain(v)) {
+					vertices.add(v);
 				}
 			}
+			if (!edges.isEmpty() || !vertices.isEmpty()) {
+				// The graph is modified after the event, so the matching works on a snapshot of the current version
+				mExecutor.execute(new MatchingTask(r, plan, graph.snapshot(), edges, vertices));
+			}
 		}
+		logStatistics();
 	}
 
-	@Override
-	public void vertexAdded(GraphVertexChangeEvent<IfmapVertex> e) {
-		// Can be ignored - is covered by edgeAdded, since a vertex cannot be
-		// added in IF-MAP without an edge!
-		// checkAndFireRules(e);
+	/**
+	 * Logs the queue depths and counters of the matching executor and the action pipeline once a minute.
+	 */
+	private void logStatistics() {
+		if (!LOGGER.isDebugEnabled()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (now - mStatisticsLogged >= STATISTICS_INTERVAL) {
+			mStatisticsLogged = now;
+			LOGGER.debug(mExecutor + " " + mActions);
+		}
 	}
 
-	@Override
-	public void vertexRemoved(GraphVertexChangeEvent<IfmapVertex> e) {
-		// Can be ignored - a pattern cannot be fulfilled by a vertex removal
-		// (no NOT relationships supported)
-		// checkAndFireRules(e);
+	/**
+	 * @return The pipeline performing the actions of fired rules
+	 */
+	public ActionPipeline getActionPipeline() {
+		return mActions;
 	}
 
-	@Override
-	public void edgeAdded(GraphEdgeChangeEvent<IfmapVertex, IfmapEdge> e) {
-		checkAndFireRules(e);
+	/**
+	 * @return The executor running the matching tasks
+	 */
+	public MatchingExecutor getExecutor() {
+		return mExecutor;
 	}
 
-	@Override
-	public void edgeRemoved(GraphEdgeChangeEvent<IfmapVertex, IfmapEdge> e) {
-		// Can be ignored - a pattern cannot be fulfilled by a vertex removal
-		// (no NOT relationships supported)
-		// checkAndFireRules(e);
+	private void matchRule(PatternRule rule, RuleComparison comparison) {
+		Set<RuleMatch> resultSet = comparison.getResult();
+		for (RuleMatch r : resultSet) {
+			if (!mFiredMatches.markFired(r.getRuleId(), MatchFingerprint.of(r.getResultGraph()))) {
+				continue;
+			}
+			LOGGER.debug("Rule " + rule.getId() + " fired - performing actions...");
+			mActions.submit(rule, r);
+		}
 	}
 
 	@Override
-	public void vertexChanged(GraphVertexModifyEvent<IfmapVertex> e) {
+	public void changeSetCommitted(GraphChangeSetEvent<IfmapVertex, IfmapEdge> e) {
+		// Removals can be ignored - a pattern cannot be fulfilled by a removal
+		// (no NOT relationships supported)
 		checkAndFireRules(e);
 	}
 
-	@SuppressWarnings("unchecked")
-	private boolean isRuleAffected(PatternRule rule, GraphChangeEvent e) {
-		if (e instanceof GraphVertexChangeEvent<?>) {
-			GraphVertexChangeEvent<IfmapVertex> event = (GraphVertexChangeEvent<IfmapVertex>) e;
-			IfmapVertex vertex = event.getVertex();
-			for (PatternVertex patternVertex : rule.getPattern().vertexSet()) {
-				if (ComparatorUtil.compare(patternVertex, vertex)) {
-					return true;
+	/**
+	 * Matching of one rule on one snapshot. Queued tasks of the same rule can be merged, the merged task matches on the
+	 * newer snapshot from the changed elements of both tasks.
+	 */
+	private class MatchingTask implements MatchingExecutor.CoalescingTask {
+
+		private final PatternRule mRule;
+		private final MatchPlan mPlan;
+		private IfmapGraphSnapshot mSnapshot;
+		private Set<IfmapEdge> mEdges;
+		private Set<IfmapVertex> mVertices;
+		private boolean mStarted = false;
+
+		MatchingTask(PatternRule rule, MatchPlan plan, IfmapGraphSnapshot snapshot, Set<IfmapEdge> edges,
+				Set<IfmapVertex> vertices) {
+			mRule = rule;
+			mPlan = plan;
+			mSnapshot = snapshot;
+			mEdges = edges;
+			mVertices = vertices;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				mStarted = true;
+			}
+			LOGGER.debug("Rule " + mRule.getId() + " affected - checking.");
+			try {
+				if (mIncremental) {
+					matchRule(mRule, new RuleComparison(mRule, mPlan, mSnapshot, mEdges, mVertices));
+				} else {
+					matchRule(mRule, new RuleComparison(mRule, mPlan, mSnapshot));
 				}
+			} finally {
+				mSnapshot.release();
 			}
-			return false;
 		}
-		if (e instanceof GraphEdgeChangeEvent<?, ?>) {
-			GraphEdgeChangeEvent<IfmapVertex, IfmapEdge> event = (GraphEdgeChangeEvent<IfmapVertex, IfmapEdge>) e;
-			IfmapEdge edge = event.getEdge();
-			for (PatternEdge patternEdge : rule.getPattern().edgeSet()) {
-				if (ComparatorUtil.compare(patternEdge, edge)) {
-					return true;
-				}
+
+		@Override
+		public Object getCoalescingKey() {
+			return mRule.getId();
+		}
+
+		@Override
+		public synchronized boolean absorb(MatchingExecutor.CoalescingTask newer) {
+			if (mStarted || !(newer instanceof MatchingTask)) {
+				return false;
 			}
-			return false;
+			MatchingTask other = (MatchingTask) newer;
+			mSnapshot.release();
+			mSnapshot = other.mSnapshot;
+			mEdges.addAll(other.mEdges);
+			mVertices.addAll(other.mVertices);
+			return true;
+		}
+
+		@Override
+		public void discard() {
+			mSnapshot.release();
 		}
-		// Unknown Event type
-		LOGGER.warn("Unknown Graph Change Event. No rules triggered!");
-		return false;
 	}
 }
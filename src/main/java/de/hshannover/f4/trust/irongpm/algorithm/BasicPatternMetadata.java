@@ -40,11 +40,11 @@ package de.hshannover.f4.trust.irongpm.algorithm;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
+import de.hshannover.f4.trust.irongpm.ifmap.PropertyArray;
+import de.hshannover.f4.trust.irongpm.ifmap.SymbolTable;
 
 /**
  * Metadata implementation for pattern matching. Adds definition of required and prohibited properties. Also implements
@@ -56,13 +56,13 @@ import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
 public final class BasicPatternMetadata implements PatternMetadata {
 
 	private String mTypename;
-	private Map<String, String> mProperties;
+	private PropertyArray mProperties;
 	private List<String> mRestrictedProperties;
 	private List<String> mRelatedProperties;
 	private boolean mIsSingleValue;
 
 	private BasicPatternMetadata() {
-		mProperties = new HashMap<>();
+		mProperties = new PropertyArray();
 		mRestrictedProperties = new ArrayList<>();
 		mRelatedProperties = new ArrayList<>();
 		mIsSingleValue = true;
@@ -76,12 +76,12 @@ public final class BasicPatternMetadata implements PatternMetadata {
 	 */
 	public BasicPatternMetadata(String typename) {
 		this();
-		mTypename = typename;
+		mTypename = SymbolTable.intern(typename);
 	}
 
 	@Override
 	public List<String> getProperties() {
-		return new ArrayList<>(mProperties.keySet());
+		return mProperties.keys();
 	}
 
 	public List<String> getRestrictedProperties() {
@@ -40,12 +40,12 @@ package de.hshannover.f4.trust.irongpm.algorithm;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.PropertyArray;
+import de.hshannover.f4.trust.irongpm.ifmap.SymbolTable;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
 
 /**
@@ -58,7 +58,7 @@ import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
 public class ExtendedPatternVertex implements PatternVertex {
 
 	private String mTypename;
-	private Map<String, String> mProperties;
+	private PropertyArray mProperties;
 	private List<String> mRestrictedProperties;
 	private List<String> mRelatedProperties;
 	private List<PatternMetadata> mMetadata;
@@ -66,7 +66,7 @@ public class ExtendedPatternVertex implements PatternVertex {
 	private IfmapVertex mMatchedVertex;
 
 	private ExtendedPatternVertex() {
-		mProperties = new HashMap<>();
+		mProperties = new PropertyArray();
 		mMetadata = new ArrayList<>();
 		mRestrictedProperties = new ArrayList<>();
 		mRelatedProperties = new ArrayList<>();
@@ -82,7 +82,7 @@ public class ExtendedPatternVertex implements PatternVertex {
 	 */
 	public ExtendedPatternVertex(String typename) {
 		this();
-		mTypename = typename;
+		mTypename = SymbolTable.intern(typename);
 	}
 
 	@Override
@@ -92,7 +92,7 @@ public class ExtendedPatternVertex implements PatternVertex {
 
 	@Override
 	public List<String> getProperties() {
-		return new ArrayList<>(mProperties.keySet());
+		return mProperties.keys();
 	}
 
 	public List<String> getRestrictedProperties() {
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the matches which have already fired, so a rule only fires once per match. The fingerprints are stored per
+ * rule and evicted after a configurable time or when a rule has stored more than the maximum number of fingerprints
+ * (oldest first), so the memory usage is bounded and a lookup takes constant time.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class FiredMatchStore {
+
+	private final int mMaxSize;
+	private final long mTtl;
+	private final ConcurrentMap<Long, LinkedHashMap<MatchFingerprint, Long>> mFired = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxSize
+	 *            The maximum number of stored fingerprints per rule
+	 * @param ttl
+	 *            The time in milliseconds a match is remembered, 0 to remember it until it is evicted by size
+	 */
+	public FiredMatchStore(int maxSize, long ttl) {
+		mMaxSize = Math.max(1, maxSize);
+		mTtl = ttl;
+	}
+
+	/**
+	 * Registers a rule.
+	 * 
+	 * @param ruleId
+	 *            The id of the rule
+	 */
+	public void addRule(long ruleId) {
+		mFired.putIfAbsent(ruleId, new LinkedHashMap<MatchFingerprint, Long>());
+	}
+
+	/**
+	 * @param ruleId
+	 *            The id of the rule
+	 * @return Whether the rule has been registered
+	 */
+	public boolean hasRule(long ruleId) {
+		return mFired.containsKey(ruleId);
+	}
+
+	/**
+	 * Marks a match as fired.
+	 * 
+	 * @param ruleId
+	 *            The id of the rule
+	 * @param fingerprint
+	 *            The fingerprint of the match
+	 * @return Whether the match is new, i.e. it has not fired (within the ttl) before
+	 */
+	public boolean markFired(long ruleId, MatchFingerprint fingerprint) {
+		return markFired(ruleId, fingerprint, System.currentTimeMillis());
+	}
+
+	boolean markFired(long ruleId, MatchFingerprint fingerprint, long now) {
+		addRule(ruleId);
+		LinkedHashMap<MatchFingerprint, Long> fired = mFired.get(ruleId);
+		synchronized (fired) {
+			evictExpired(fired, now);
+			if (fired.containsKey(fingerprint)) {
+				return false;
+			}
+			fired.put(fingerprint, now);
+			if (fired.size() > mMaxSize) {
+				Iterator<MatchFingerprint> it = fired.keySet().iterator();
+				it.next();
+				it.remove();
+			}
+			return true;
+		}
+	}
+
+	private void evictExpired(LinkedHashMap<MatchFingerprint, Long> fired, long now) {
+		if (mTtl <= 0) {
+			return;
+		}
+		// insertion order is the order of the timestamps
+		Iterator<Map.Entry<MatchFingerprint, Long>> it = fired.entrySet().iterator();
+		while (it.hasNext() && now - it.next().getValue() >= mTtl) {
+			it.remove();
+		}
+	}
+
+	/**
+	 * @param ruleId
+	 *            The id of the rule
+	 * @return The number of currently remembered matches of the rule
+	 */
+	public int size(long ruleId) {
+		LinkedHashMap<MatchFingerprint, Long> fired = mFired.get(ruleId);
+		if (fired == null) {
+			return 0;
+		}
+		synchronized (fired) {
+			return fired.size();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraph;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Propable;
+
+/**
+ * 128 bit fingerprint of the content of a matched graph, used to recognize matches which have already fired. It is
+ * calculated from a canonical (sorted) representation of all identifiers, links and metadata, so it does not depend
+ * on the order of the elements and distinct matches do not collide in practice.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class MatchFingerprint {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char SEPARATOR = '\u0000';
+
+	private final long mHigh;
+	private final long mLow;
+
+	private MatchFingerprint(long high, long low) {
+		mHigh = high;
+		mLow = low;
+	}
+
+	/**
+	 * Calculates the fingerprint of a graph.
+	 * 
+	 * @param graph
+	 *            The graph, e.g. the result graph of a match
+	 * @return The fingerprint
+	 */
+	public static MatchFingerprint of(IfmapGraph graph) {
+		List<String> elements = new ArrayList<>();
+		for (IfmapVertex v : graph.vertexSet()) {
+			StringBuilder sb = new StringBuilder("V");
+			appendIdentifier(sb, v);
+			List<String> meta = new ArrayList<>();
+			for (Metadata m : v.getMetadata()) {
+				meta.add(canonical(m));
+			}
+			Collections.sort(meta);
+			for (String m : meta) {
+				sb.append(SEPARATOR).append(m);
+			}
+			elements.add(sb.toString());
+		}
+		for (IfmapEdge e : graph.edgeSet()) {
+			StringBuilder source = new StringBuilder();
+			appendIdentifier(source, graph.getEdgeSource(e));
+			StringBuilder target = new StringBuilder();
+			appendIdentifier(target, graph.getEdgeTarget(e));
+			// links are undirected
+			String first = source.toString();
+			String second = target.toString();
+			if (first.compareTo(second) > 0) {
+				first = target.toString();
+				second = source.toString();
+			}
+			elements.add("E" + canonical(e.getMetadata()) + SEPARATOR + first + SEPARATOR + second);
+		}
+		Collections.sort(elements);
+
+		MessageDigest digest = createDigest();
+		for (String element : elements) {
+			digest.update(element.getBytes(UTF8));
+			digest.update((byte) '\n');
+		}
+		byte[] hash = digest.digest();
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < 8; i++) {
+			high = (high << 8) | (hash[i] & 0xff);
+			low = (low << 8) | (hash[i + 8] & 0xff);
+		}
+		return new MatchFingerprint(high, low);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void appendIdentifier(StringBuilder sb, IfmapVertex v) {
+		sb.append('{');
+		appendProperties(sb, v);
+		sb.append('}');
+	}
+
+	private static String canonical(Metadata m) {
+		StringBuilder sb = new StringBuilder("[");
+		appendProperties(sb, m);
+		return sb.append(']').toString();
+	}
+
+	private static void appendProperties(StringBuilder sb, Propable p) {
+		sb.append(p.getTypeName());
+		List<String> keys = new ArrayList<>(p.getProperties());
+		Collections.sort(keys);
+		for (String key : keys) {
+			sb.append(SEPARATOR).append(key).append('=').append(p.valueFor(key));
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof MatchFingerprint)) {
+			return false;
+		}
+		MatchFingerprint other = (MatchFingerprint) o;
+		return mHigh == other.mHigh && mLow == other.mLow;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (mHigh ^ (mHigh >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x%016x", mHigh, mLow);
+	}
+}
@@ -0,0 +1,496 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternEdge;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternGraph;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternPropable;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.ExtendedIdentifierEncapsulation;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Propable;
+
+/**
+ * Immutable, compiled form of a pattern which is interpreted by the {@link RuleComparison}. The vertices and edges of
+ * the pattern are numbered, the adjacency is kept in arrays, the properties of the pattern elements are resolved into
+ * predicates and the order in which the edges are visited is fixed for every possible starting point. Compiled once
+ * when a rule is added, afterwards it can be shared by any number of threads.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class MatchPlan {
+
+	private final PatternVertex[] mVertices;
+	private final PatternEdge[] mEdges;
+	private final Map<PatternVertex, Integer> mOrdinals;
+	private final int[] mEdgeSources;
+	private final int[] mEdgeTargets;
+	private final int[][] mIncidentEdges;
+	private final int mPublishVertex;
+	private final PropableMatcher[] mVertexMatchers;
+	private final PropableMatcher[] mEdgeMatchers;
+	private final VisitOrder[] mVertexOrders;
+	private final VisitOrder[] mEdgeOrders;
+
+	/**
+	 * Compiles a pattern.
+	 * 
+	 * @param pattern
+	 *            The pattern
+	 */
+	public MatchPlan(PatternGraph pattern) {
+		mVertices = pattern.vertexSet().toArray(new PatternVertex[0]);
+		mEdges = pattern.edgeSet().toArray(new PatternEdge[0]);
+		mOrdinals = new IdentityHashMap<>();
+		for (int i = 0; i < mVertices.length; i++) {
+			mOrdinals.put(mVertices[i], i);
+		}
+
+		mEdgeSources = new int[mEdges.length];
+		mEdgeTargets = new int[mEdges.length];
+		int[] degrees = new int[mVertices.length];
+		for (int i = 0; i < mEdges.length; i++) {
+			mEdgeSources[i] = getOrdinal(pattern.getEdgeSource(mEdges[i]));
+			mEdgeTargets[i] = getOrdinal(pattern.getEdgeTarget(mEdges[i]));
+			degrees[mEdgeSources[i]]++;
+			if (mEdgeTargets[i] != mEdgeSources[i]) {
+				degrees[mEdgeTargets[i]]++;
+			}
+		}
+		mIncidentEdges = new int[mVertices.length][];
+		for (int i = 0; i < mVertices.length; i++) {
+			mIncidentEdges[i] = new int[degrees[i]];
+			degrees[i] = 0;
+		}
+		for (int i = 0; i < mEdges.length; i++) {
+			mIncidentEdges[mEdgeSources[i]][degrees[mEdgeSources[i]]++] = i;
+			if (mEdgeTargets[i] != mEdgeSources[i]) {
+				mIncidentEdges[mEdgeTargets[i]][degrees[mEdgeTargets[i]]++] = i;
+			}
+		}
+		mPublishVertex = mVertices.length == 0 ? -1 : getOrdinal(pattern.getPublishVertex());
+
+		mVertexMatchers = new PropableMatcher[mVertices.length];
+		for (int i = 0; i < mVertices.length; i++) {
+			List<PatternMetadata> metadata = mVertices[i].getMetadata();
+			PropableMatcher[] metadataMatchers = new PropableMatcher[metadata.size()];
+			for (int j = 0; j < metadataMatchers.length; j++) {
+				metadataMatchers[j] = new PropableMatcher(metadata.get(j), null);
+			}
+			mVertexMatchers[i] = new PropableMatcher(mVertices[i], metadataMatchers);
+		}
+		mEdgeMatchers = new PropableMatcher[mEdges.length];
+		for (int i = 0; i < mEdges.length; i++) {
+			mEdgeMatchers[i] = new PropableMatcher(mEdges[i].getMetadata(), null);
+		}
+
+		mVertexOrders = new VisitOrder[mVertices.length];
+		for (int i = 0; i < mVertices.length; i++) {
+			mVertexOrders[i] = createOrder(new int[] { i }, -1);
+		}
+		mEdgeOrders = new VisitOrder[mEdges.length];
+		for (int i = 0; i < mEdges.length; i++) {
+			mEdgeOrders[i] = createOrder(new int[] { mEdgeSources[i], mEdgeTargets[i] }, i);
+		}
+	}
+
+	/**
+	 * Determines the order in which the remaining edges are visited if the given vertices and edge are bound first.
+	 * Edges between two bound vertices are preferred, since they only check the partial match and do not extend it.
+	 * Otherwise the first unvisited edge of the earliest bound vertex is taken.
+	 * 
+	 * @return The order - or null if the pattern is not connected, so it can never be matched completely
+	 */
+	private VisitOrder createOrder(int[] boundVertices, int boundEdge) {
+		boolean[] vertexBound = new boolean[mVertices.length];
+		boolean[] edgeBound = new boolean[mEdges.length];
+		int[] bindingOrder = new int[mVertices.length];
+		int bound = 0;
+		for (int v : boundVertices) {
+			if (!vertexBound[v]) {
+				vertexBound[v] = true;
+				bindingOrder[bound++] = v;
+			}
+		}
+		if (boundEdge >= 0) {
+			edgeBound[boundEdge] = true;
+		}
+		int[] edges = new int[mEdges.length];
+		int[] from = new int[mEdges.length];
+		int steps = 0;
+		while (true) {
+			int next = -1;
+			int nextFrom = -1;
+			for (int i = 0; i < bound && next < 0; i++) {
+				for (int e : mIncidentEdges[bindingOrder[i]]) {
+					if (!edgeBound[e] && vertexBound[getOpposite(e, bindingOrder[i])]) {
+						next = e;
+						nextFrom = bindingOrder[i];
+						break;
+					}
+				}
+			}
+			for (int i = 0; i < bound && next < 0; i++) {
+				for (int e : mIncidentEdges[bindingOrder[i]]) {
+					if (!edgeBound[e]) {
+						next = e;
+						nextFrom = bindingOrder[i];
+						break;
+					}
+				}
+			}
+			if (next < 0) {
+				break;
+			}
+			edgeBound[next] = true;
+			edges[steps] = next;
+			from[steps] = nextFrom;
+			steps++;
+			int to = getOpposite(next, nextFrom);
+			if (!vertexBound[to]) {
+				vertexBound[to] = true;
+				bindingOrder[bound++] = to;
+			}
+		}
+		if (bound < mVertices.length || steps + (boundEdge >= 0 ? 1 : 0) < mEdges.length) {
+			return null;
+		}
+		return new VisitOrder(Arrays.copyOf(edges, steps), Arrays.copyOf(from, steps));
+	}
+
+	public int getVertexCount() {
+		return mVertices.length;
+	}
+
+	public int getEdgeCount() {
+		return mEdges.length;
+	}
+
+	public PatternVertex getVertex(int v) {
+		return mVertices[v];
+	}
+
+	public PatternEdge getEdge(int e) {
+		return mEdges[e];
+	}
+
+	/**
+	 * @param vertex
+	 *            A vertex of the pattern
+	 * @return The ordinal of the vertex - or -1 if it is not part of the pattern
+	 */
+	public int getOrdinal(PatternVertex vertex) {
+		Integer ordinal = mOrdinals.get(vertex);
+		if (ordinal != null) {
+			return ordinal;
+		}
+		for (int i = 0; i < mVertices.length; i++) {
+			if (mVertices[i].equals(vertex)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param edge
+	 *            An edge of the pattern
+	 * @return The ordinal of the edge - or -1 if it is not part of the pattern
+	 */
+	public int getOrdinal(PatternEdge edge) {
+		for (int i = 0; i < mEdges.length; i++) {
+			if (mEdges[i] == edge) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getSource(int e) {
+		return mEdgeSources[e];
+	}
+
+	public int getTarget(int e) {
+		return mEdgeTargets[e];
+	}
+
+	/**
+	 * @param e
+	 *            The ordinal of an edge
+	 * @param v
+	 *            The ordinal of one of its vertices
+	 * @return The ordinal of the other vertex of the edge
+	 */
+	public int getOpposite(int e, int v) {
+		return mEdgeSources[e] == v ? mEdgeTargets[e] : mEdgeSources[e];
+	}
+
+	/**
+	 * @return The ordinal of the vertex to publish results on - or -1 if the pattern is empty
+	 */
+	public int getPublishVertex() {
+		return mPublishVertex;
+	}
+
+	/**
+	 * @param v
+	 *            The ordinal of the starting vertex
+	 * @return The order to visit the edges in - or null if the pattern cannot be matched completely
+	 */
+	VisitOrder getVertexOrder(int v) {
+		return mVertexOrders[v];
+	}
+
+	/**
+	 * @param e
+	 *            The ordinal of the starting edge
+	 * @return The order to visit the other edges in - or null if the pattern cannot be matched completely
+	 */
+	VisitOrder getEdgeOrder(int e) {
+		return mEdgeOrders[e];
+	}
+
+	/**
+	 * Compares a vertex of the real graph with a pattern vertex, including its metadata. Assigns the related
+	 * properties in the relation table - they are not removed if the comparison fails.
+	 * 
+	 * @param v
+	 *            The ordinal of the pattern vertex
+	 * @param real
+	 *            The vertex of the real graph
+	 * @param relations
+	 *            The relation table
+	 * @return Whether the real vertex matches
+	 */
+	boolean matchesVertex(int v, IfmapVertex real, RelationTable relations) {
+		IfmapVertex vertex = real;
+		if (vertex.isExtendedIdentifier()) {
+			vertex = ExtendedIdentifierEncapsulation.of(vertex);
+		}
+		PropableMatcher matcher = mVertexMatchers[v];
+		if (!matcher.matches(vertex, relations)) {
+			return false;
+		}
+		for (PropableMatcher metadataMatcher : matcher.mMetadata) {
+			if (!matchesAny(metadataMatcher, vertex.getMetadata(), relations)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares an edge of the real graph with a pattern edge. Assigns the related properties in the relation table -
+	 * they are not removed if the comparison fails.
+	 * 
+	 * @param e
+	 *            The ordinal of the pattern edge
+	 * @param real
+	 *            The edge of the real graph
+	 * @param relations
+	 *            The relation table
+	 * @return Whether the real edge matches
+	 */
+	boolean matchesEdge(int e, IfmapEdge real, RelationTable relations) {
+		return mEdgeMatchers[e].matches(real.getMetadata(), relations);
+	}
+
+	/**
+	 * @param v
+	 *            The ordinal of the pattern vertex
+	 * @param metadata
+	 *            Metadata of a real vertex
+	 * @param relations
+	 *            The relation table, it is not modified
+	 * @return Whether the metadata matches one of the metadata of the pattern vertex
+	 */
+	boolean matchesVertexMetadata(int v, Metadata metadata, RelationTable relations) {
+		for (PropableMatcher metadataMatcher : mVertexMatchers[v].mMetadata) {
+			int mark = relations.mark();
+			boolean matches = metadataMatcher.matches(metadata, relations);
+			relations.undo(mark);
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesAny(PropableMatcher matcher, List<Metadata> metadata, RelationTable relations) {
+		for (Metadata m : metadata) {
+			int mark = relations.mark();
+			if (matcher.matches(m, relations)) {
+				return true;
+			}
+			relations.undo(mark);
+		}
+		return false;
+	}
+
+	/**
+	 * @param vertex
+	 *            A vertex of the real graph
+	 * @return Whether the vertex matches any vertex of the pattern, i.e. whether it might be part of a match
+	 */
+	public boolean mayContain(IfmapVertex vertex) {
+		for (int i = 0; i < mVertices.length; i++) {
+			if (matchesVertex(i, vertex, new RelationTable())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param edge
+	 *            An edge of the real graph
+	 * @return Whether the edge matches any edge of the pattern, i.e. whether it might be part of a match
+	 */
+	public boolean mayContain(IfmapEdge edge) {
+		for (int i = 0; i < mEdges.length; i++) {
+			if (matchesEdge(i, edge, new RelationTable())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fixed order in which the edges of the pattern are visited from one starting point. Every step visits one edge
+	 * from an already bound vertex.
+	 */
+	static final class VisitOrder {
+
+		private final int[] mEdges;
+		private final int[] mFrom;
+
+		private VisitOrder(int[] edges, int[] from) {
+			mEdges = edges;
+			mFrom = from;
+		}
+
+		int size() {
+			return mEdges.length;
+		}
+
+		int getEdge(int step) {
+			return mEdges[step];
+		}
+
+		int getFrom(int step) {
+			return mFrom[step];
+		}
+	}
+
+	/**
+	 * Predicate compiled from the properties of a pattern element, see
+	 * {@link de.hshannover.f4.trust.irongpm.algorithm.util.ComparatorUtil#compareProp}.
+	 */
+	private static final class PropableMatcher {
+
+		private static final PropableMatcher[] NONE = new PropableMatcher[0];
+
+		private final String mTypeName;
+		private final String[] mProperties;
+		private final String[] mValues;
+		private final boolean[] mRestricted;
+		private final boolean[] mRelated;
+		private final PropableMatcher[] mMetadata;
+
+		private PropableMatcher(PatternPropable pattern, PropableMatcher[] metadata) {
+			List<String> properties = pattern.getProperties();
+			mTypeName = pattern.getTypeName();
+			mProperties = properties.toArray(new String[properties.size()]);
+			mValues = new String[mProperties.length];
+			mRestricted = new boolean[mProperties.length];
+			mRelated = new boolean[mProperties.length];
+			for (int i = 0; i < mProperties.length; i++) {
+				mValues[i] = pattern.valueFor(mProperties[i]);
+				mRestricted[i] = pattern.isPropertyRestricted(mProperties[i]);
+				mRelated[i] = pattern.isPropertyRelated(mProperties[i]);
+			}
+			mMetadata = metadata == null ? NONE : metadata;
+		}
+
+		private boolean matches(Propable real, RelationTable relations) {
+			if (real == null || !mTypeName.equals(real.getTypeName())) {
+				return false;
+			}
+			for (int i = 0; i < mProperties.length; i++) {
+				String realValue = real.valueFor(mProperties[i]);
+				String patternValue;
+				if (mRelated[i]) {
+					if (relations.containsKey(mValues[i])) {
+						patternValue = relations.get(mValues[i]);
+					} else {
+						patternValue = realValue;
+						relations.put(mValues[i], patternValue);
+					}
+				} else {
+					patternValue = mValues[i];
+				}
+				if (mRestricted[i]) {
+					if (patternValue == null) {
+						return realValue != null;
+					}
+					if (patternValue.equals(realValue)) {
+						return false;
+					}
+				} else {
+					if (patternValue == null) {
+						return realValue == null;
+					}
+					if (!patternValue.equals(realValue)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
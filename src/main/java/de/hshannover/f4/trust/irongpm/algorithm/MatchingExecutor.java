@@ -0,0 +1,310 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Executor for the matching tasks with a fixed number of worker threads and a bounded work queue. If the queue is
+ * full, the {@link OverflowPolicy} decides what happens with a new task. Since the tasks are submitted by the thread
+ * updating the graph, the {@link OverflowPolicy#BLOCK} policy slows down the ingestion while the matching falls behind.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class MatchingExecutor implements Executor {
+
+	private static final Logger LOGGER = Logger.getLogger(MatchingExecutor.class);
+
+	private static final long SHUTDOWN_CHECK_INTERVAL = 100;
+
+	/**
+	 * Behaviour when the work queue is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The submitting thread waits until there is room in the queue.
+		 */
+		BLOCK,
+		/**
+		 * The new task is merged into a queued task with the same key. If there is none, the submitting thread waits.
+		 */
+		COALESCE,
+		/**
+		 * The oldest queued task is discarded.
+		 */
+		DROP_OLDEST
+	}
+
+	/**
+	 * A task which can be merged with a later task of the same key and has to be notified if it is discarded.
+	 */
+	public interface CoalescingTask extends Runnable {
+
+		/**
+		 * @return The key of the task, tasks with equal keys can be merged
+		 */
+		Object getCoalescingKey();
+
+		/**
+		 * Merges the work of a newer task into this one.
+		 * 
+		 * @param newer
+		 *            The newer task with the same key
+		 * @return Whether the task could be merged - false if this task has already been started
+		 */
+		boolean absorb(CoalescingTask newer);
+
+		/**
+		 * Called if the task will not be executed.
+		 */
+		void discard();
+	}
+
+	private final ThreadPoolExecutor mExecutor;
+	private final BlockingQueue<Runnable> mQueue;
+	private final OverflowPolicy mPolicy;
+	private final AtomicLong mSubmitted = new AtomicLong();
+	private final AtomicLong mCoalesced = new AtomicLong();
+	private final AtomicLong mDropped = new AtomicLong();
+	private final AtomicLong mBlocked = new AtomicLong();
+	private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param threads
+	 *            The number of worker threads
+	 * @param queueSize
+	 *            The maximum number of waiting tasks
+	 * @param policy
+	 *            The behaviour if the queue is full
+	 */
+	public MatchingExecutor(int threads, int queueSize, OverflowPolicy policy) {
+		mQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+		mPolicy = policy;
+		mExecutor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 60, TimeUnit.SECONDS, mQueue,
+				new WorkerFactory(), new OverflowHandler());
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		mSubmitted.incrementAndGet();
+		if (mPolicy == OverflowPolicy.COALESCE && mQueue.remainingCapacity() == 0 && task instanceof CoalescingTask
+				&& coalesce((CoalescingTask) task)) {
+			return;
+		}
+		mExecutor.execute(task);
+		int depth = mQueue.size();
+		int max = mMaxQueueDepth.get();
+		while (depth > max && !mMaxQueueDepth.compareAndSet(max, depth)) {
+			max = mMaxQueueDepth.get();
+		}
+	}
+
+	private boolean coalesce(CoalescingTask task) {
+		for (Runnable queued : mQueue) {
+			if (queued instanceof CoalescingTask) {
+				CoalescingTask other = (CoalescingTask) queued;
+				if (other.getCoalescingKey().equals(task.getCoalescingKey()) && other.absorb(task)) {
+					mCoalesced.incrementAndGet();
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Stops accepting new tasks, queued tasks are still executed.
+	 */
+	public void shutdown() {
+		mExecutor.shutdown();
+	}
+
+	/**
+	 * @return The number of tasks waiting for execution
+	 */
+	public int getQueueDepth() {
+		return mQueue.size();
+	}
+
+	/**
+	 * @return The highest number of waiting tasks observed so far
+	 */
+	public int getMaxQueueDepth() {
+		return mMaxQueueDepth.get();
+	}
+
+	/**
+	 * @return The maximum number of waiting tasks
+	 */
+	public int getQueueCapacity() {
+		return mQueue.size() + mQueue.remainingCapacity();
+	}
+
+	/**
+	 * @return The number of tasks currently executed
+	 */
+	public int getActiveCount() {
+		return mExecutor.getActiveCount();
+	}
+
+	/**
+	 * @return The number of submitted tasks
+	 */
+	public long getSubmittedCount() {
+		return mSubmitted.get();
+	}
+
+	/**
+	 * @return The number of tasks which were merged into a queued task
+	 */
+	public long getCoalescedCount() {
+		return mCoalesced.get();
+	}
+
+	/**
+	 * @return The number of tasks which were discarded
+	 */
+	public long getDroppedCount() {
+		return mDropped.get();
+	}
+
+	/**
+	 * @return The number of submissions which had to wait for room in the queue
+	 */
+	public long getBlockedCount() {
+		return mBlocked.get();
+	}
+
+	@Override
+	public String toString() {
+		return "MatchingExecutor[policy=" + mPolicy + ", queue=" + getQueueDepth() + "/" + getQueueCapacity()
+				+ ", maxQueue=" + getMaxQueueDepth() + ", active=" + getActiveCount() + ", submitted="
+				+ getSubmittedCount() + ", coalesced=" + getCoalescedCount() + ", dropped=" + getDroppedCount()
+				+ ", blocked=" + getBlockedCount() + "]";
+	}
+
+	/**
+	 * Handles tasks which do not fit into the queue according to the overflow policy.
+	 */
+	private class OverflowHandler implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				discard(task);
+				throw new RejectedExecutionException("Matching executor has been shut down");
+			}
+			if (mPolicy == OverflowPolicy.DROP_OLDEST) {
+				Runnable oldest = mQueue.poll();
+				if (oldest != null) {
+					discard(oldest);
+				}
+				executor.execute(task);
+				return;
+			}
+			mBlocked.incrementAndGet();
+			LOGGER.debug("Matching queue is full, waiting: " + MatchingExecutor.this);
+			enqueue(task, executor);
+		}
+
+		/**
+		 * Waits for room in the queue. The executor might be shut down meanwhile and its workers might have finished
+		 * already, so a task is never left in the queue of an executor which has been shut down.
+		 */
+		private void enqueue(Runnable task, ThreadPoolExecutor executor) {
+			try {
+				while (!mQueue.offer(task, SHUTDOWN_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+					if (executor.isShutdown()) {
+						discard(task);
+						throw new RejectedExecutionException("Matching executor has been shut down");
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				discard(task);
+				throw new RejectedExecutionException("Interrupted while waiting for the matching queue", e);
+			}
+			if (executor.getPoolSize() == 0) {
+				executor.prestartCoreThread();
+			}
+			if (executor.isShutdown() && mQueue.remove(task)) {
+				discard(task);
+				throw new RejectedExecutionException("Matching executor has been shut down");
+			}
+		}
+
+		private void discard(Runnable task) {
+			mDropped.incrementAndGet();
+			LOGGER.warn("Discarding a matching task: " + MatchingExecutor.this);
+			if (task instanceof CoalescingTask) {
+				((CoalescingTask) task).discard();
+			}
+		}
+	}
+
+	/**
+	 * Creates named daemon worker threads.
+	 */
+	private static class WorkerFactory implements ThreadFactory {
+
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "irongpm-matching-" + mCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
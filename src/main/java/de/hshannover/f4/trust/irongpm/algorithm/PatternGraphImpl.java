@@ -48,6 +48,7 @@ import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternEdge;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternGraph;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternVertex;
+import de.hshannover.f4.trust.irongpm.util.LinkKey;
 
 /**
  * Main datastructure class encapsulating a full graph using the JgraphT Listenable graph structure in combination with
@@ -67,6 +68,8 @@ public class PatternGraphImpl extends DefaultListenableGraph<PatternVertex, Patt
 
 	private PatternVertex mPublishVertex = null;
 
+	private Map<LinkKey, PatternEdge> mSingleValueIndex = new HashMap<>();
+
 	/**
 	 * Constructor.
 	 */
@@ -98,11 +101,11 @@ public class PatternGraphImpl extends DefaultListenableGraph<PatternVertex, Patt
 	 * @return Whether the graph has changed or not (ergo the edge has been removed)
 	 */
 	public boolean removeEdgeSensitive(PatternEdge toRemove) {
-		if (toRemove.getMetadata().isSingleValue()) {
-			for (PatternEdge e : edgeSet()) {
-				if (toRemove.equalsIfmap(e)) {
-					return removeEdge(e);
-				}
+		LinkKey key = singleValueKey(toRemove);
+		if (key != null) {
+			PatternEdge existing = mSingleValueIndex.get(key);
+			if (existing != null) {
+				return removeEdge(existing);
 			}
 		}
 		return removeEdge(toRemove);
@@ -110,21 +113,68 @@ public class PatternGraphImpl extends DefaultListenableGraph<PatternVertex, Patt
 
 	@Override
 	public boolean addEdgeSensitive(PatternVertex v1, PatternVertex v2, PatternEdge toAdd) {
-		if (!toAdd.getMetadata().isSingleValue()) {
-			return addEdge(v1, v2, toAdd);
-		} else {
-			for (PatternEdge e : edgeSet()) {
-				if (toAdd.equalsIfmap(e)) {
-					if (!e.equals(toAdd)) {
-						removeEdgeSensitive(e);
-						return addEdge(v1, v2, toAdd);
-					}
-				}
+		LinkKey key = singleValueKey(toAdd);
+		if (key != null) {
+			PatternEdge existing = mSingleValueIndex.get(key);
+			if (existing != null && !existing.equals(toAdd)) {
+				removeEdge(existing);
 			}
 		}
 		return addEdge(v1, v2, toAdd);
 	}
 
+	@Override
+	public boolean addEdge(PatternVertex v1, PatternVertex v2, PatternEdge e) {
+		boolean modified = super.addEdge(v1, v2, e);
+		if (modified) {
+			LinkKey key = singleValueKey(e);
+			if (key != null) {
+				mSingleValueIndex.put(key, e);
+			}
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean removeEdge(PatternEdge e) {
+		boolean modified = super.removeEdge(e);
+		if (modified) {
+			LinkKey key = singleValueKey(e);
+			if (key != null && e.equals(mSingleValueIndex.get(key))) {
+				mSingleValueIndex.remove(key);
+			}
+		}
+		return modified;
+	}
+
+	@Override
+	public PatternEdge removeEdge(PatternVertex v1, PatternVertex v2) {
+		PatternEdge removed = super.removeEdge(v1, v2);
+		if (removed != null) {
+			LinkKey key = singleValueKey(removed);
+			if (key != null && removed.equals(mSingleValueIndex.get(key))) {
+				mSingleValueIndex.remove(key);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * @param e
+	 *            The edge
+	 * @return The key of the edge in the singleValue index, or null if the edge is not singleValue
+	 */
+	private LinkKey singleValueKey(PatternEdge e) {
+		if (!(e instanceof BasicPatternEdge)) {
+			return null;
+		}
+		BasicPatternEdge edge = (BasicPatternEdge) e;
+		if (!edge.getMetadata().isSingleValue()) {
+			return null;
+		}
+		return new LinkKey(edge.getV1(), edge.getV2(), edge.getMetadata().getTypeName());
+	}
+
 	@Override
 	public boolean isCompletelyMatched() {
 		for (PatternVertex v : vertexSet()) {
@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternGraph;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.GraphStatistics;
+
+/**
+ * Plans the matching of a pattern on a graph: estimates for every pattern vertex how many vertices of the real graph
+ * match it (based on the {@link GraphStatistics} of the real graph) and chooses the most selective one as the starting
+ * point, so the least number of partial matches has to be followed.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class QueryPlanner {
+
+	private static final List<String> STANDARD_IDENTIFIER_TYPES = Arrays.asList("access-request", "device",
+			"identity", "ip-address", "mac-address");
+
+	private QueryPlanner() {
+	}
+
+	/**
+	 * Estimates the number of vertices in the real graph matching a pattern vertex. Assumes the restrictions of the
+	 * pattern vertex to be independent.
+	 * 
+	 * @param vertex
+	 *            The pattern vertex
+	 * @param statistics
+	 *            The statistics of the real graph
+	 * @return The estimated number of candidates
+	 */
+	public static double estimateCandidates(PatternVertex vertex, GraphStatistics statistics) {
+		String type = vertex.getTypeName();
+		int typeCount = statistics.getVertexCount(type);
+		double estimate = typeCount;
+		if (!isStandardIdentifierType(type)) {
+			// might be the type of an extended identifier
+			estimate += statistics.getExtendedIdentifierCount();
+		}
+		if (estimate == 0) {
+			return 0;
+		}
+		if (typeCount > 0) {
+			for (String property : vertex.getProperties()) {
+				String value = vertex.valueFor(property);
+				if (value == null || vertex.isPropertyRestricted(property) || vertex.isPropertyRelated(property)) {
+					continue;
+				}
+				estimate *= (double) statistics.estimateVertexCount(type, property, value) / typeCount;
+			}
+		}
+		for (PatternMetadata m : vertex.getMetadata()) {
+			estimate = Math.min(estimate, statistics.getVertexMetadataCount(m.getTypeName()));
+		}
+		return estimate;
+	}
+
+	/**
+	 * @param type
+	 *            The type name of a pattern vertex
+	 * @return Whether it is one of the IF-MAP identifier types, otherwise it might be the type of an extended
+	 *         identifier
+	 */
+	static boolean isStandardIdentifierType(String type) {
+		return STANDARD_IDENTIFIER_TYPES.contains(type);
+	}
+
+	/**
+	 * Orders the vertices of a pattern from the most to the least selective one.
+	 * 
+	 * @param pattern
+	 *            The pattern
+	 * @param statistics
+	 *            The statistics of the real graph
+	 * @return The vertices of the pattern, most selective first
+	 */
+	public static List<PatternVertex> orderBySelectivity(PatternGraph pattern, GraphStatistics statistics) {
+		final Map<PatternVertex, Double> estimates = new IdentityHashMap<>();
+		List<PatternVertex> result = new ArrayList<>(pattern.vertexSet());
+		for (PatternVertex v : result) {
+			estimates.put(v, estimateCandidates(v, statistics));
+		}
+		Collections.sort(result, new Comparator<PatternVertex>() {
+			@Override
+			public int compare(PatternVertex v1, PatternVertex v2) {
+				return Double.compare(estimates.get(v1), estimates.get(v2));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @param pattern
+	 *            The pattern
+	 * @param statistics
+	 *            The statistics of the real graph
+	 * @return The most selective vertex of the pattern - or null if the pattern is empty
+	 */
+	public static PatternVertex chooseStart(PatternGraph pattern, GraphStatistics statistics) {
+		PatternVertex start = null;
+		double best = Double.MAX_VALUE;
+		for (PatternVertex v : pattern.vertexSet()) {
+			double estimate = estimateCandidates(v, statistics);
+			if (start == null || estimate < best) {
+				start = v;
+				best = estimate;
+			}
+		}
+		return start;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Relation table of a matching (the values assigned to the related properties of a pattern) which records the order
+ * in which the variables were assigned, so the assignments can be undone when backtracking.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+final class RelationTable extends HashMap<String, String> {
+
+	private static final long serialVersionUID = 3906424741387294385L;
+
+	private final List<String> mTrail = new ArrayList<>();
+
+	@Override
+	public String put(String key, String value) {
+		if (!containsKey(key)) {
+			mTrail.add(key);
+		}
+		return super.put(key, value);
+	}
+
+	/**
+	 * @return The current position in the trail
+	 */
+	int mark() {
+		return mTrail.size();
+	}
+
+	/**
+	 * Removes all variables assigned after the given position.
+	 * 
+	 * @param mark
+	 *            The position returned by {@link #mark()}
+	 */
+	void undo(int mark) {
+		while (mTrail.size() > mark) {
+			remove(mTrail.remove(mTrail.size() - 1));
+		}
+	}
+}
@@ -38,17 +38,15 @@
  */
 package de.hshannover.f4.trust.irongpm.algorithm;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternEdge;
+import de.hshannover.f4.trust.irongpm.algorithm.MatchPlan.VisitOrder;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternGraph;
-import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternMetadata;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternRule;
 import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternVertex;
-import de.hshannover.f4.trust.irongpm.algorithm.util.ComparatorUtil;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraph;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
@@ -66,9 +64,15 @@ public class RuleComparison {
 
 	private PatternRule mRule;
 	private PatternGraph mPatternGraph;
+	private MatchPlan mPlan;
 	private IfmapGraph mRealGraph;
 	private Set<RuleMatch> mResult;
 
+	// the binding state of the backtracking
+	private IfmapVertex[] mVertexBindings;
+	private IfmapEdge[] mEdgeBindings;
+	private RelationTable mRelations;
+
 	/**
 	 * Constructor.
 	 * 
@@ -78,11 +82,107 @@ public class RuleComparison {
 	 *            The real graph for the comparison.
 	 */
 	public RuleComparison(PatternRule rule, IfmapGraph realGraph) {
+		this(rule, new MatchPlan(rule.getPattern()), realGraph);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param rule
+	 *            The rule.
+	 * @param plan
+	 *            The compiled pattern of the rule.
+	 * @param realGraph
+	 *            The real graph for the comparison.
+	 */
+	public RuleComparison(PatternRule rule, MatchPlan plan, IfmapGraph realGraph) {
+		init(rule, plan, realGraph);
+		compare();
+	}
+
+	/**
+	 * Constructor for an incremental comparison which only looks for matches containing the given vertex.
+	 * 
+	 * @param rule
+	 *            The rule.
+	 * @param realGraph
+	 *            The real graph for the comparison.
+	 * @param anchor
+	 *            The vertex of the real graph every match has to contain, e.g. a recently changed vertex.
+	 */
+	public RuleComparison(PatternRule rule, IfmapGraph realGraph, IfmapVertex anchor) {
+		init(rule, new MatchPlan(rule.getPattern()), realGraph);
+		compare(anchor);
+	}
+
+	/**
+	 * Constructor for an incremental comparison which only looks for matches containing the given edge.
+	 * 
+	 * @param rule
+	 *            The rule.
+	 * @param realGraph
+	 *            The real graph for the comparison.
+	 * @param anchor
+	 *            The edge of the real graph every match has to contain, e.g. a recently added edge.
+	 */
+	public RuleComparison(PatternRule rule, IfmapGraph realGraph, IfmapEdge anchor) {
+		init(rule, new MatchPlan(rule.getPattern()), realGraph);
+		compare(anchor);
+	}
+
+	/**
+	 * Constructor for an incremental comparison which only looks for matches containing at least one of the given
+	 * edges or vertices.
+	 * 
+	 * @param rule
+	 *            The rule.
+	 * @param realGraph
+	 *            The real graph for the comparison.
+	 * @param edgeAnchors
+	 *            Edges of the real graph, e.g. the edges added by an update.
+	 * @param vertexAnchors
+	 *            Vertices of the real graph, e.g. the vertices modified by an update.
+	 */
+	public RuleComparison(PatternRule rule, IfmapGraph realGraph, Collection<IfmapEdge> edgeAnchors,
+			Collection<IfmapVertex> vertexAnchors) {
+		this(rule, new MatchPlan(rule.getPattern()), realGraph, edgeAnchors, vertexAnchors);
+	}
+
+	/**
+	 * Constructor for an incremental comparison which only looks for matches containing at least one of the given
+	 * edges or vertices.
+	 * 
+	 * @param rule
+	 *            The rule.
+	 * @param plan
+	 *            The compiled pattern of the rule.
+	 * @param realGraph
+	 *            The real graph for the comparison.
+	 * @param edgeAnchors
+	 *            Edges of the real graph, e.g. the edges added by an update.
+	 * @param vertexAnchors
+	 *            Vertices of the real graph, e.g. the vertices modified by an update.
+	 */
+	public RuleComparison(PatternRule rule, MatchPlan plan, IfmapGraph realGraph, Collection<IfmapEdge> edgeAnchors,
+			Collection<IfmapVertex> vertexAnchors) {
+		init(rule, plan, realGraph);
+		for (IfmapEdge anchor : edgeAnchors) {
+			compare(anchor);
+		}
+		for (IfmapVertex anchor : vertexAnchors) {
+			compare(anchor);
+		}
+	}
+
+	private void init(PatternRule rule, MatchPlan plan, IfmapGraph realGraph) {
 		mRule = rule;
 		mPatternGraph = mRule.getPattern();
+		mPlan = plan;
 		mRealGraph = realGraph;
 		mResult = new HashSet<>();
-		compare();
+		mVertexBindings = new IfmapVertex[mPlan.getVertexCount()];
+		mEdgeBindings = new IfmapEdge[mPlan.getEdgeCount()];
+		mRelations = new RelationTable();
 	}
 
 	/**
@@ -92,149 +192,210 @@ public class RuleComparison {
 	public void compare() {
 
 		// Empty Pattern - nothing to do
-		if (mPatternGraph.vertexSet().isEmpty()) {
+		if (mPlan.getVertexCount() == 0) {
 			return;
 		}
 
-		PatternVertex patternStart = mPatternGraph.vertexSet().iterator().next();
-
-		// Randomly choose a starting point and start recursive algorithm for
-		// each match in the real graph.
-		for (IfmapVertex realStart : mRealGraph.vertexSet()) {
-
-			HashMap<String, String> initalRelation = new HashMap<>();
-			if (ComparatorUtil.compare(patternStart, realStart, initalRelation)) {
-				PatternGraph fillingPattern = mPatternGraph.copy();
-				fillingPattern.setRelationTable(initalRelation);
-				PatternVertex fillingPatternStart = findVertexInGraph(fillingPattern, patternStart);
-				fillingPatternStart.assignMatch(realStart);
-				traversePattern(fillingPatternStart, realStart, fillingPattern);
+		// Start with the most selective pattern vertex and start recursive
+		// algorithm for each candidate in the real graph - or with the
+		// pattern edge of the rarest metadata type if it has fewer candidates.
+		PatternVertex patternStart = QueryPlanner.chooseStart(mPatternGraph, mRealGraph.getStatistics());
+		Collection<IfmapVertex> vertexCandidates = candidates(patternStart);
+		int edgeStart = -1;
+		Collection<IfmapEdge> edgeCandidates = null;
+		for (int e = 0; e < mPlan.getEdgeCount(); e++) {
+			Collection<IfmapEdge> candidates = mRealGraph.getEdgesOfType(mPlan.getEdge(e).getMetadata()
+					.getTypeName());
+			int best = edgeCandidates == null ? vertexCandidates.size() : 2 * edgeCandidates.size();
+			if (2 * candidates.size() < best) {
+				edgeStart = e;
+				edgeCandidates = candidates;
+			}
+		}
+		if (edgeStart < 0) {
+			int v = mPlan.getOrdinal(patternStart);
+			for (IfmapVertex realStart : vertexCandidates) {
+				start(v, realStart);
+			}
+		} else {
+			for (IfmapEdge realEdge : edgeCandidates) {
+				start(edgeStart, realEdge);
 			}
 		}
 	}
 
-	private void traversePattern(PatternVertex currentPatternVertex, IfmapVertex currentRealVertex, PatternGraph pattern) {
-		boolean incomplete = false;
-
-		for (PatternEdge patternEdge : pattern.edgesOf(currentPatternVertex)) {
-			if (!patternEdge.isMatched()) {
-				incomplete = true;
-				for (IfmapEdge realEdge : mRealGraph.edgesOf(currentRealVertex)) {
-					if (ComparatorUtil.compare(patternEdge, realEdge, pattern.getRelationTable())) {
-						// potential edge found
-						PatternVertex patternTarget;
-						IfmapVertex realTarget;
-						if (mPatternGraph.getEdgeSource(patternEdge).equals(currentPatternVertex)) {
-							patternTarget = mPatternGraph.getEdgeTarget(patternEdge);
-						} else {
-							patternTarget = mPatternGraph.getEdgeSource(patternEdge);
-						}
-						if (mRealGraph.getEdgeSource(realEdge).equals(currentRealVertex)) {
-							realTarget = mRealGraph.getEdgeTarget(realEdge);
-						} else {
-							realTarget = mRealGraph.getEdgeSource(realEdge);
-						}
-						if (patternTarget.isMatched()) {
-							// if target has already been visited - check if
-							// target is equal
-							if (patternTarget.getMatchedVertex().equals(realTarget)) {
-								// Copy pattern and vertices and assign
-								// matches
-								// and traverse algorithm
-								PatternGraph patternCopy = pattern.copy();
-								PatternVertex currentVertexInCopy = findVertexInGraph(patternCopy, currentPatternVertex);
-								PatternVertex targetVertexInCopy = findVertexInGraph(patternCopy, patternTarget);
-								PatternEdge edgeCopy = null;
-								for (PatternEdge e : patternCopy.getAllEdges(currentVertexInCopy, targetVertexInCopy)) {
-									if (e.equals(patternEdge)) {
-										edgeCopy = e;
-										break;
-									}
-								}
-								edgeCopy.assignMatch(realEdge);
-
-								traversePattern(targetVertexInCopy, realTarget, patternCopy);
-							}
-						} else {
-							// else check the equality of the edge target
-							if (ComparatorUtil.compare(patternTarget, realTarget, pattern.getRelationTable())) {
-								// Copy pattern and vertices and assign
-								// matches
-								// and traverse algorithm
-								PatternGraph patternCopy = pattern.copy();
-								PatternVertex currentVertexInCopy = findVertexInGraph(patternCopy, currentPatternVertex);
-								PatternVertex targetVertexInCopy = findVertexInGraph(patternCopy, patternTarget);
-
-								PatternEdge edgeCopy = null;
-								for (PatternEdge e : patternCopy.getAllEdges(currentVertexInCopy, targetVertexInCopy)) {
-									if (e.equals(patternEdge)) {
-										edgeCopy = e;
-										break;
-									}
-								}
-								edgeCopy.assignMatch(realEdge);
-								targetVertexInCopy.assignMatch(realTarget);
-								traversePattern(targetVertexInCopy, realTarget, patternCopy);
-							}
-						}
-					}
-				}
-				break;
+	/**
+	 * Looks up the vertices of the real graph which might match a pattern vertex using the indexes of the real graph.
+	 * 
+	 * @param patternVertex
+	 *            The pattern vertex
+	 * @return A superset of the matching vertices
+	 */
+	private Collection<IfmapVertex> candidates(PatternVertex patternVertex) {
+		String type = patternVertex.getTypeName();
+		if (!QueryPlanner.isStandardIdentifierType(type)) {
+			// might be an extended identifier, they are of type identity
+			Set<IfmapVertex> result = new HashSet<>(mRealGraph.getVerticesOfType(type));
+			result.addAll(mRealGraph.getVerticesOfType("identity"));
+			return result;
+		}
+		Collection<IfmapVertex> result = mRealGraph.getVerticesOfType(type);
+		for (String property : patternVertex.getProperties()) {
+			String value = patternVertex.valueFor(property);
+			if (value == null || patternVertex.isPropertyRestricted(property)
+					|| patternVertex.isPropertyRelated(property)) {
+				continue;
 			}
+			Collection<IfmapVertex> withValue = mRealGraph.getVerticesWithProperty(property, value);
+			if (withValue != null && withValue.size() < result.size()) {
+				result = withValue;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the matching of the pattern anchored on one vertex of the real graph. Every pattern vertex which matches the
+	 * anchor is used as a starting point, so only matches containing the anchor are found.
+	 * 
+	 * @param anchor
+	 *            The vertex of the real graph
+	 */
+	public void compare(IfmapVertex anchor) {
+		IfmapVertex realStart = mRealGraph.findVertex(anchor);
+		if (realStart == null) {
+			return;
+		}
+		for (int v = 0; v < mPlan.getVertexCount(); v++) {
+			start(v, realStart);
+		}
+	}
+
+	/**
+	 * Runs the matching of the pattern anchored on one edge of the real graph. Every pattern edge which matches the
+	 * anchor is used as a starting point (in both directions), so only matches containing the anchor are found.
+	 * 
+	 * @param anchor
+	 *            The edge of the real graph
+	 */
+	public void compare(IfmapEdge anchor) {
+		if (!mRealGraph.containsEdge(anchor)) {
+			return;
+		}
+		for (int e = 0; e < mPlan.getEdgeCount(); e++) {
+			start(e, anchor);
 		}
-		if (incomplete) {
+	}
+
+	private void start(int v, IfmapVertex realStart) {
+		VisitOrder order = mPlan.getVertexOrder(v);
+		if (order == null) {
 			return;
 		}
-		if (pattern.isCompletelyMatched()) {
-			mResult.add(convertAndPrepareResult(pattern));
+		if (mPlan.matchesVertex(v, realStart, mRelations)) {
+			mVertexBindings[v] = realStart;
+			extend(order, 0);
+			mVertexBindings[v] = null;
+		}
+		mRelations.undo(0);
+	}
+
+	private void start(int e, IfmapEdge realEdge) {
+		VisitOrder order = mPlan.getEdgeOrder(e);
+		if (order == null) {
 			return;
 		}
-		for (PatternVertex patternVertex : pattern.vertexSet()) {
-			if (patternVertex.isMatched() && !pattern.allEdgesMatched(patternVertex)
-					&& !patternVertex.equals(currentPatternVertex)) {
-				traversePattern(patternVertex, patternVertex.getMatchedVertex(), pattern);
-			}
+		IfmapVertex realSource = mRealGraph.getEdgeSource(realEdge);
+		IfmapVertex realTarget = mRealGraph.getEdgeTarget(realEdge);
+		int source = mPlan.getSource(e);
+		int target = mPlan.getTarget(e);
+		start(order, e, realEdge, source, realSource, target, realTarget);
+		if (source != target) {
+			start(order, e, realEdge, target, realSource, source, realTarget);
 		}
-		return;
 	}
 
-	private PatternVertex findVertexInGraph(PatternGraph graph, PatternVertex vertex) {
-		for (PatternVertex v : graph.vertexSet()) {
-			if (vertex.equalsWithMatch(v)) {
-				return v;
+	private void start(VisitOrder order, int e, IfmapEdge realEdge, int v1, IfmapVertex realV1, int v2,
+			IfmapVertex realV2) {
+		if (v1 == v2 && !realV1.equals(realV2)) {
+			return;
+		}
+		if (mPlan.matchesVertex(v1, realV1, mRelations) && mPlan.matchesVertex(v2, realV2, mRelations)
+				&& mPlan.matchesEdge(e, realEdge, mRelations)) {
+			mVertexBindings[v1] = realV1;
+			mVertexBindings[v2] = realV2;
+			mEdgeBindings[e] = realEdge;
+			extend(order, 0);
+			mEdgeBindings[e] = null;
+			mVertexBindings[v2] = null;
+			mVertexBindings[v1] = null;
+		}
+		mRelations.undo(0);
+	}
+
+	/**
+	 * Extends the current partial match by the next edge of the visit order in every possible way and backtracks
+	 * afterwards, so the binding state is the same as before when the method returns.
+	 */
+	private void extend(VisitOrder order, int step) {
+		if (step == order.size()) {
+			mResult.add(convertAndPrepareResult());
+			return;
+		}
+		int e = order.getEdge(step);
+		int from = order.getFrom(step);
+		int to = mPlan.getOpposite(e, from);
+		IfmapVertex realFrom = mVertexBindings[from];
+		for (IfmapEdge realEdge : mRealGraph.edgesOf(realFrom)) {
+			int mark = mRelations.mark();
+			if (mPlan.matchesEdge(e, realEdge, mRelations)) {
+				IfmapVertex realTo;
+				if (mRealGraph.getEdgeSource(realEdge).equals(realFrom)) {
+					realTo = mRealGraph.getEdgeTarget(realEdge);
+				} else {
+					realTo = mRealGraph.getEdgeSource(realEdge);
+				}
+				if (mVertexBindings[to] != null) {
+					if (mVertexBindings[to].equals(realTo)) {
+						mEdgeBindings[e] = realEdge;
+						extend(order, step + 1);
+						mEdgeBindings[e] = null;
+					}
+				} else if (mPlan.matchesVertex(to, realTo, mRelations)) {
+					mVertexBindings[to] = realTo;
+					mEdgeBindings[e] = realEdge;
+					extend(order, step + 1);
+					mEdgeBindings[e] = null;
+					mVertexBindings[to] = null;
+				}
 			}
+			mRelations.undo(mark);
 		}
-		return null;
 	}
 
 	public Set<RuleMatch> getResult() {
 		return mResult;
 	}
 
-	private RuleMatch convertAndPrepareResult(PatternGraph completedPattern) {
+	private RuleMatch convertAndPrepareResult() {
 		IfmapGraphImpl result = new IfmapGraphImpl();
 		result.setLastUpdated(mRealGraph.getLastUpdated());
 
-		for (PatternVertex v : completedPattern.vertexSet()) {
-			result.addVertex(stripMetadataFromVertex(v, v.getMatchedVertex(), completedPattern.getRelationTable()));
+		for (int v = 0; v < mVertexBindings.length; v++) {
+			result.addVertex(stripMetadataFromVertex(v, mVertexBindings[v]));
 		}
-		for (PatternEdge e : completedPattern.edgeSet()) {
-			result.addEdgeSensitive(mRealGraph.getEdgeSource(e.getMatchedEdge()),
-					mRealGraph.getEdgeTarget(e.getMatchedEdge()), e.getMatchedEdge());
+		for (IfmapEdge e : mEdgeBindings) {
+			result.addEdgeSensitive(mRealGraph.getEdgeSource(e), mRealGraph.getEdgeTarget(e), e);
 		}
-		return new RuleMatch(mRule.getId(), result, completedPattern.getPublishVertex().getMatchedVertex(),
-				completedPattern.getRelationTable());
+		return new RuleMatch(mRule.getId(), result, mVertexBindings[mPlan.getPublishVertex()],
+				new HashMap<>(mRelations));
 	}
 
-	private IfmapVertex stripMetadataFromVertex(PatternVertex patternVertex, IfmapVertex vertex,
-			Map<String, String> relationTable) {
+	private IfmapVertex stripMetadataFromVertex(int v, IfmapVertex vertex) {
 		IfmapVertexImpl result = new IfmapVertexImpl(vertex);
 		for (Metadata rm : vertex.getMetadata()) {
-			for (PatternMetadata pm : patternVertex.getMetadata()) {
-				if (ComparatorUtil.compare(pm, rm, relationTable)) {
-					result.addMetadata(rm);
-					break;
-				}
+			if (mPlan.matchesVertexMetadata(v, rm, mRelations)) {
+				result.addMetadata(rm);
 			}
 		}
 		return result;
@@ -0,0 +1,324 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.algorithm.action;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import de.hshannover.f4.trust.irongpm.algorithm.RuleMatch;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternRule;
+
+/**
+ * Performs the actions of fired rules on an own pool of worker threads, so the matching does not have to wait for
+ * slow actions (database, MAP server). The actions of one match are performed in their order. An action which exceeds
+ * the timeout is interrupted; an action which throws an exception (e.g. because it was aborted by the interrupt) is
+ * retried with an increasing delay. An action which returns normally is never performed again, even if the timeout
+ * expired meanwhile, since actions like publishing or storing an incident are not idempotent. If too many matches are
+ * waiting, {@link #submit(PatternRule, RuleMatch)} blocks.
+ * <p>
+ * With more than one worker thread the actions of different matches run concurrently, so the actions have to be
+ * thread-safe.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class ActionPipeline {
+
+	private static final Logger LOGGER = Logger.getLogger(ActionPipeline.class);
+
+	private final ThreadPoolExecutor mWorkers;
+	private final ScheduledExecutorService mTimer;
+	private final Semaphore mCapacity;
+	private final long mTimeout;
+	private final int mRetries;
+	private final long mRetryDelay;
+	private final AtomicLong mSubmitted = new AtomicLong();
+	private final AtomicLong mSucceeded = new AtomicLong();
+	private final AtomicLong mFailed = new AtomicLong();
+	private final AtomicLong mTimedOut = new AtomicLong();
+	private final AtomicLong mRetried = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param threads
+	 *            The number of worker threads
+	 * @param queueSize
+	 *            The maximum number of matches waiting for their actions
+	 * @param timeout
+	 *            The time in milliseconds one action may take, 0 for no timeout
+	 * @param retries
+	 *            How often a failed action is retried
+	 * @param retryDelay
+	 *            The delay in milliseconds before the first retry, doubled for every further retry
+	 */
+	public ActionPipeline(int threads, int queueSize, long timeout, int retries, long retryDelay) {
+		mWorkers = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new NamedFactory("irongpm-action-"));
+		mWorkers.allowCoreThreadTimeOut(true);
+		mTimer = Executors.newSingleThreadScheduledExecutor(new NamedFactory("irongpm-action-timer-"));
+		mCapacity = new Semaphore(Math.max(1, queueSize));
+		mTimeout = timeout;
+		mRetries = Math.max(0, retries);
+		mRetryDelay = Math.max(0, retryDelay);
+	}
+
+	/**
+	 * Enqueues the actions of a fired rule. Blocks if the maximum number of waiting matches is reached.
+	 * 
+	 * @param rule
+	 *            The rule which fired
+	 * @param match
+	 *            The match which made the rule fire
+	 */
+	public void submit(PatternRule rule, RuleMatch match) {
+		mCapacity.acquireUninterruptibly();
+		mSubmitted.incrementAndGet();
+		schedule(new ActionJob(rule, match, 0, 0), 0);
+	}
+
+	private void schedule(final ActionJob job, long delay) {
+		try {
+			if (delay <= 0) {
+				mWorkers.execute(job);
+			} else {
+				mTimer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						schedule(job, 0);
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Action pipeline has been shut down, actions of rule " + job.mRule.getId() + " are skipped.");
+			mCapacity.release();
+		}
+	}
+
+	/**
+	 * Stops the pipeline. Actions which are already waiting are still performed, retries are skipped.
+	 */
+	public void shutdown() {
+		mTimer.shutdown();
+		mWorkers.shutdown();
+	}
+
+	/**
+	 * @return The number of matches which can be submitted before {@link #submit(PatternRule, RuleMatch)} blocks
+	 */
+	public int getAvailableCapacity() {
+		return mCapacity.availablePermits();
+	}
+
+	/**
+	 * @return The number of matches waiting for or performing their actions
+	 */
+	public int getPendingCount() {
+		return mWorkers.getQueue().size() + mWorkers.getActiveCount();
+	}
+
+	/**
+	 * @return The number of submitted matches
+	 */
+	public long getSubmittedCount() {
+		return mSubmitted.get();
+	}
+
+	/**
+	 * @return The number of successfully performed actions
+	 */
+	public long getSucceededCount() {
+		return mSucceeded.get();
+	}
+
+	/**
+	 * @return The number of actions which failed after all retries
+	 */
+	public long getFailedCount() {
+		return mFailed.get();
+	}
+
+	/**
+	 * @return The number of action attempts which exceeded the timeout
+	 */
+	public long getTimedOutCount() {
+		return mTimedOut.get();
+	}
+
+	/**
+	 * @return The number of retried action attempts
+	 */
+	public long getRetriedCount() {
+		return mRetried.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ActionPipeline[pending=" + getPendingCount() + ", submitted=" + getSubmittedCount() + ", succeeded="
+				+ getSucceededCount() + ", failed=" + getFailedCount() + ", timedOut=" + getTimedOutCount()
+				+ ", retried=" + getRetriedCount() + "]";
+	}
+
+	/**
+	 * Performs the actions of one match, starting with the action at the given index.
+	 */
+	private class ActionJob implements Runnable {
+
+		private final PatternRule mRule;
+		private final RuleMatch mMatch;
+		private final int mIndex;
+		private final int mAttempt;
+		private Thread mWorker;
+		private int mGeneration = 0;
+		private boolean mFinished = false;
+
+		ActionJob(PatternRule rule, RuleMatch match, int index, int attempt) {
+			mRule = rule;
+			mMatch = match;
+			mIndex = index;
+			mAttempt = attempt;
+		}
+
+		@Override
+		public void run() {
+			// the permit of the match is handed over to a scheduled retry, otherwise it is released here
+			boolean release = true;
+			try {
+				List<RuleAction> actions = mRule.getActions();
+				for (int i = mIndex; i < actions.size(); i++) {
+					int attempt = i == mIndex ? mAttempt : 0;
+					if (!perform(actions.get(i))) {
+						if (attempt < mRetries) {
+							mRetried.incrementAndGet();
+							release = false;
+							schedule(new ActionJob(mRule, mMatch, i, attempt + 1), mRetryDelay << attempt);
+							return;
+						}
+						mFailed.incrementAndGet();
+						LOGGER.error("Action " + actions.get(i).getClass().getSimpleName() + " of rule "
+								+ mRule.getId() + " failed after " + (attempt + 1) + " attempts.");
+					}
+				}
+			} finally {
+				if (release) {
+					mCapacity.release();
+				}
+			}
+		}
+
+		private boolean perform(RuleAction action) {
+			final int generation;
+			synchronized (this) {
+				mWorker = Thread.currentThread();
+				generation = ++mGeneration;
+				mFinished = false;
+			}
+			ScheduledFuture<?> watchdog = null;
+			if (mTimeout > 0 && !mTimer.isShutdown()) {
+				watchdog = mTimer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						expire(generation);
+					}
+				}, mTimeout, TimeUnit.MILLISECONDS);
+			}
+			boolean success = false;
+			try {
+				action.performAction(mRule, mMatch);
+				success = true;
+			} catch (RuntimeException e) {
+				LOGGER.warn("Action " + action.getClass().getSimpleName() + " of rule " + mRule.getId() + " failed: "
+						+ e.getMessage());
+			} finally {
+				if (watchdog != null) {
+					watchdog.cancel(false);
+				}
+				synchronized (this) {
+					mFinished = true;
+				}
+				// clear a possible interrupt of the watchdog, an action which returned is done anyway
+				Thread.interrupted();
+			}
+			if (success) {
+				mSucceeded.incrementAndGet();
+			}
+			return success;
+		}
+
+		private synchronized void expire(int generation) {
+			if (generation == mGeneration && !mFinished) {
+				mTimedOut.incrementAndGet();
+				LOGGER.warn("Action of rule " + mRule.getId() + " exceeded the timeout of " + mTimeout + " ms.");
+				mWorker.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Creates named daemon threads.
+	 */
+	private static class NamedFactory implements ThreadFactory {
+
+		private final String mPrefix;
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		NamedFactory(String prefix) {
+			mPrefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, mPrefix + mCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
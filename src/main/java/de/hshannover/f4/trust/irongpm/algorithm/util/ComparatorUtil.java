@@ -184,7 +184,7 @@ public final class ComparatorUtil {
 	 */
 	public static boolean compare(PatternVertex pv, IfmapVertex rv, Map<String, String> relationTable) {
 		if (rv.isExtendedIdentifier()) {
-			rv = new ExtendedIdentifierEncapsulation(rv);
+			rv = ExtendedIdentifierEncapsulation.of(rv);
 		}
 		if (!compareProp(pv, rv, relationTable)) {
 			return false;
@@ -41,9 +41,7 @@ package de.hshannover.f4.trust.irongpm.ifmap;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -67,12 +65,62 @@ import de.hshannover.f4.trust.irongpm.util.SimpleKeyValueExtractor;
  */
 public class ExtendedIdentifierEncapsulation implements IfmapVertex {
 
+	private static final ThreadLocal<DocumentBuilder> BUILDER = new ThreadLocal<DocumentBuilder>() {
+		@Override
+		protected DocumentBuilder initialValue() {
+			try {
+				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+				factory.setNamespaceAware(true);
+				return factory.newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				throw new IllegalStateException("No XML parser available for extended identifiers", e);
+			}
+		}
+	};
+
 	private String mTypename;
-	private Map<String, String> mProperties;
+	private PropertyArray mProperties;
 	private IfmapVertex mOriginalVertex;
 
 	private ExtendedIdentifierEncapsulation() {
-		mProperties = new HashMap<>();
+		mProperties = new PropertyArray();
+	}
+
+	/**
+	 * Returns the encapsulation of an extended identifier, the one cached by an {@link IfmapVertexImpl} if possible,
+	 * so the nested XML is only parsed once per vertex.
+	 * 
+	 * @param extendedIdentifier
+	 *            The extended Identifier vertex to be encapsulated.
+	 * @return The encapsulation
+	 */
+	public static ExtendedIdentifierEncapsulation of(IfmapVertex extendedIdentifier) {
+		if (extendedIdentifier instanceof ExtendedIdentifierEncapsulation) {
+			return (ExtendedIdentifierEncapsulation) extendedIdentifier;
+		}
+		if (extendedIdentifier instanceof IfmapVertexImpl) {
+			ExtendedIdentifierEncapsulation cached = ((IfmapVertexImpl) extendedIdentifier).getExtendedIdentifier();
+			if (cached != null) {
+				return cached;
+			}
+		}
+		return new ExtendedIdentifierEncapsulation(extendedIdentifier);
+	}
+
+	/**
+	 * Creates an encapsulation of another instance of the same extended identifier (e.g. a copy) without parsing the
+	 * XML again.
+	 * 
+	 * @param extendedIdentifier
+	 *            The equal extended identifier vertex
+	 * @return The new encapsulation
+	 */
+	ExtendedIdentifierEncapsulation encapsulate(IfmapVertex extendedIdentifier) {
+		ExtendedIdentifierEncapsulation result = new ExtendedIdentifierEncapsulation();
+		result.mOriginalVertex = extendedIdentifier;
+		result.mTypename = mTypename;
+		result.mProperties = new PropertyArray(mProperties);
+		return result;
 	}
 
 	/**
@@ -91,28 +139,24 @@ public class ExtendedIdentifierEncapsulation implements IfmapVertex {
 	private void parseIdentifier(IfmapVertex extendedIdentifier) {
 		String extendedIdentifierXml = extendedIdentifier.valueFor("/identity[@name]");
 		String deEscapedXml = DocumentUtils.deEscapeXml(extendedIdentifierXml);
-		DocumentBuilder builder = null;
 		Document document = null;
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setNamespaceAware(true);
-			builder = factory.newDocumentBuilder();
+			DocumentBuilder builder = BUILDER.get();
+			builder.reset();
 			document = builder.parse(new InputSource(new StringReader(deEscapedXml)));
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
 		} catch (SAXException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		SimpleKeyValueExtractor extractor = new SimpleKeyValueExtractor();
-		mTypename = extractor.extractTypename(document);
-		mProperties = extractor.extractToKeyValuePairs(document);
+		mTypename = SymbolTable.intern(extractor.extractTypename(document));
+		mProperties.putAll(extractor.extractToKeyValuePairs(document));
 	}
 
 	@Override
 	public List<String> getProperties() {
-		return new ArrayList<>(mProperties.keySet());
+		return mProperties.keys();
 	}
 
 	/**
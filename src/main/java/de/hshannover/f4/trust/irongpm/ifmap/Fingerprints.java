@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Propable;
+
+/**
+ * 64 bit fingerprints of the graph elements. Equal elements have equal fingerprints, so they are used for the hash
+ * codes and to reject unequal elements before comparing all properties. Property paths enter by their id in the
+ * {@link SymbolTable}, so a fingerprint is only valid within one process.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+final class Fingerprints {
+
+	private static final long OFFSET = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	/**
+	 * Cause security.
+	 */
+	private Fingerprints() {
+	}
+
+	/**
+	 * @param s
+	 *            A string, may be null
+	 * @return The 64 bit FNV-1a hash of the characters
+	 */
+	static long hash(String s) {
+		if (s == null) {
+			return 0;
+		}
+		long h = OFFSET;
+		for (int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * PRIME;
+		}
+		return h;
+	}
+
+	/**
+	 * @param h
+	 *            The fingerprint so far
+	 * @param value
+	 *            The next value
+	 * @return The combined fingerprint
+	 */
+	static long mix(long h, long value) {
+		h ^= value;
+		h *= 0x9e3779b97f4a7c15L;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * @param fingerprint
+	 *            A fingerprint
+	 * @return The hash code derived from it
+	 */
+	static int hashCode(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	/**
+	 * @param v
+	 *            An identifier
+	 * @return Its fingerprint, the cached one for {@link IfmapVertexImpl}
+	 */
+	static long of(IfmapVertex v) {
+		if (v instanceof IfmapVertexImpl) {
+			return ((IfmapVertexImpl) v).fingerprint();
+		}
+		return mix(hash(v.getTypeName()), properties(v).fingerprint());
+	}
+
+	/**
+	 * @param e
+	 *            A link
+	 * @return Its fingerprint, the cached one for {@link IfmapEdgeImpl} (with regard to the IF-MAP equality)
+	 */
+	static long of(IfmapEdge e) {
+		if (e instanceof IfmapEdgeImpl) {
+			return ((IfmapEdgeImpl) e).fingerprint();
+		}
+		return e.hashCode();
+	}
+
+	/**
+	 * @param m
+	 *            A metadatum
+	 * @return Its fingerprint, the cached one for {@link MetadataImpl}
+	 */
+	static long of(Metadata m) {
+		if (m instanceof MetadataImpl) {
+			return ((MetadataImpl) m).fingerprint();
+		}
+		return metadata(m.getTypeName(), m.isSingleValue(), properties(m));
+	}
+
+	/**
+	 * @param type
+	 *            The type name
+	 * @param isSingleValue
+	 *            The cardinality
+	 * @param properties
+	 *            The properties
+	 * @return The fingerprint of a metadatum with the given content
+	 */
+	static long metadata(String type, boolean isSingleValue, PropertyArray properties) {
+		return mix(mix(hash(type), isSingleValue ? 1 : 2), properties.fingerprint());
+	}
+
+	private static PropertyArray properties(Propable p) {
+		PropertyArray properties = new PropertyArray();
+		for (String key : p.getProperties()) {
+			properties.put(key, p.valueFor(key));
+		}
+		return properties;
+	}
+}
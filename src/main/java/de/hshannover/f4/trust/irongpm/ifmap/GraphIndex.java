@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+
+/**
+ * Secondary indexes of an IF-MAP graph: the vertices by type name, the vertices by value of the configured property
+ * paths (e.g. /ip-address[@value]) and the edges by the type name of their metadata. Only contains elements which are
+ * equal in the IF-MAP sense, so the type and the properties of an indexed element never change. Can be read
+ * concurrently to the modification.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+final class GraphIndex {
+
+	private final Set<String> mProperties;
+	private final ConcurrentMap<String, Set<IfmapVertex>> mVertexTypes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<IfmapVertex>> mPropertyValues = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<IfmapEdge>> mEdgeTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param properties
+	 *            The property paths to index the values of
+	 */
+	GraphIndex(Collection<String> properties) {
+		mProperties = Collections.unmodifiableSet(new LinkedHashSet<>(properties));
+	}
+
+	/**
+	 * @return The indexed property paths
+	 */
+	Set<String> getProperties() {
+		return mProperties;
+	}
+
+	void vertexAdded(IfmapVertex v) {
+		bucket(mVertexTypes, v.getTypeName()).add(v);
+		for (String property : mProperties) {
+			String value = v.valueFor(property);
+			if (value != null) {
+				bucket(mPropertyValues, property + '\u0000' + value).add(v);
+			}
+		}
+	}
+
+	void vertexRemoved(IfmapVertex v) {
+		remove(mVertexTypes, v.getTypeName(), v);
+		for (String property : mProperties) {
+			String value = v.valueFor(property);
+			if (value != null) {
+				remove(mPropertyValues, property + '\u0000' + value, v);
+			}
+		}
+	}
+
+	void edgeAdded(IfmapEdge e) {
+		bucket(mEdgeTypes, e.getMetadata().getTypeName()).add(e);
+	}
+
+	void edgeRemoved(IfmapEdge e) {
+		remove(mEdgeTypes, e.getMetadata().getTypeName(), e);
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the identifiers
+	 * @return The indexed vertices of the given type
+	 */
+	Set<IfmapVertex> verticesOfType(String type) {
+		return view(mVertexTypes.get(type));
+	}
+
+	/**
+	 * @param property
+	 *            The property path
+	 * @param value
+	 *            The value of the property
+	 * @return The indexed vertices with the given property value - or null if the property is not indexed
+	 */
+	Set<IfmapVertex> verticesWithProperty(String property, String value) {
+		if (!mProperties.contains(property)) {
+			return null;
+		}
+		return view(mPropertyValues.get(property + '\u0000' + value));
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the metadata
+	 * @return The indexed edges with metadata of the given type
+	 */
+	Set<IfmapEdge> edgesOfType(String type) {
+		return view(mEdgeTypes.get(type));
+	}
+
+	private static <T> Set<T> bucket(ConcurrentMap<String, Set<T>> index, String key) {
+		Set<T> bucket = index.get(key);
+		if (bucket == null) {
+			index.putIfAbsent(key, Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>()));
+			bucket = index.get(key);
+		}
+		return bucket;
+	}
+
+	private static <T> void remove(ConcurrentMap<String, Set<T>> index, String key, T element) {
+		Set<T> bucket = index.get(key);
+		if (bucket != null && bucket.remove(element) && bucket.isEmpty()) {
+			index.remove(key, bucket);
+		}
+	}
+
+	private static <T> Set<T> view(Set<T> bucket) {
+		if (bucket == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(bucket);
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+
+/**
+ * Statistics about the content of an IF-MAP graph which are maintained with every modification: the number of vertices
+ * per type, the number of metadata per type (on vertices and edges) and value histograms of the vertex properties.
+ * The histogram of a property keeps exact counts up to {@link #MAX_DISTINCT_VALUES} distinct values, afterwards the
+ * values are assumed to be evenly distributed. Used to estimate the selectivity of patterns. Can be read concurrently
+ * to the modification, the numbers are estimates in that case.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class GraphStatistics {
+
+	/**
+	 * Maximum number of distinct values an exact histogram is kept for.
+	 */
+	public static final int MAX_DISTINCT_VALUES = 256;
+
+	private final AtomicInteger mVertexCount = new AtomicInteger();
+	private final AtomicInteger mExtendedIdentifierCount = new AtomicInteger();
+	private final ConcurrentMap<String, AtomicInteger> mVertexTypes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicInteger> mVertexMetadataTypes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicInteger> mEdgeMetadataTypes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+
+	void vertexAdded(IfmapVertex v) {
+		mVertexCount.incrementAndGet();
+		if (v.isExtendedIdentifier()) {
+			mExtendedIdentifierCount.incrementAndGet();
+		}
+		increment(mVertexTypes, v.getTypeName(), 1);
+		for (String property : v.getProperties()) {
+			histogram(v.getTypeName(), property).add(v.valueFor(property));
+		}
+		for (Metadata m : v.getMetadata()) {
+			metadataAdded(m);
+		}
+	}
+
+	void vertexRemoved(IfmapVertex v) {
+		mVertexCount.decrementAndGet();
+		if (v.isExtendedIdentifier()) {
+			mExtendedIdentifierCount.decrementAndGet();
+		}
+		increment(mVertexTypes, v.getTypeName(), -1);
+		for (String property : v.getProperties()) {
+			histogram(v.getTypeName(), property).remove(v.valueFor(property));
+		}
+		for (Metadata m : v.getMetadata()) {
+			metadataRemoved(m);
+		}
+	}
+
+	void metadataAdded(Metadata m) {
+		increment(mVertexMetadataTypes, m.getTypeName(), 1);
+	}
+
+	void metadataRemoved(Metadata m) {
+		increment(mVertexMetadataTypes, m.getTypeName(), -1);
+	}
+
+	void edgeAdded(IfmapEdge e) {
+		increment(mEdgeMetadataTypes, e.getMetadata().getTypeName(), 1);
+	}
+
+	void edgeRemoved(IfmapEdge e) {
+		increment(mEdgeMetadataTypes, e.getMetadata().getTypeName(), -1);
+	}
+
+	private static void increment(ConcurrentMap<String, AtomicInteger> counts, String key, int delta) {
+		AtomicInteger count = counts.get(key);
+		if (count == null) {
+			counts.putIfAbsent(key, new AtomicInteger());
+			count = counts.get(key);
+		}
+		count.addAndGet(delta);
+	}
+
+	private static int get(Map<String, AtomicInteger> counts, String key) {
+		AtomicInteger count = counts.get(key);
+		return count == null ? 0 : Math.max(0, count.get());
+	}
+
+	private Histogram histogram(String type, String property) {
+		String key = type + '\u0000' + property;
+		Histogram h = mHistograms.get(key);
+		if (h == null) {
+			mHistograms.putIfAbsent(key, new Histogram());
+			h = mHistograms.get(key);
+		}
+		return h;
+	}
+
+	/**
+	 * @return The number of vertices in the graph
+	 */
+	public int getVertexCount() {
+		return Math.max(0, mVertexCount.get());
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the identifiers
+	 * @return The number of vertices of the given type
+	 */
+	public int getVertexCount(String type) {
+		return get(mVertexTypes, type);
+	}
+
+	/**
+	 * @return The number of extended identifiers (they are counted as type identity)
+	 */
+	public int getExtendedIdentifierCount() {
+		return Math.max(0, mExtendedIdentifierCount.get());
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the identifiers
+	 * @param property
+	 *            The property path
+	 * @param value
+	 *            The value of the property
+	 * @return The (estimated) number of vertices of the given type with the given property value
+	 */
+	public int estimateVertexCount(String type, String property, String value) {
+		Histogram h = mHistograms.get(type + '\u0000' + property);
+		if (h == null) {
+			return 0;
+		}
+		return h.estimate(value);
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the metadata
+	 * @return The number of metadata of the given type attached to vertices
+	 */
+	public int getVertexMetadataCount(String type) {
+		return get(mVertexMetadataTypes, type);
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the metadata
+	 * @return The number of edges with metadata of the given type
+	 */
+	public int getEdgeCount(String type) {
+		return get(mEdgeMetadataTypes, type);
+	}
+
+	@Override
+	public String toString() {
+		return "GraphStatistics[vertices=" + getVertexCount() + ", types=" + mVertexTypes + ", vertexMetadata="
+				+ mVertexMetadataTypes + ", edges=" + mEdgeMetadataTypes + "]";
+	}
+
+	/**
+	 * Value histogram of one property. Falls back to the average number of vertices per value if there are too many
+	 * distinct values.
+	 */
+	private static final class Histogram {
+
+		private Map<String, Integer> mCounts = new HashMap<>();
+		private int mTotal = 0;
+		private int mDistinct = 0;
+
+		synchronized void add(String value) {
+			mTotal++;
+			if (mCounts == null) {
+				return;
+			}
+			Integer count = mCounts.get(value);
+			mCounts.put(value, count == null ? 1 : count + 1);
+			if (mCounts.size() > MAX_DISTINCT_VALUES) {
+				mDistinct = mCounts.size();
+				mCounts = null;
+			}
+		}
+
+		synchronized void remove(String value) {
+			mTotal--;
+			if (mCounts == null) {
+				return;
+			}
+			Integer count = mCounts.get(value);
+			if (count == null) {
+				return;
+			}
+			if (count > 1) {
+				mCounts.put(value, count - 1);
+			} else {
+				mCounts.remove(value);
+			}
+		}
+
+		synchronized int estimate(String value) {
+			if (mCounts != null) {
+				Integer count = mCounts.get(value);
+				return count == null ? 0 : count;
+			}
+			return mTotal <= 0 ? 0 : Math.max(1, mTotal / mDistinct);
+		}
+	}
+}
@@ -63,6 +63,7 @@ public class IfmapEdgeImpl extends DefaultEdge implements IfmapEdge {
 	private static final long serialVersionUID = -6826874478634914160L;
 
 	private Metadata mMeta;
+	private volatile long mFingerprint;
 
 	/**
 	 * Constructor to explicitly set the target and source vertives, to make sure, that they never are null. Source and
@@ -103,6 +104,27 @@ public class IfmapEdgeImpl extends DefaultEdge implements IfmapEdge {
 
 	public void setMetadata(Metadata meta) {
 		mMeta = meta;
+		mFingerprint = 0;
+	}
+
+	/**
+	 * Returns the fingerprint of the edge with regard to the IF-MAP understanding of equality (see
+	 * {@link #equals(Object)}): the vertices in any order and the type of singleValue or the whole multiValue
+	 * metadata. It is calculated on the first call after the metadata changed only, the vertices must not be changed
+	 * while the edge is in use.
+	 * 
+	 * @return The 64 bit fingerprint, equal edges have equal fingerprints
+	 */
+	long fingerprint() {
+		long result = mFingerprint;
+		if (result == 0) {
+			Metadata meta = getMetadata();
+			long metaFingerprint = meta.isSingleValue() ? Fingerprints.mix(Fingerprints.hash(meta.getTypeName()), 1)
+					: Fingerprints.of(meta);
+			result = Fingerprints.mix(metaFingerprint, Fingerprints.of(getV1()) + Fingerprints.of(getV2()));
+			mFingerprint = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -158,6 +180,9 @@ public class IfmapEdgeImpl extends DefaultEdge implements IfmapEdge {
 			return false;
 		}
 		IfmapEdgeImpl other = (IfmapEdgeImpl) e;
+		if (fingerprint() != other.fingerprint()) {
+			return false;
+		}
 		if (!getMetadata().getTypeName().equals(other.getMetadata().getTypeName())) {
 			return false;
 		}
@@ -186,14 +211,7 @@ public class IfmapEdgeImpl extends DefaultEdge implements IfmapEdge {
 
 	@Override
 	public int hashCode() {
-		int prime = 31;
-		int result = 1;
-		if (getMetadata().isSingleValue()) {
-			result = prime * result + getMetadata().getTypeName().hashCode() + getV1().hashCode() + getV2().hashCode();
-		} else {
-			result = prime * result + getMetadata().hashCode() + getV1().hashCode() + getV2().hashCode();
-		}
-		return result;
+		return Fingerprints.hashCode(fingerprint());
 	}
 
 	@Override
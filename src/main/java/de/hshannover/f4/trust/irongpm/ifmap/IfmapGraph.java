@@ -38,6 +38,8 @@
  */
 package de.hshannover.f4.trust.irongpm.ifmap;
 
+import java.util.Set;
+
 import org.jgrapht.Graph;
 
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
@@ -57,6 +59,43 @@ public interface IfmapGraph extends Graph<IfmapVertex, IfmapEdge> {
 	 */
 	public Long getLastUpdated();
 
+	/**
+	 * Looks up the instance stored in the graph which is equal to the given vertex.
+	 *
+	 * @param vertex
+	 *            The vertex to look for
+	 * @return The corresponding (equal) vertex within the graph - or null
+	 */
+	IfmapVertex findVertex(IfmapVertex vertex);
+
+	/**
+	 * @return Statistics about the content of the graph, e.g. for the planning of the matching
+	 */
+	GraphStatistics getStatistics();
+
+	/**
+	 * @param type
+	 *            The type name of the identifiers
+	 * @return The vertices of the given type (extended identifiers are of type identity)
+	 */
+	Set<IfmapVertex> getVerticesOfType(String type);
+
+	/**
+	 * @param property
+	 *            The property path, e.g. /ip-address[@value]
+	 * @param value
+	 *            The value of the property
+	 * @return The vertices with the given property value - or null if the values of the property are not indexed
+	 */
+	Set<IfmapVertex> getVerticesWithProperty(String property, String value);
+
+	/**
+	 * @param type
+	 *            The type name of the metadata
+	 * @return The edges with metadata of the given type
+	 */
+	Set<IfmapEdge> getEdgesOfType(String type);
+
 	/**
 	 * Adds metadata to an existing vertex in the graph.
 	 *
@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Propable;
+
+/**
+ * Compact binary serialization of an IF-MAP graph, e.g. for checkpoints and test fixtures. Type names, property paths
+ * and property values are written once and then referenced by their position in a dictionary which is built while
+ * writing (and reading), so the graph can be streamed in one pass. All numbers are written as varints; links
+ * reference their identifiers by position. Raw XML is written as is.
+ * 
+ * <pre>
+ * graph    := FORMAT hasTimestamp:byte [timestamp:varlong] vertexCount:varint vertex* edgeCount:varint edge*
+ * vertex   := type:string propertyCount:varint (path:string value:string)* raw:literal metadataCount:varint metadata*
+ * edge     := source:varint target:varint metadata
+ * metadata := type:string propertyCount:varint (path:string value:string)* raw:literal
+ * string   := 0 (null) | 1 literal (new dictionary entry) | id+2 (dictionary reference)
+ * literal  := 0 (null) | length+1:varint utf8-bytes
+ * </pre>
+ * 
+ * The streams are not buffered by the codec.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class IfmapGraphBinaryCodec {
+
+	private static final int FORMAT = 1;
+
+	private static final int NULL = 0;
+	private static final int LITERAL = 1;
+	private static final int REFERENCE = 2;
+
+	private final Map<String, Integer> mWriteDictionary = new HashMap<>();
+	private final List<String> mReadDictionary = new ArrayList<>();
+
+	/**
+	 * Only used for one graph, as the dictionary is built while it is written or read.
+	 */
+	private IfmapGraphBinaryCodec() {
+	}
+
+	/**
+	 * Writes the graph to the stream.
+	 * 
+	 * @param graph
+	 *            The graph to write
+	 * @param out
+	 *            The (buffered) stream to write to, it is neither flushed nor closed
+	 * @throws IOException
+	 *             If the stream cannot be written
+	 */
+	public static void write(IfmapGraphImpl graph, OutputStream out) throws IOException {
+		new IfmapGraphBinaryCodec().writeGraph(graph, out);
+	}
+
+	/**
+	 * Reads a graph from the stream.
+	 * 
+	 * @param in
+	 *            The (buffered) stream to read from, it is read up to the end of the graph
+	 * @return The graph
+	 * @throws IOException
+	 *             If the stream cannot be read or contains no graph
+	 */
+	public static IfmapGraphImpl read(InputStream in) throws IOException {
+		return new IfmapGraphBinaryCodec().readGraph(in);
+	}
+
+	private void writeGraph(IfmapGraphImpl graph, OutputStream out) throws IOException {
+		out.write(FORMAT);
+		if (graph.getLastUpdated() == null) {
+			out.write(0);
+		} else {
+			out.write(1);
+			writeVarLong(out, graph.getLastUpdated());
+		}
+
+		Map<IfmapVertex, Integer> positions = new HashMap<>();
+		writeVarInt(out, graph.vertexSet().size());
+		for (IfmapVertex v : graph.vertexSet()) {
+			positions.put(v, positions.size());
+			writeString(out, v.getTypeName());
+			writeProperties(out, v);
+			writeLiteral(out, v.getRawData());
+			List<Metadata> metadata = v.getMetadata();
+			writeVarInt(out, metadata.size());
+			for (Metadata m : metadata) {
+				writeMetadata(out, m);
+			}
+		}
+		writeVarInt(out, graph.edgeSet().size());
+		for (IfmapEdge e : graph.edgeSet()) {
+			writeVarInt(out, positions.get(graph.getEdgeSource(e)));
+			writeVarInt(out, positions.get(graph.getEdgeTarget(e)));
+			writeMetadata(out, e.getMetadata());
+		}
+	}
+
+	private IfmapGraphImpl readGraph(InputStream in) throws IOException {
+		int format = readByte(in);
+		if (format != FORMAT) {
+			throw new IOException("Unsupported graph format " + format);
+		}
+		IfmapGraphImpl graph = new IfmapGraphImpl();
+		if (readByte(in) == 1) {
+			graph.setLastUpdated(readVarLong(in));
+		}
+
+		IfmapVertex[] vertices = new IfmapVertex[readVarInt(in)];
+		for (int i = 0; i < vertices.length; i++) {
+			String typename = readString(in);
+			Map<String, String> properties = readProperties(in);
+			IfmapVertexImpl v = new IfmapVertexImpl(typename, properties, readLiteral(in));
+			int metadata = readVarInt(in);
+			for (int j = 0; j < metadata; j++) {
+				v.addMetadata(readMetadata(in));
+			}
+			graph.addVertex(v);
+			vertices[i] = v;
+		}
+		int edges = readVarInt(in);
+		for (int i = 0; i < edges; i++) {
+			IfmapVertex source = vertices[readVarInt(in)];
+			IfmapVertex target = vertices[readVarInt(in)];
+			graph.addEdgeSensitive(source, target, new IfmapEdgeImpl(source, target, readMetadata(in)));
+		}
+		return graph;
+	}
+
+	private void writeMetadata(OutputStream out, Metadata m) throws IOException {
+		writeString(out, m.getTypeName());
+		writeProperties(out, m);
+		writeLiteral(out, m.getRawData());
+	}
+
+	private Metadata readMetadata(InputStream in) throws IOException {
+		String typename = readString(in);
+		Map<String, String> properties = readProperties(in);
+		return new MetadataImpl(typename, properties, readLiteral(in));
+	}
+
+	private void writeProperties(OutputStream out, Propable propable) throws IOException {
+		List<String> properties = propable.getProperties();
+		writeVarInt(out, properties.size());
+		for (String p : properties) {
+			writeString(out, p);
+			writeString(out, propable.valueFor(p));
+		}
+	}
+
+	private Map<String, String> readProperties(InputStream in) throws IOException {
+		int size = readVarInt(in);
+		Map<String, String> properties = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String key = readString(in);
+			properties.put(key, readString(in));
+		}
+		return properties;
+	}
+
+	private void writeString(OutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarInt(out, NULL);
+			return;
+		}
+		Integer id = mWriteDictionary.get(s);
+		if (id != null) {
+			writeVarInt(out, id + REFERENCE);
+		} else {
+			mWriteDictionary.put(s, mWriteDictionary.size());
+			writeVarInt(out, LITERAL);
+			writeLiteral(out, s);
+		}
+	}
+
+	private String readString(InputStream in) throws IOException {
+		int tag = readVarInt(in);
+		if (tag == NULL) {
+			return null;
+		}
+		if (tag == LITERAL) {
+			String s = readLiteral(in);
+			mReadDictionary.add(s);
+			return s;
+		}
+		if (tag - REFERENCE >= mReadDictionary.size()) {
+			throw new IOException("Unknown string reference " + (tag - REFERENCE));
+		}
+		return mReadDictionary.get(tag - REFERENCE);
+	}
+
+	private static void writeLiteral(OutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static String readLiteral(InputStream in) throws IOException {
+		int length = readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int n = in.read(bytes, read, length - read);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			read += n;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarInt(OutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xffffffffL);
+	}
+
+	private static int readVarInt(InputStream in) throws IOException {
+		long value = readVarLong(in);
+		if (value > Integer.MAX_VALUE) {
+			throw new IOException("Varint out of range: " + value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Writes the value in groups of 7 bits, least significant first, the highest bit marks that more groups follow.
+	 */
+	private static void writeVarLong(OutputStream out, long value) throws IOException {
+		long rest = value;
+		while ((rest & ~0x7fL) != 0) {
+			out.write((int) (rest & 0x7f) | 0x80);
+			rest >>>= 7;
+		}
+		out.write((int) rest);
+	}
+
+	private static long readVarLong(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte(in);
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	private static int readByte(InputStream in) throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException();
+		}
+		return b;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Binary checkpoint of an IF-MAP graph on the local disk, encoded by the {@link IfmapGraphBinaryCodec}. Used to
+ * restart without downloading the whole graph from the dataservice again.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class IfmapGraphCheckpoint {
+
+	private static final int MAGIC = 0x4950474d;
+	private static final int VERSION = 2;
+
+	/**
+	 * Cause security.
+	 */
+	private IfmapGraphCheckpoint() {
+	}
+
+	/**
+	 * Writes the graph to the file. The checkpoint is written to a temporary file first, synced to the disk and then
+	 * moved, so an existing checkpoint is only replaced by a complete one.
+	 * 
+	 * @param graph
+	 *            The graph to write
+	 * @param file
+	 *            The checkpoint file
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	public static void write(IfmapGraphImpl graph, File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(tmp);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			IfmapGraphBinaryCodec.write(graph, out);
+			out.flush();
+			// otherwise the moved file might be empty or incomplete after a power loss
+			stream.getFD().sync();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a graph from the file.
+	 * 
+	 * @param file
+	 *            The checkpoint file
+	 * @return The graph
+	 * @throws IOException
+	 *             If the file cannot be read or is no checkpoint of this version
+	 */
+	public static IfmapGraphImpl read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is no graph checkpoint");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported graph checkpoint version " + version);
+			}
+			return IfmapGraphBinaryCodec.read(in);
+		}
+	}
+}
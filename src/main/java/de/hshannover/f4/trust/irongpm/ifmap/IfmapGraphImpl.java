@@ -39,17 +39,29 @@
 package de.hshannover.f4.trust.irongpm.ifmap;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.jgrapht.Graphs;
 import org.jgrapht.graph.DefaultListenableGraph;
 import org.jgrapht.graph.Multigraph;
 
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetEvent;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListenable;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListener;
 import de.hshannover.f4.trust.irongpm.listener.GraphVertexModifyEvent;
 import de.hshannover.f4.trust.irongpm.listener.VertexStateListenable;
 import de.hshannover.f4.trust.irongpm.listener.VertexStateListener;
+import de.hshannover.f4.trust.irongpm.util.LinkKey;
 
 /**
  * Main datastructure class encapsulating a full graph using the JgraphT Listenable graph structure in combination with
@@ -59,7 +71,7 @@ import de.hshannover.f4.trust.irongpm.listener.VertexStateListener;
  * 
  */
 public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdge> implements IfmapGraph,
-		VertexStateListenable<IfmapVertex> {
+		VertexStateListenable<IfmapVertex>, GraphChangeSetListenable<IfmapVertex, IfmapEdge> {
 
 	/**
 	 *
@@ -67,6 +79,15 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 	private static final long serialVersionUID = -3104953215717098366L;
 	private Long mLastUpdated;
 	private List<VertexStateListener<IfmapVertex>> mVertexStateListeners = new ArrayList<>();
+	private Map<IfmapVertex, IfmapVertex> mVertexIndex = new HashMap<>();
+	private Map<LinkKey, IfmapEdge> mSingleValueIndex = new HashMap<>();
+	private List<GraphChangeSetListener<IfmapVertex, IfmapEdge>> mChangeSetListeners = new ArrayList<>();
+	private int mUpdateDepth = 0;
+	private Set<IfmapEdge> mPendingEdges = new LinkedHashSet<>();
+	private Set<IfmapVertex> mPendingVertices = new LinkedHashSet<>();
+	private transient VersionedGraphStore mStore;
+	private GraphStatistics mStatistics = new GraphStatistics();
+	private GraphIndex mIndex = new GraphIndex(Collections.<String> emptySet());
 
 	/**
 	 * Constructor.
@@ -84,6 +105,7 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 	public IfmapGraphImpl(IfmapGraphImpl oldGraph) {
 		super(new Multigraph<IfmapVertex, IfmapEdge>(oldGraph.getEdgeFactory()));
 		setLastUpdated(oldGraph.getLastUpdated());
+		setIndexedProperties(oldGraph.getIndexedProperties());
 		for (IfmapVertex v : oldGraph.vertexSet()) {
 			addVertex(v);
 		}
@@ -92,6 +114,220 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 		}
 	}
 
+	@Override
+	public boolean addVertex(IfmapVertex v) {
+		boolean modified = super.addVertex(v);
+		if (modified) {
+			mVertexIndex.put(v, v);
+			mStatistics.vertexAdded(v);
+			mIndex.vertexAdded(v);
+			if (mStore != null) {
+				mStore.addVertex(v);
+			}
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean removeVertex(IfmapVertex v) {
+		IfmapVertex stored = findVertex(v);
+		boolean modified = super.removeVertex(v);
+		if (modified) {
+			mVertexIndex.remove(v);
+			mStatistics.vertexRemoved(stored);
+			mIndex.vertexRemoved(stored);
+			mPendingVertices.remove(v);
+			if (mStore != null) {
+				mStore.removeVertex(v);
+			}
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean addEdge(IfmapVertex v1, IfmapVertex v2, IfmapEdge e) {
+		boolean modified = super.addEdge(v1, v2, e);
+		if (modified) {
+			LinkKey key = singleValueKey(e);
+			if (key != null) {
+				mSingleValueIndex.put(key, e);
+			}
+			mStatistics.edgeAdded(e);
+			mIndex.edgeAdded(e);
+			if (mStore != null) {
+				mStore.addEdge(e, getEdgeSource(e), getEdgeTarget(e));
+			}
+			if (!mChangeSetListeners.isEmpty()) {
+				mPendingEdges.add(e);
+				fireChangeSetIfIdle();
+			}
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean removeEdge(IfmapEdge e) {
+		boolean modified = super.removeEdge(e);
+		if (modified) {
+			LinkKey key = singleValueKey(e);
+			if (key != null) {
+				mSingleValueIndex.remove(key);
+			}
+			mStatistics.edgeRemoved(e);
+			mIndex.edgeRemoved(e);
+			if (mStore != null) {
+				mStore.removeEdge(e);
+			}
+			mPendingEdges.remove(e);
+		}
+		return modified;
+	}
+
+	@Override
+	public IfmapEdge removeEdge(IfmapVertex v1, IfmapVertex v2) {
+		IfmapEdge removed = super.removeEdge(v1, v2);
+		if (removed != null) {
+			LinkKey key = singleValueKey(removed);
+			if (key != null) {
+				mSingleValueIndex.remove(key);
+			}
+			mStatistics.edgeRemoved(removed);
+			mIndex.edgeRemoved(removed);
+			if (mStore != null) {
+				mStore.removeEdge(removed);
+			}
+			mPendingEdges.remove(removed);
+		}
+		return removed;
+	}
+
+	/**
+	 * @param e
+	 *            The edge
+	 * @return The key of the edge in the singleValue index, or null if the edge is not singleValue
+	 */
+	private LinkKey singleValueKey(IfmapEdge e) {
+		if (!(e instanceof IfmapEdgeImpl)) {
+			return null;
+		}
+		IfmapEdgeImpl edge = (IfmapEdgeImpl) e;
+		if (!edge.getMetadata().isSingleValue()) {
+			return null;
+		}
+		return new LinkKey(edge.getV1(), edge.getV2(), edge.getMetadata().getTypeName());
+	}
+
+	@Override
+	public IfmapVertex findVertex(IfmapVertex vertex) {
+		if (vertex == null) {
+			return null;
+		}
+		return mVertexIndex.get(vertex);
+	}
+
+	/**
+	 * Creates a new graph containing all vertices within the given distance of the seed vertices and all edges between
+	 * them. The vertex and edge instances are shared with this graph, the graph structure is not.
+	 * 
+	 * @param seeds
+	 *            The vertices to start from
+	 * @param depth
+	 *            The maximum number of edges between a seed and an included vertex
+	 * @return The neighbourhood of the seed vertices as a new graph
+	 */
+	public IfmapGraphImpl neighbourhood(Collection<IfmapVertex> seeds, int depth) {
+		IfmapGraphImpl result = new IfmapGraphImpl();
+		result.setLastUpdated(getLastUpdated());
+		result.setIndexedProperties(getIndexedProperties());
+		Set<IfmapVertex> frontier = new HashSet<>();
+		for (IfmapVertex seed : seeds) {
+			IfmapVertex v = findVertex(seed);
+			if (v != null && result.addVertex(v)) {
+				frontier.add(v);
+			}
+		}
+		for (int i = 0; i < depth && !frontier.isEmpty(); i++) {
+			Set<IfmapVertex> next = new HashSet<>();
+			for (IfmapVertex v : frontier) {
+				for (IfmapEdge e : edgesOf(v)) {
+					IfmapVertex other = Graphs.getOppositeVertex(this, e, v);
+					if (result.addVertex(other)) {
+						next.add(other);
+					}
+				}
+			}
+			frontier = next;
+		}
+		for (IfmapVertex v : result.vertexSet()) {
+			for (IfmapEdge e : edgesOf(v)) {
+				IfmapVertex source = getEdgeSource(e);
+				IfmapVertex target = getEdgeTarget(e);
+				if (result.containsVertex(source) && result.containsVertex(target)) {
+					result.addEdge(source, target, e);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Takes an immutable snapshot of the current state of the graph in O(1). The snapshot can be read by other threads
+	 * while this graph is modified further. The first snapshot initializes the version store of the graph, afterwards
+	 * all modifications are recorded there as well. Must be called by the thread modifying the graph.
+	 * 
+	 * @return The snapshot - should be released after use
+	 */
+	public IfmapGraphSnapshot snapshot() {
+		if (mStore == null) {
+			mStore = new VersionedGraphStore(this);
+		}
+		return new IfmapGraphSnapshot(mStore, mStore.acquire(), getLastUpdated(), getEdgeFactory(), mStatistics);
+	}
+
+	@Override
+	public GraphStatistics getStatistics() {
+		return mStatistics;
+	}
+
+	/**
+	 * Sets the property paths whose values are indexed, e.g. /ip-address[@value]. The index is rebuilt, so this should
+	 * be done before the graph is filled. Snapshots only use the paths indexed when the first snapshot was taken.
+	 * 
+	 * @param properties
+	 *            The property paths
+	 */
+	public void setIndexedProperties(Collection<String> properties) {
+		mIndex = new GraphIndex(properties);
+		for (IfmapVertex v : vertexSet()) {
+			mIndex.vertexAdded(v);
+		}
+		for (IfmapEdge e : edgeSet()) {
+			mIndex.edgeAdded(e);
+		}
+	}
+
+	/**
+	 * @return The property paths whose values are indexed
+	 */
+	public Set<String> getIndexedProperties() {
+		return mIndex.getProperties();
+	}
+
+	@Override
+	public Set<IfmapVertex> getVerticesOfType(String type) {
+		return mIndex.verticesOfType(type);
+	}
+
+	@Override
+	public Set<IfmapVertex> getVerticesWithProperty(String property, String value) {
+		return mIndex.verticesWithProperty(property, value);
+	}
+
+	@Override
+	public Set<IfmapEdge> getEdgesOfType(String type) {
+		return mIndex.edgesOfType(type);
+	}
+
 	public void setLastUpdated(Long timestamp) {
 		mLastUpdated = timestamp;
 	}
@@ -103,34 +339,36 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 
 	@Override
 	public boolean addMetadataToVertex(IfmapVertex vertex, Metadata m) {
-		if (!containsVertex(vertex)) {
+		IfmapVertex v = findVertex(vertex);
+		if (v == null) {
 			return false;
 		}
-		for (IfmapVertex v : vertexSet()) {
-			if (v.equals(vertex)) {
-				if (((IfmapVertexImpl) v).addMetadata(m)) {
-					fireVertexChanged(v);
-					return true;
-				}
-			}
+		boolean modified = ((IfmapVertexImpl) v).addMetadata(m);
+		if (modified && mStore != null) {
+			mStore.vertexChanged(v);
+		}
+		if (modified) {
+			mStatistics.metadataAdded(m);
+			fireVertexChanged(v);
 		}
-		return false;
+		return modified;
 	}
 
 	@Override
 	public boolean removeMetadataFromVertex(IfmapVertex vertex, Metadata m) {
-		if (!containsVertex(vertex)) {
+		IfmapVertex v = findVertex(vertex);
+		if (v == null) {
 			return false;
 		}
-		for (IfmapVertex v : vertexSet()) {
-			if (v.equals(vertex)) {
-				if (((IfmapVertexImpl) v).removeMetadata(m)) {
-					fireVertexChanged(v);
-					return true;
-				}
-			}
+		boolean modified = ((IfmapVertexImpl) v).removeMetadata(m);
+		if (modified && mStore != null) {
+			mStore.vertexChanged(v);
+		}
+		if (modified) {
+			mStatistics.metadataRemoved(m);
+			fireVertexChanged(v);
 		}
-		return false;
+		return modified;
 	}
 
 	/**
@@ -171,6 +409,53 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 			l.vertexChanged(new GraphVertexModifyEvent<IfmapVertex>(this, GraphVertexModifyEvent.VERTEX_MODIFIED,
 					vertex));
 		}
+		if (!mChangeSetListeners.isEmpty()) {
+			mPendingVertices.add(vertex);
+			fireChangeSetIfIdle();
+		}
+	}
+
+	@Override
+	public void addChangeSetListener(GraphChangeSetListener<IfmapVertex, IfmapEdge> l) {
+		mChangeSetListeners.add(l);
+	}
+
+	@Override
+	public void removeChangeSetListener(GraphChangeSetListener<IfmapVertex, IfmapEdge> l) {
+		mChangeSetListeners.remove(l);
+	}
+
+	@Override
+	public void beginUpdate() {
+		mUpdateDepth++;
+	}
+
+	@Override
+	public void commitUpdate() {
+		if (mUpdateDepth > 0) {
+			mUpdateDepth--;
+		}
+		fireChangeSetIfIdle();
+	}
+
+	/**
+	 * @return Whether changes are currently collected for a change set
+	 */
+	public boolean isUpdating() {
+		return mUpdateDepth > 0;
+	}
+
+	private void fireChangeSetIfIdle() {
+		if (mUpdateDepth > 0 || (mPendingEdges.isEmpty() && mPendingVertices.isEmpty())) {
+			return;
+		}
+		GraphChangeSetEvent<IfmapVertex, IfmapEdge> event = new GraphChangeSetEvent<>(this, mPendingEdges,
+				mPendingVertices);
+		mPendingEdges.clear();
+		mPendingVertices.clear();
+		for (GraphChangeSetListener<IfmapVertex, IfmapEdge> l : mChangeSetListeners) {
+			l.changeSetCommitted(event);
+		}
 	}
 
 	@Override
@@ -178,12 +463,11 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 		if (!(toRemove instanceof IfmapEdgeImpl)) {
 			return false;
 		}
-		IfmapEdgeImpl rem = (IfmapEdgeImpl) toRemove;
-		if (rem.getMetadata().isSingleValue()) {
-			for (IfmapEdge e : edgeSet()) {
-				if (rem.equals(e)) {
-					return removeEdge(e);
-				}
+		LinkKey key = singleValueKey(toRemove);
+		if (key != null) {
+			IfmapEdge existing = mSingleValueIndex.get(key);
+			if (existing != null) {
+				return removeEdge(existing);
 			}
 		}
 		return removeEdge(toRemove);
@@ -194,17 +478,11 @@ public class IfmapGraphImpl extends DefaultListenableGraph<IfmapVertex, IfmapEdg
 		if (!(toAdd instanceof IfmapEdgeImpl)) {
 			return false;
 		}
-		IfmapEdgeImpl add = (IfmapEdgeImpl) toAdd;
-		if (!add.getMetadata().isSingleValue()) {
-			return addEdge(v1, v2, toAdd);
-		} else {
-			for (IfmapEdge e : edgeSet()) {
-				if (add.equals(e)) {
-					if (!e.equalsNonIfmap(add)) {
-						removeEdgeSensitive(e);
-						return addEdge(v1, v2, toAdd);
-					}
-				}
+		LinkKey key = singleValueKey(toAdd);
+		if (key != null) {
+			IfmapEdge existing = mSingleValueIndex.get(key);
+			if (existing != null && !existing.equalsNonIfmap(toAdd)) {
+				removeEdge(existing);
 			}
 		}
 		return addEdge(v1, v2, toAdd);
@@ -0,0 +1,302 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.jgrapht.EdgeFactory;
+import org.jgrapht.WeightedGraph;
+import org.jgrapht.graph.AbstractGraph;
+
+import de.hshannover.f4.trust.irongpm.ifmap.VersionedGraphStore.EdgeRecord;
+import de.hshannover.f4.trust.irongpm.ifmap.VersionedGraphStore.VertexRecord;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+
+/**
+ * Immutable view on an {@link IfmapGraphImpl} as it was at the time the snapshot was taken (see
+ * {@link IfmapGraphImpl#snapshot()}). Later modifications of the graph are not visible. Can be read by multiple
+ * threads concurrently to the modification of the graph. Should be released once it is not needed anymore, so the
+ * graph can drop the old versions.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class IfmapGraphSnapshot extends AbstractGraph<IfmapVertex, IfmapEdge> implements IfmapGraph {
+
+	private final VersionedGraphStore mStore;
+	private final long mVersion;
+	private final Long mLastUpdated;
+	private final EdgeFactory<IfmapVertex, IfmapEdge> mEdgeFactory;
+	private final GraphStatistics mStatistics;
+	private volatile Set<IfmapVertex> mVertexSet;
+	private volatile Set<IfmapEdge> mEdgeSet;
+	private volatile boolean mReleased = false;
+
+	IfmapGraphSnapshot(VersionedGraphStore store, long version, Long lastUpdated,
+			EdgeFactory<IfmapVertex, IfmapEdge> edgeFactory, GraphStatistics statistics) {
+		mStore = store;
+		mVersion = version;
+		mLastUpdated = lastUpdated;
+		mEdgeFactory = edgeFactory;
+		mStatistics = statistics;
+	}
+
+	/**
+	 * @return The version of the graph this snapshot represents
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+
+	/**
+	 * Releases the snapshot. It must not be used afterwards.
+	 */
+	public void release() {
+		if (!mReleased) {
+			mReleased = true;
+			mStore.release(mVersion);
+		}
+	}
+
+	@Override
+	public Long getLastUpdated() {
+		return mLastUpdated;
+	}
+
+	/**
+	 * @return The statistics of the live graph, they are not versioned
+	 */
+	@Override
+	public GraphStatistics getStatistics() {
+		return mStatistics;
+	}
+
+	@Override
+	public Set<IfmapVertex> getVerticesOfType(String type) {
+		return Collections.unmodifiableSet(mStore.verticesOfTypeAt(type, mVersion));
+	}
+
+	@Override
+	public Set<IfmapVertex> getVerticesWithProperty(String property, String value) {
+		Set<IfmapVertex> result = mStore.verticesWithPropertyAt(property, value, mVersion);
+		return result == null ? null : Collections.unmodifiableSet(result);
+	}
+
+	@Override
+	public Set<IfmapEdge> getEdgesOfType(String type) {
+		return Collections.unmodifiableSet(mStore.edgesOfTypeAt(type, mVersion));
+	}
+
+	@Override
+	public IfmapVertex findVertex(IfmapVertex vertex) {
+		if (vertex == null) {
+			return null;
+		}
+		VertexRecord r = mStore.vertexAt(vertex, mVersion);
+		return r == null ? null : r.getVertex();
+	}
+
+	@Override
+	public boolean containsVertex(IfmapVertex v) {
+		return findVertex(v) != null;
+	}
+
+	@Override
+	public boolean containsEdge(IfmapEdge e) {
+		return e != null && mStore.edgeAt(e, mVersion) != null;
+	}
+
+	@Override
+	public Set<IfmapVertex> vertexSet() {
+		if (mVertexSet == null) {
+			mVertexSet = Collections.unmodifiableSet(new HashSet<>(mStore.verticesAt(mVersion)));
+		}
+		return mVertexSet;
+	}
+
+	@Override
+	public Set<IfmapEdge> edgeSet() {
+		if (mEdgeSet == null) {
+			mEdgeSet = Collections.unmodifiableSet(new HashSet<>(mStore.edgesAt(mVersion)));
+		}
+		return mEdgeSet;
+	}
+
+	@Override
+	public Set<IfmapEdge> edgesOf(IfmapVertex vertex) {
+		VertexRecord r = mStore.vertexAt(vertex, mVersion);
+		if (r == null) {
+			throw new IllegalArgumentException("no such vertex in graph");
+		}
+		return new EdgeArraySet(r.getEdges());
+	}
+
+	@Override
+	public IfmapVertex getEdgeSource(IfmapEdge e) {
+		return findVertex(edgeRecord(e).getSource());
+	}
+
+	@Override
+	public IfmapVertex getEdgeTarget(IfmapEdge e) {
+		return findVertex(edgeRecord(e).getTarget());
+	}
+
+	private EdgeRecord edgeRecord(IfmapEdge e) {
+		EdgeRecord r = mStore.edgeAt(e, mVersion);
+		if (r == null) {
+			throw new IllegalArgumentException("no such edge in graph");
+		}
+		return r;
+	}
+
+	@Override
+	public Set<IfmapEdge> getAllEdges(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		if (!containsVertex(sourceVertex) || !containsVertex(targetVertex)) {
+			return null;
+		}
+		Set<IfmapEdge> result = new HashSet<>();
+		for (IfmapEdge e : edgesOf(sourceVertex)) {
+			EdgeRecord r = edgeRecord(e);
+			if ((r.getSource().equals(sourceVertex) && r.getTarget().equals(targetVertex))
+					|| (r.getSource().equals(targetVertex) && r.getTarget().equals(sourceVertex))) {
+				result.add(e);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public IfmapEdge getEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		Set<IfmapEdge> edges = getAllEdges(sourceVertex, targetVertex);
+		if (edges == null || edges.isEmpty()) {
+			return null;
+		}
+		return edges.iterator().next();
+	}
+
+	@Override
+	public EdgeFactory<IfmapVertex, IfmapEdge> getEdgeFactory() {
+		return mEdgeFactory;
+	}
+
+	@Override
+	public double getEdgeWeight(IfmapEdge e) {
+		return WeightedGraph.DEFAULT_EDGE_WEIGHT;
+	}
+
+	@Override
+	public IfmapEdge addEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean addEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex, IfmapEdge e) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean addVertex(IfmapVertex v) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public IfmapEdge removeEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean removeEdge(IfmapEdge e) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean removeVertex(IfmapVertex v) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean addMetadataToVertex(IfmapVertex vertex, Metadata m) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean removeMetadataFromVertex(IfmapVertex vertex, Metadata m) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean removeEdgeSensitive(IfmapEdge toRemove) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	@Override
+	public boolean addEdgeSensitive(IfmapVertex v1, IfmapVertex v2, IfmapEdge toAdd) {
+		throw new UnsupportedOperationException("A snapshot is read-only");
+	}
+
+	/**
+	 * Read-only set view on the adjacency array of a vertex record.
+	 */
+	private static final class EdgeArraySet extends AbstractSet<IfmapEdge> {
+
+		private final List<IfmapEdge> mEdges;
+
+		private EdgeArraySet(IfmapEdge[] edges) {
+			mEdges = Arrays.asList(edges);
+		}
+
+		@Override
+		public Iterator<IfmapEdge> iterator() {
+			return Collections.unmodifiableList(mEdges).iterator();
+		}
+
+		@Override
+		public int size() {
+			return mEdges.size();
+		}
+	}
+}
@@ -40,7 +40,6 @@ package de.hshannover.f4.trust.irongpm.ifmap;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -48,7 +47,8 @@ import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
 
 /**
- * Representation of an IF-MAP identifier.
+ * Representation of an IF-MAP identifier. The metadata list is copied on every change and never modified in place, so
+ * it can be read concurrently to the modification and {@link #freeze()} can share it.
  * 
  * @author Leonard Renners
  * 
@@ -56,12 +56,14 @@ import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
 public class IfmapVertexImpl implements IfmapVertex {
 
 	private String mTypename;
-	private Map<String, String> mProperties;
+	private PropertyArray mProperties;
 	private String mRawData;
-	private List<Metadata> mMetadata = new ArrayList<Metadata>();
+	private volatile List<Metadata> mMetadata = Collections.emptyList();
+	private volatile ExtendedIdentifierEncapsulation mExtendedIdentifier;
+	private volatile long mFingerprint;
 
 	private IfmapVertexImpl() {
-		mProperties = new HashMap<>();
+		mProperties = new PropertyArray();
 	}
 
 	/**
@@ -72,7 +74,7 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 */
 	public IfmapVertexImpl(String typename) {
 		this();
-		mTypename = typename;
+		mTypename = SymbolTable.intern(typename);
 		mRawData = null;
 	}
 
@@ -88,7 +90,7 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 */
 	public IfmapVertexImpl(String typename, Map<String, String> properties, String rawData) {
 		this();
-		mTypename = typename;
+		mTypename = SymbolTable.intern(typename);
 		mRawData = rawData;
 		for (String key : properties.keySet()) {
 			addProperty(key, properties.get(key));
@@ -103,11 +105,37 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 */
 	public IfmapVertexImpl(IfmapVertex id) {
 		this();
-		mTypename = id.getTypeName();
+		mTypename = SymbolTable.intern(id.getTypeName());
 		mRawData = id.getRawData();
 		for (String key : id.getProperties()) {
 			addProperty(key, id.valueFor(key));
 		}
+		if (id instanceof IfmapVertexImpl) {
+			ExtendedIdentifierEncapsulation parsed = ((IfmapVertexImpl) id).mExtendedIdentifier;
+			if (parsed != null) {
+				mExtendedIdentifier = parsed.encapsulate(this);
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the current state of this vertex. The copy shares the properties and the metadata list, which
+	 * are both replaced instead of modified, so later changes of this vertex are not visible in the copy.
+	 * 
+	 * @return The copy
+	 */
+	IfmapVertexImpl freeze() {
+		IfmapVertexImpl copy = new IfmapVertexImpl();
+		copy.mTypename = mTypename;
+		copy.mProperties = new PropertyArray(mProperties);
+		copy.mRawData = mRawData;
+		copy.mMetadata = mMetadata;
+		copy.mFingerprint = mFingerprint;
+		ExtendedIdentifierEncapsulation parsed = mExtendedIdentifier;
+		if (parsed != null) {
+			copy.mExtendedIdentifier = parsed.encapsulate(copy);
+		}
+		return copy;
 	}
 
 	@Override
@@ -137,12 +165,16 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 * @return Whether the operation was successful
 	 */
 	public boolean addMetadata(Metadata meta) {
-		return mMetadata.add(new MetadataImpl(meta));
+		List<Metadata> metadata = new ArrayList<>(mMetadata.size() + 1);
+		metadata.addAll(mMetadata);
+		metadata.add(new MetadataImpl(meta));
+		mMetadata = Collections.unmodifiableList(metadata);
+		return true;
 	}
 
 	@Override
 	public List<String> getProperties() {
-		return new ArrayList<>(mProperties.keySet());
+		return mProperties.keys();
 	}
 
 	/**
@@ -153,7 +185,12 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 * @return Whether the removal was successfull
 	 */
 	public boolean removeMetadata(Metadata meta) {
-		return mMetadata.remove(meta);
+		List<Metadata> metadata = new ArrayList<>(mMetadata);
+		if (!metadata.remove(meta)) {
+			return false;
+		}
+		mMetadata = Collections.unmodifiableList(metadata);
+		return true;
 	}
 
 	/**
@@ -164,7 +201,12 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 * @return Whether the removal was successfull
 	 */
 	public boolean removeMetadata(List<Metadata> metaList) {
-		return mMetadata.removeAll(metaList);
+		List<Metadata> metadata = new ArrayList<>(mMetadata);
+		if (!metadata.removeAll(metaList)) {
+			return false;
+		}
+		mMetadata = Collections.unmodifiableList(metadata);
+		return true;
 	}
 
 	/**
@@ -177,6 +219,37 @@ public class IfmapVertexImpl implements IfmapVertex {
 	 */
 	public void addProperty(String key, String value) {
 		mProperties.put(key, value);
+		mExtendedIdentifier = null;
+		mFingerprint = 0;
+	}
+
+	/**
+	 * Returns the fingerprint of the type and properties. It is calculated on the first call after a change only.
+	 * 
+	 * @return The 64 bit fingerprint, equal identifiers have equal fingerprints
+	 */
+	long fingerprint() {
+		long result = mFingerprint;
+		if (result == 0) {
+			result = Fingerprints.mix(Fingerprints.hash(mTypename), mProperties.fingerprint());
+			mFingerprint = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the encapsulation of this vertex if it is an extended identifier. The nested XML is parsed on the first
+	 * call only, afterwards the encapsulation is cached.
+	 * 
+	 * @return The encapsulation - or null if the vertex is no extended identifier
+	 */
+	public ExtendedIdentifierEncapsulation getExtendedIdentifier() {
+		ExtendedIdentifierEncapsulation result = mExtendedIdentifier;
+		if (result == null && isExtendedIdentifier()) {
+			result = new ExtendedIdentifierEncapsulation(this);
+			mExtendedIdentifier = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -217,6 +290,11 @@ public class IfmapVertexImpl implements IfmapVertex {
 		if (o == this) {
 			return true;
 		}
+		if (o instanceof IfmapVertexImpl) {
+			IfmapVertexImpl other = (IfmapVertexImpl) o;
+			return fingerprint() == other.fingerprint() && mTypename.equals(other.mTypename)
+					&& mProperties.equals(other.mProperties);
+		}
 		if (!(o instanceof IfmapVertex)) {
 			return false;
 		}
@@ -245,15 +323,7 @@ public class IfmapVertexImpl implements IfmapVertex {
 
 	@Override
 	public int hashCode() {
-		int prime = 31;
-		int result = 1;
-		result = prime * result + getTypeName().hashCode();
-		List<String> keys = new ArrayList<String>(getProperties());
-		Collections.sort(keys);
-		for (String key : keys) {
-			result = prime * result + valueFor(key).hashCode();
-		}
-		return result;
+		return Fingerprints.hashCode(fingerprint());
 	}
 
 }
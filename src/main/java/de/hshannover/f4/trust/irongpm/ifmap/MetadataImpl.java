@@ -38,12 +38,14 @@
  */
 package de.hshannover.f4.trust.irongpm.ifmap;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -51,20 +53,26 @@ import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
 
 /**
  * 
- * Represents an IF-MAP metadatum.
+ * Represents an IF-MAP metadatum. Metadata arrive in large volumes (e.g. event and ip-mac), so the representation is
+ * kept compact: the properties are stored in a {@link PropertyArray}, the raw XML as UTF-8 bytes (or not at all for
+ * the types configured with {@link #setRawDataDropped(Collection)}) and the fingerprint used for the hash code is
+ * computed once.
  * 
  * @author Leonard Renners
  * 
  */
 public class MetadataImpl implements Metadata {
 	private String mTypeName;
-	private Map<String, String> mProperties;
+	private PropertyArray mProperties;
 	private boolean mIsSingleValue;
 	private long mPublishTimestamp;
-	private String mRawData;
+	private byte[] mRawData;
+	private volatile long mFingerprint;
+
+	private static volatile Set<String> droppedRawData = Collections.emptySet();
 
 	private MetadataImpl() {
-		mProperties = new HashMap<String, String>();
+		mProperties = new PropertyArray();
 	}
 
 	/**
@@ -80,9 +88,10 @@ public class MetadataImpl implements Metadata {
 	public MetadataImpl(String type, Map<String, String> properties, String rawData) {
 		mIsSingleValue = true;
 		mPublishTimestamp = 0;
-		mTypeName = type;
-		mProperties = new HashMap<>(properties);
-		for (String prop : mProperties.keySet()) {
+		mTypeName = SymbolTable.intern(type);
+		mProperties = new PropertyArray();
+		mProperties.putAll(properties);
+		for (String prop : mProperties.keys()) {
 			if (prop.endsWith("@ifmap-cardinality]")) {
 				mIsSingleValue = valueFor(prop).equalsIgnoreCase("singleValue") ? true : false;
 			}
@@ -93,7 +102,7 @@ public class MetadataImpl implements Metadata {
 				mPublishTimestamp = unixTime;
 			}
 		}
-		mRawData = rawData;
+		mRawData = encode(mTypeName, rawData);
 	}
 
 	/**
@@ -103,9 +112,9 @@ public class MetadataImpl implements Metadata {
 	 *            The ype of the metadata.
 	 */
 	public MetadataImpl(String type) {
-		mTypeName = type;
+		mTypeName = SymbolTable.intern(type);
 		mPublishTimestamp = 0;
-		mProperties = new HashMap<>();
+		mProperties = new PropertyArray();
 		mRawData = null;
 		mIsSingleValue = true;
 	}
@@ -118,15 +127,37 @@ public class MetadataImpl implements Metadata {
 	 */
 	public MetadataImpl(Metadata m) {
 		this();
-		mTypeName = m.getTypeName();
+		mTypeName = SymbolTable.intern(m.getTypeName());
 		mPublishTimestamp = m.getPublishTimestamp();
-		mRawData = m.getRawData();
+		mRawData = encode(mTypeName, m.getRawData());
 		mIsSingleValue = m.isSingleValue();
 		for (String key : m.getProperties()) {
 			addProperty(key, m.valueFor(key));
 		}
 	}
 
+	/**
+	 * Sets the metadata types whose raw XML is not kept, e.g. high-volume types whose XML is never used by the rules.
+	 * Affects the metadata created afterwards.
+	 * 
+	 * @param types
+	 *            The type names, "*" for all types
+	 */
+	public static void setRawDataDropped(Collection<String> types) {
+		droppedRawData = Collections.unmodifiableSet(new HashSet<>(types));
+	}
+
+	private static byte[] encode(String type, String rawData) {
+		if (rawData == null) {
+			return null;
+		}
+		Set<String> dropped = droppedRawData;
+		if (dropped.contains(type) || dropped.contains("*")) {
+			return null;
+		}
+		return rawData.getBytes(StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * Adds a property value to the vertex
 	 * 
@@ -146,11 +177,27 @@ public class MetadataImpl implements Metadata {
 			mPublishTimestamp = unixTime;
 		}
 		mProperties.put(key, value);
+		mFingerprint = 0;
+	}
+
+	/**
+	 * Returns the fingerprint of type, cardinality and properties. It is calculated on the first call after a change
+	 * only.
+	 * 
+	 * @return The 64 bit fingerprint, equal metadata have equal fingerprints
+	 */
+	long fingerprint() {
+		long result = mFingerprint;
+		if (result == 0) {
+			result = Fingerprints.metadata(mTypeName, mIsSingleValue, mProperties);
+			mFingerprint = result;
+		}
+		return result;
 	}
 
 	@Override
 	public List<String> getProperties() {
-		return new ArrayList<>(mProperties.keySet());
+		return mProperties.keys();
 	}
 
 	@Override
@@ -170,7 +217,7 @@ public class MetadataImpl implements Metadata {
 
 	@Override
 	public String getRawData() {
-		return mRawData;
+		return mRawData == null ? null : new String(mRawData, StandardCharsets.UTF_8);
 	}
 
 	@Override
@@ -196,6 +243,11 @@ public class MetadataImpl implements Metadata {
 		if (!(o instanceof Metadata)) {
 			return false;
 		}
+		if (o instanceof MetadataImpl) {
+			MetadataImpl other = (MetadataImpl) o;
+			return fingerprint() == other.fingerprint() && mTypeName.equals(other.mTypeName)
+					&& mIsSingleValue == other.mIsSingleValue && mProperties.equals(other.mProperties);
+		}
 		Metadata other = (Metadata) o;
 		if (!getTypeName().equals(other.getTypeName())) {
 			return false;
@@ -223,17 +275,6 @@ public class MetadataImpl implements Metadata {
 
 	@Override
 	public int hashCode() {
-		int prime = 31;
-		int result = 1;
-		result = prime * result + getTypeName().hashCode();
-		List<String> keys = new ArrayList<String>(getProperties());
-		Collections.sort(keys);
-		for (String key : keys) {
-			result = prime * result + key.hashCode() + valueFor(key).hashCode();
-		}
-		if (mRawData != null) {
-			result = prime * result + mRawData.hashCode();
-		}
-		return result;
+		return Fingerprints.hashCode(fingerprint());
 	}
 }
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Growable storage of fixed size records of ints and longs outside of the heap, in a direct {@link ByteBuffer}. The
+ * memory is released by the garbage collector together with the buffer object.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+final class OffHeapBuffer {
+
+	private final int mRecordSize;
+	private ByteBuffer mBuffer;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param recordSize
+	 *            The size of a record in bytes
+	 * @param records
+	 *            The initial capacity in records
+	 */
+	OffHeapBuffer(int recordSize, int records) {
+		mRecordSize = recordSize;
+		mBuffer = allocate(recordSize, Math.max(records, 1));
+	}
+
+	/**
+	 * @return The capacity in records
+	 */
+	int capacity() {
+		return mBuffer.capacity() / mRecordSize;
+	}
+
+	/**
+	 * Grows the buffer (at least doubling it) if it is smaller than the given number of records.
+	 * 
+	 * @param records
+	 *            The required capacity in records
+	 */
+	void ensureCapacity(int records) {
+		int capacity = capacity();
+		if (records <= capacity) {
+			return;
+		}
+		long grown = Math.max((long) records, 2L * capacity);
+		if (grown * mRecordSize > Integer.MAX_VALUE) {
+			grown = Integer.MAX_VALUE / mRecordSize;
+			if (grown < records) {
+				throw new IllegalStateException("Off-heap buffer exceeds 2 GB");
+			}
+		}
+		ByteBuffer buffer = allocate(mRecordSize, (int) grown);
+		// copies between duplicates, so the positions of the buffers stay at 0 and the duplicate covers all records
+		buffer.duplicate().put(mBuffer.duplicate());
+		mBuffer = buffer;
+	}
+
+	/**
+	 * @param record
+	 *            The index of the record
+	 * @param field
+	 *            The byte offset within the record
+	 * @return The int value
+	 */
+	int getInt(int record, int field) {
+		return mBuffer.getInt(record * mRecordSize + field);
+	}
+
+	/**
+	 * @param record
+	 *            The index of the record
+	 * @param field
+	 *            The byte offset within the record
+	 * @param value
+	 *            The int value
+	 */
+	void putInt(int record, int field, int value) {
+		mBuffer.putInt(record * mRecordSize + field, value);
+	}
+
+	/**
+	 * @param record
+	 *            The index of the record
+	 * @param field
+	 *            The byte offset within the record
+	 * @return The long value
+	 */
+	long getLong(int record, int field) {
+		return mBuffer.getLong(record * mRecordSize + field);
+	}
+
+	/**
+	 * @param record
+	 *            The index of the record
+	 * @param field
+	 *            The byte offset within the record
+	 * @param value
+	 *            The long value
+	 */
+	void putLong(int record, int field, long value) {
+		mBuffer.putLong(record * mRecordSize + field, value);
+	}
+
+	private static ByteBuffer allocate(int recordSize, int records) {
+		return ByteBuffer.allocateDirect(recordSize * records).order(ByteOrder.nativeOrder());
+	}
+}
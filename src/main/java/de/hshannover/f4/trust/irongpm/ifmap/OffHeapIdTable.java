@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+/**
+ * Hash table from graph elements to their ids, stored in an {@link OffHeapBuffer}. Each slot holds the 64 bit
+ * fingerprint of an element and its id, so only elements with the same fingerprint are compared by
+ * {@link #matches(int, Object)}. Open addressing with linear probing, removal shifts the following entries back.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+abstract class OffHeapIdTable {
+
+	private static final int SLOT_SIZE = 16;
+	private static final int FINGERPRINT = 0;
+	private static final int ID = 8;
+
+	private OffHeapBuffer mSlots;
+	private int mMask;
+	private int mSize;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param expected
+	 *            The expected number of elements
+	 */
+	OffHeapIdTable(int expected) {
+		mSlots = createSlots(expected);
+		mMask = mSlots.capacity() - 1;
+	}
+
+	/**
+	 * @param id
+	 *            The id of an element in the table
+	 * @param element
+	 *            The element looked up
+	 * @return Whether the element with the id equals the element looked up
+	 */
+	abstract boolean matches(int id, Object element);
+
+	/**
+	 * @param fingerprint
+	 *            The fingerprint of the element
+	 * @param element
+	 *            The element
+	 * @return The id of the equal element in the table, -1 if there is none
+	 */
+	int get(long fingerprint, Object element) {
+		for (int slot = home(fingerprint);; slot = (slot + 1) & mMask) {
+			int id = mSlots.getInt(slot, ID) - 1;
+			if (id < 0) {
+				return -1;
+			}
+			if (mSlots.getLong(slot, FINGERPRINT) == fingerprint && matches(id, element)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Adds an element, which must not be in the table yet.
+	 * 
+	 * @param fingerprint
+	 *            The fingerprint of the element
+	 * @param id
+	 *            The id of the element
+	 */
+	void put(long fingerprint, int id) {
+		if (2 * (mSize + 1) > mSlots.capacity()) {
+			resize();
+		}
+		insert(fingerprint, id);
+		mSize++;
+	}
+
+	/**
+	 * Removes an element.
+	 * 
+	 * @param fingerprint
+	 *            The fingerprint of the element
+	 * @param id
+	 *            The id of the element
+	 */
+	void remove(long fingerprint, int id) {
+		int slot = home(fingerprint);
+		while (mSlots.getInt(slot, ID) != id + 1) {
+			if (mSlots.getInt(slot, ID) == 0) {
+				return;
+			}
+			slot = (slot + 1) & mMask;
+		}
+		mSize--;
+		// shift back the following entries which would not be found behind the gap
+		int gap = slot;
+		for (int next = (gap + 1) & mMask; mSlots.getInt(next, ID) != 0; next = (next + 1) & mMask) {
+			int home = home(mSlots.getLong(next, FINGERPRINT));
+			if (((next - home) & mMask) >= ((next - gap) & mMask)) {
+				mSlots.putLong(gap, FINGERPRINT, mSlots.getLong(next, FINGERPRINT));
+				mSlots.putInt(gap, ID, mSlots.getInt(next, ID));
+				gap = next;
+			}
+		}
+		mSlots.putInt(gap, ID, 0);
+	}
+
+	/**
+	 * @return The number of elements
+	 */
+	int size() {
+		return mSize;
+	}
+
+	private void insert(long fingerprint, int id) {
+		int slot = home(fingerprint);
+		while (mSlots.getInt(slot, ID) != 0) {
+			slot = (slot + 1) & mMask;
+		}
+		mSlots.putLong(slot, FINGERPRINT, fingerprint);
+		mSlots.putInt(slot, ID, id + 1);
+	}
+
+	private void resize() {
+		OffHeapBuffer old = mSlots;
+		mSlots = createSlots(old.capacity());
+		mMask = mSlots.capacity() - 1;
+		for (int slot = 0; slot < old.capacity(); slot++) {
+			int id = old.getInt(slot, ID);
+			if (id != 0) {
+				insert(old.getLong(slot, FINGERPRINT), id - 1);
+			}
+		}
+	}
+
+	private int home(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32)) & mMask;
+	}
+
+	private static OffHeapBuffer createSlots(int elements) {
+		int slots = Integer.highestOneBit(Math.max(elements, 8) * 2 - 1) << 1;
+		// direct buffers are zeroed, an id of 0 marks a free slot
+		return new OffHeapBuffer(SLOT_SIZE, slots);
+	}
+}
@@ -0,0 +1,818 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.jgrapht.EdgeFactory;
+import org.jgrapht.ListenableGraph;
+import org.jgrapht.WeightedGraph;
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
+import org.jgrapht.event.VertexSetListener;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.ClassBasedEdgeFactory;
+import org.jgrapht.util.ArrayUnenforcedSet;
+
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetEvent;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListenable;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListener;
+import de.hshannover.f4.trust.irongpm.listener.GraphVertexModifyEvent;
+import de.hshannover.f4.trust.irongpm.listener.VertexStateListenable;
+import de.hshannover.f4.trust.irongpm.listener.VertexStateListener;
+
+/**
+ * IF-MAP graph for very large MAP graphs, with the same behaviour and listener events as {@link IfmapGraphImpl} (an
+ * undirected multigraph without loops, edges compared with the IF-MAP understanding of equality). Instead of the
+ * JGraphT maps and per-vertex edge sets the structure is kept outside of the heap: vertices and edges get int ids,
+ * each vertex record holds a doubly linked list of its incident edges and the lookup of an element's id uses a hash
+ * table of fingerprints. The heap only holds the vertex and edge objects themselves (in two arrays indexed by id) and
+ * the type/property index. Snapshots are not supported, so the matching still works on {@link IfmapGraphImpl}.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class OffHeapIfmapGraph extends AbstractGraph<IfmapVertex, IfmapEdge> implements IfmapGraph,
+		ListenableGraph<IfmapVertex, IfmapEdge>, VertexStateListenable<IfmapVertex>,
+		GraphChangeSetListenable<IfmapVertex, IfmapEdge> {
+
+	private static final int NONE = -1;
+
+	// vertex record: first and last incidence (edge id * 2 + side), degree (-1 for a free record)
+	private static final int VERTEX_SIZE = 12;
+	private static final int FIRST = 0;
+	private static final int LAST = 4;
+	private static final int DEGREE = 8;
+
+	// edge record: source and target vertex id (source -1 for a free record), next and previous incidence per side
+	private static final int EDGE_SIZE = 24;
+	private static final int SOURCE = 0;
+	private static final int NEXT = 8;
+	private static final int PREVIOUS = 12;
+
+	private final EdgeFactory<IfmapVertex, IfmapEdge> mEdgeFactory = new ClassBasedEdgeFactory<IfmapVertex, IfmapEdge>(
+			IfmapEdge.class);
+
+	private final OffHeapBuffer mVertexRecords;
+	private final OffHeapBuffer mEdgeRecords;
+	private IfmapVertex[] mVertices;
+	private IfmapEdge[] mEdges;
+	private int mVertexHigh = 0;
+	private int mEdgeHigh = 0;
+	private int mFreeVertex = NONE;
+	private int mFreeEdge = NONE;
+	private int mVertexCount = 0;
+	private int mEdgeCount = 0;
+
+	private final OffHeapIdTable mVertexIds;
+	private final OffHeapIdTable mEdgeIds;
+	private final Set<IfmapVertex> mVertexSet = new ElementSet<IfmapVertex>() {
+		@Override
+		IfmapVertex element(int id) {
+			return id < mVertexHigh ? mVertices[id] : null;
+		}
+
+		@Override
+		int highWater() {
+			return mVertexHigh;
+		}
+
+		@Override
+		public int size() {
+			return mVertexCount;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof IfmapVertex && containsVertex((IfmapVertex) o);
+		}
+	};
+	private final Set<IfmapEdge> mEdgeSet = new ElementSet<IfmapEdge>() {
+		@Override
+		IfmapEdge element(int id) {
+			return id < mEdgeHigh ? mEdges[id] : null;
+		}
+
+		@Override
+		int highWater() {
+			return mEdgeHigh;
+		}
+
+		@Override
+		public int size() {
+			return mEdgeCount;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof IfmapEdge && containsEdge((IfmapEdge) o);
+		}
+	};
+
+	private Long mLastUpdated;
+	private GraphStatistics mStatistics = new GraphStatistics();
+	private GraphIndex mIndex = new GraphIndex(Collections.<String> emptySet());
+	private List<GraphListener<IfmapVertex, IfmapEdge>> mGraphListeners = new ArrayList<>();
+	private List<VertexSetListener<IfmapVertex>> mVertexSetListeners = new ArrayList<>();
+	private List<VertexStateListener<IfmapVertex>> mVertexStateListeners = new ArrayList<>();
+	private List<GraphChangeSetListener<IfmapVertex, IfmapEdge>> mChangeSetListeners = new ArrayList<>();
+	private int mUpdateDepth = 0;
+	private Set<IfmapEdge> mPendingEdges = new LinkedHashSet<>();
+	private Set<IfmapVertex> mPendingVertices = new LinkedHashSet<>();
+
+	/**
+	 * Constructor.
+	 */
+	public OffHeapIfmapGraph() {
+		this(1024, 1024);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param vertices
+	 *            The expected number of vertices
+	 * @param edges
+	 *            The expected number of edges
+	 */
+	public OffHeapIfmapGraph(int vertices, int edges) {
+		mVertexRecords = new OffHeapBuffer(VERTEX_SIZE, vertices);
+		mEdgeRecords = new OffHeapBuffer(EDGE_SIZE, edges);
+		mVertices = new IfmapVertex[mVertexRecords.capacity()];
+		mEdges = new IfmapEdge[mEdgeRecords.capacity()];
+		mVertexIds = new OffHeapIdTable(vertices) {
+			@Override
+			boolean matches(int id, Object element) {
+				return mVertices[id].equals(element);
+			}
+		};
+		mEdgeIds = new OffHeapIdTable(edges) {
+			@Override
+			boolean matches(int id, Object element) {
+				return mEdges[id].equals(element);
+			}
+		};
+	}
+
+	/**
+	 * Copy constructor. Creates a new instance with the vertices and edges of an existing graph.
+	 * 
+	 * @param graph
+	 *            The old graph
+	 */
+	public OffHeapIfmapGraph(IfmapGraph graph) {
+		this(graph.vertexSet().size(), graph.edgeSet().size());
+		setLastUpdated(graph.getLastUpdated());
+		for (IfmapVertex v : graph.vertexSet()) {
+			addVertex(v);
+		}
+		for (IfmapEdge e : graph.edgeSet()) {
+			addEdge(graph.getEdgeSource(e), graph.getEdgeTarget(e), e);
+		}
+	}
+
+	private int vertexId(Object v) {
+		return v instanceof IfmapVertex ? mVertexIds.get(Fingerprints.of((IfmapVertex) v), v) : NONE;
+	}
+
+	private int edgeId(Object e) {
+		return e instanceof IfmapEdge ? mEdgeIds.get(Fingerprints.of((IfmapEdge) e), e) : NONE;
+	}
+
+	@Override
+	public boolean containsVertex(IfmapVertex v) {
+		return vertexId(v) != NONE;
+	}
+
+	@Override
+	public boolean containsEdge(IfmapEdge e) {
+		return edgeId(e) != NONE;
+	}
+
+	@Override
+	public IfmapVertex findVertex(IfmapVertex vertex) {
+		int id = vertexId(vertex);
+		return id == NONE ? null : mVertices[id];
+	}
+
+	@Override
+	public Set<IfmapVertex> vertexSet() {
+		return mVertexSet;
+	}
+
+	@Override
+	public Set<IfmapEdge> edgeSet() {
+		return mEdgeSet;
+	}
+
+	@Override
+	public boolean addVertex(IfmapVertex v) {
+		if (v == null) {
+			throw new NullPointerException();
+		}
+		if (containsVertex(v)) {
+			return false;
+		}
+		int id = mFreeVertex;
+		if (id != NONE) {
+			mFreeVertex = mVertexRecords.getInt(id, FIRST);
+		} else {
+			id = mVertexHigh++;
+			mVertexRecords.ensureCapacity(mVertexHigh);
+			if (mVertices.length < mVertexRecords.capacity()) {
+				mVertices = Arrays.copyOf(mVertices, mVertexRecords.capacity());
+			}
+		}
+		mVertexRecords.putInt(id, FIRST, NONE);
+		mVertexRecords.putInt(id, LAST, NONE);
+		mVertexRecords.putInt(id, DEGREE, 0);
+		mVertices[id] = v;
+		mVertexIds.put(Fingerprints.of(v), id);
+		mVertexCount++;
+		mStatistics.vertexAdded(v);
+		mIndex.vertexAdded(v);
+		fireVertexEvent(GraphVertexChangeEvent.VERTEX_ADDED, v);
+		return true;
+	}
+
+	@Override
+	public boolean removeVertex(IfmapVertex v) {
+		int id = vertexId(v);
+		if (id == NONE) {
+			return false;
+		}
+		while (mVertexRecords.getInt(id, FIRST) != NONE) {
+			removeEdge(mEdges[mVertexRecords.getInt(id, FIRST) >>> 1]);
+		}
+		IfmapVertex stored = mVertices[id];
+		mVertexIds.remove(Fingerprints.of(stored), id);
+		mVertices[id] = null;
+		mVertexRecords.putInt(id, DEGREE, NONE);
+		mVertexRecords.putInt(id, FIRST, mFreeVertex);
+		mFreeVertex = id;
+		mVertexCount--;
+		mStatistics.vertexRemoved(stored);
+		mIndex.vertexRemoved(stored);
+		mPendingVertices.remove(stored);
+		fireVertexEvent(GraphVertexChangeEvent.VERTEX_REMOVED, stored);
+		return true;
+	}
+
+	@Override
+	public IfmapEdge addEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		IfmapEdge e = mEdgeFactory.createEdge(sourceVertex, targetVertex);
+		return addEdge(sourceVertex, targetVertex, e) ? e : null;
+	}
+
+	@Override
+	public boolean addEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex, IfmapEdge e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (containsEdge(e)) {
+			return false;
+		}
+		int source = existingVertexId(sourceVertex);
+		int target = existingVertexId(targetVertex);
+		if (source == target) {
+			throw new IllegalArgumentException("loops not allowed");
+		}
+		int id = mFreeEdge;
+		if (id != NONE) {
+			mFreeEdge = mEdgeRecords.getInt(id, SOURCE + 4);
+		} else {
+			id = mEdgeHigh++;
+			mEdgeRecords.ensureCapacity(mEdgeHigh);
+			if (mEdges.length < mEdgeRecords.capacity()) {
+				mEdges = Arrays.copyOf(mEdges, mEdgeRecords.capacity());
+			}
+		}
+		mEdges[id] = e;
+		mEdgeIds.put(Fingerprints.of(e), id);
+		link(id, 0, source);
+		link(id, 1, target);
+		mEdgeCount++;
+		mStatistics.edgeAdded(e);
+		mIndex.edgeAdded(e);
+		fireEdgeEvent(GraphEdgeChangeEvent.EDGE_ADDED, e, mVertices[source], mVertices[target]);
+		if (!mChangeSetListeners.isEmpty()) {
+			mPendingEdges.add(e);
+			fireChangeSetIfIdle();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean removeEdge(IfmapEdge e) {
+		int id = edgeId(e);
+		if (id == NONE) {
+			return false;
+		}
+		IfmapEdge stored = mEdges[id];
+		IfmapVertex source = mVertices[mEdgeRecords.getInt(id, SOURCE)];
+		IfmapVertex target = mVertices[mEdgeRecords.getInt(id, SOURCE + 4)];
+		unlink(id, 0);
+		unlink(id, 1);
+		mEdgeIds.remove(Fingerprints.of(stored), id);
+		mEdges[id] = null;
+		mEdgeRecords.putInt(id, SOURCE, NONE);
+		mEdgeRecords.putInt(id, SOURCE + 4, mFreeEdge);
+		mFreeEdge = id;
+		mEdgeCount--;
+		mStatistics.edgeRemoved(stored);
+		mIndex.edgeRemoved(stored);
+		mPendingEdges.remove(stored);
+		fireEdgeEvent(GraphEdgeChangeEvent.EDGE_REMOVED, stored, source, target);
+		return true;
+	}
+
+	@Override
+	public IfmapEdge removeEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		IfmapEdge e = getEdge(sourceVertex, targetVertex);
+		if (e != null) {
+			removeEdge(e);
+		}
+		return e;
+	}
+
+	/**
+	 * Appends the edge to the incidence list of one of its vertices.
+	 */
+	private void link(int edge, int side, int vertex) {
+		int incidence = edge << 1 | side;
+		int last = mVertexRecords.getInt(vertex, LAST);
+		mEdgeRecords.putInt(edge, SOURCE + 4 * side, vertex);
+		mEdgeRecords.putInt(edge, NEXT + 8 * side, NONE);
+		mEdgeRecords.putInt(edge, PREVIOUS + 8 * side, last);
+		if (last == NONE) {
+			mVertexRecords.putInt(vertex, FIRST, incidence);
+		} else {
+			mEdgeRecords.putInt(last >>> 1, NEXT + 8 * (last & 1), incidence);
+		}
+		mVertexRecords.putInt(vertex, LAST, incidence);
+		mVertexRecords.putInt(vertex, DEGREE, mVertexRecords.getInt(vertex, DEGREE) + 1);
+	}
+
+	/**
+	 * Removes the edge from the incidence list of one of its vertices.
+	 */
+	private void unlink(int edge, int side) {
+		int vertex = mEdgeRecords.getInt(edge, SOURCE + 4 * side);
+		int next = mEdgeRecords.getInt(edge, NEXT + 8 * side);
+		int previous = mEdgeRecords.getInt(edge, PREVIOUS + 8 * side);
+		if (previous == NONE) {
+			mVertexRecords.putInt(vertex, FIRST, next);
+		} else {
+			mEdgeRecords.putInt(previous >>> 1, NEXT + 8 * (previous & 1), next);
+		}
+		if (next == NONE) {
+			mVertexRecords.putInt(vertex, LAST, previous);
+		} else {
+			mEdgeRecords.putInt(next >>> 1, PREVIOUS + 8 * (next & 1), previous);
+		}
+		mVertexRecords.putInt(vertex, DEGREE, mVertexRecords.getInt(vertex, DEGREE) - 1);
+	}
+
+	private int nextIncidence(int incidence) {
+		return mEdgeRecords.getInt(incidence >>> 1, NEXT + 8 * (incidence & 1));
+	}
+
+	private int existingVertexId(IfmapVertex v) {
+		int id = vertexId(v);
+		if (id == NONE) {
+			if (v == null) {
+				throw new NullPointerException();
+			}
+			throw new IllegalArgumentException("no such vertex in graph");
+		}
+		return id;
+	}
+
+	private int existingEdgeId(IfmapEdge e) {
+		int id = edgeId(e);
+		if (id == NONE) {
+			throw new IllegalArgumentException("no such edge in graph");
+		}
+		return id;
+	}
+
+	@Override
+	public Set<IfmapEdge> edgesOf(IfmapVertex vertex) {
+		int id = existingVertexId(vertex);
+		Set<IfmapEdge> result = new ArrayUnenforcedSet<>(mVertexRecords.getInt(id, DEGREE));
+		for (int i = mVertexRecords.getInt(id, FIRST); i != NONE; i = nextIncidence(i)) {
+			result.add(mEdges[i >>> 1]);
+		}
+		return result;
+	}
+
+	/**
+	 * @param vertex
+	 *            The vertex
+	 * @return The number of edges touching the vertex
+	 */
+	public int degreeOf(IfmapVertex vertex) {
+		return mVertexRecords.getInt(existingVertexId(vertex), DEGREE);
+	}
+
+	@Override
+	public IfmapVertex getEdgeSource(IfmapEdge e) {
+		return mVertices[mEdgeRecords.getInt(existingEdgeId(e), SOURCE)];
+	}
+
+	@Override
+	public IfmapVertex getEdgeTarget(IfmapEdge e) {
+		return mVertices[mEdgeRecords.getInt(existingEdgeId(e), SOURCE + 4)];
+	}
+
+	@Override
+	public Set<IfmapEdge> getAllEdges(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		int source = vertexId(sourceVertex);
+		int target = vertexId(targetVertex);
+		if (source == NONE || target == NONE) {
+			return null;
+		}
+		Set<IfmapEdge> result = new ArrayUnenforcedSet<>();
+		for (int i = mVertexRecords.getInt(source, FIRST); i != NONE; i = nextIncidence(i)) {
+			// the vertex on the other side of the incidence
+			if (mEdgeRecords.getInt(i >>> 1, SOURCE + 4 * (1 - (i & 1))) == target) {
+				result.add(mEdges[i >>> 1]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public IfmapEdge getEdge(IfmapVertex sourceVertex, IfmapVertex targetVertex) {
+		Set<IfmapEdge> edges = getAllEdges(sourceVertex, targetVertex);
+		if (edges == null || edges.isEmpty()) {
+			return null;
+		}
+		return edges.iterator().next();
+	}
+
+	@Override
+	public EdgeFactory<IfmapVertex, IfmapEdge> getEdgeFactory() {
+		return mEdgeFactory;
+	}
+
+	@Override
+	public double getEdgeWeight(IfmapEdge e) {
+		return WeightedGraph.DEFAULT_EDGE_WEIGHT;
+	}
+
+	@Override
+	public boolean removeEdgeSensitive(IfmapEdge toRemove) {
+		if (!(toRemove instanceof IfmapEdgeImpl)) {
+			return false;
+		}
+		// the id table compares with the IF-MAP equality, so it finds the singleValue link of the same type as well
+		return removeEdge(toRemove);
+	}
+
+	@Override
+	public boolean addEdgeSensitive(IfmapVertex v1, IfmapVertex v2, IfmapEdge toAdd) {
+		if (!(toAdd instanceof IfmapEdgeImpl)) {
+			return false;
+		}
+		int existing = edgeId(toAdd);
+		if (existing != NONE && ((IfmapEdgeImpl) toAdd).getMetadata().isSingleValue()
+				&& !mEdges[existing].equalsNonIfmap(toAdd)) {
+			removeEdge(mEdges[existing]);
+		}
+		return addEdge(v1, v2, toAdd);
+	}
+
+	@Override
+	public boolean addMetadataToVertex(IfmapVertex vertex, Metadata m) {
+		IfmapVertex v = findVertex(vertex);
+		if (v == null) {
+			return false;
+		}
+		boolean modified = ((IfmapVertexImpl) v).addMetadata(m);
+		if (modified) {
+			mStatistics.metadataAdded(m);
+			fireVertexChanged(v);
+		}
+		return modified;
+	}
+
+	@Override
+	public boolean removeMetadataFromVertex(IfmapVertex vertex, Metadata m) {
+		IfmapVertex v = findVertex(vertex);
+		if (v == null) {
+			return false;
+		}
+		boolean modified = ((IfmapVertexImpl) v).removeMetadata(m);
+		if (modified) {
+			mStatistics.metadataRemoved(m);
+			fireVertexChanged(v);
+		}
+		return modified;
+	}
+
+	/**
+	 * Removes metadata from an existing vertex in the graph.
+	 * 
+	 * @param vertex
+	 *            The vertex to remove metadata from
+	 * @param meta
+	 *            The metadata to remove
+	 * @return Whether the operation was successful
+	 */
+	public boolean removeMetadataFromVertex(IfmapVertex vertex, List<Metadata> meta) {
+		boolean changed = false;
+		for (Metadata m : meta) {
+			if (removeMetadataFromVertex(vertex, m)) {
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	public void setLastUpdated(Long timestamp) {
+		mLastUpdated = timestamp;
+	}
+
+	@Override
+	public Long getLastUpdated() {
+		return mLastUpdated;
+	}
+
+	@Override
+	public GraphStatistics getStatistics() {
+		return mStatistics;
+	}
+
+	/**
+	 * Sets the property paths whose values are indexed, e.g. /ip-address[@value]. The index is rebuilt, so this should
+	 * be done before the graph is filled.
+	 * 
+	 * @param properties
+	 *            The property paths
+	 */
+	public void setIndexedProperties(Collection<String> properties) {
+		mIndex = new GraphIndex(properties);
+		for (IfmapVertex v : vertexSet()) {
+			mIndex.vertexAdded(v);
+		}
+		for (IfmapEdge e : edgeSet()) {
+			mIndex.edgeAdded(e);
+		}
+	}
+
+	/**
+	 * @return The property paths whose values are indexed
+	 */
+	public Set<String> getIndexedProperties() {
+		return mIndex.getProperties();
+	}
+
+	@Override
+	public Set<IfmapVertex> getVerticesOfType(String type) {
+		return mIndex.verticesOfType(type);
+	}
+
+	@Override
+	public Set<IfmapVertex> getVerticesWithProperty(String property, String value) {
+		return mIndex.verticesWithProperty(property, value);
+	}
+
+	@Override
+	public Set<IfmapEdge> getEdgesOfType(String type) {
+		return mIndex.edgesOfType(type);
+	}
+
+	@Override
+	public void addGraphListener(GraphListener<IfmapVertex, IfmapEdge> l) {
+		if (!mGraphListeners.contains(l)) {
+			mGraphListeners.add(l);
+		}
+	}
+
+	@Override
+	public void removeGraphListener(GraphListener<IfmapVertex, IfmapEdge> l) {
+		mGraphListeners.remove(l);
+	}
+
+	@Override
+	public void addVertexSetListener(VertexSetListener<IfmapVertex> l) {
+		if (!mVertexSetListeners.contains(l)) {
+			mVertexSetListeners.add(l);
+		}
+	}
+
+	@Override
+	public void removeVertexSetListener(VertexSetListener<IfmapVertex> l) {
+		mVertexSetListeners.remove(l);
+	}
+
+	private void fireVertexEvent(int type, IfmapVertex v) {
+		if (mVertexSetListeners.isEmpty() && mGraphListeners.isEmpty()) {
+			return;
+		}
+		GraphVertexChangeEvent<IfmapVertex> event = new GraphVertexChangeEvent<>(this, type, v);
+		for (VertexSetListener<IfmapVertex> l : mVertexSetListeners) {
+			if (type == GraphVertexChangeEvent.VERTEX_ADDED) {
+				l.vertexAdded(event);
+			} else {
+				l.vertexRemoved(event);
+			}
+		}
+		for (GraphListener<IfmapVertex, IfmapEdge> l : mGraphListeners) {
+			if (type == GraphVertexChangeEvent.VERTEX_ADDED) {
+				l.vertexAdded(event);
+			} else {
+				l.vertexRemoved(event);
+			}
+		}
+	}
+
+	private void fireEdgeEvent(int type, IfmapEdge e, IfmapVertex source, IfmapVertex target) {
+		if (mGraphListeners.isEmpty()) {
+			return;
+		}
+		GraphEdgeChangeEvent<IfmapVertex, IfmapEdge> event = new GraphEdgeChangeEvent<>(this, type, e, source,
+				target);
+		for (GraphListener<IfmapVertex, IfmapEdge> l : mGraphListeners) {
+			if (type == GraphEdgeChangeEvent.EDGE_ADDED) {
+				l.edgeAdded(event);
+			} else {
+				l.edgeRemoved(event);
+			}
+		}
+	}
+
+	@Override
+	public void addVertexStateListener(VertexStateListener<IfmapVertex> l) {
+		mVertexStateListeners.add(l);
+	}
+
+	@Override
+	public void removeVertexStateListener(VertexStateListener<IfmapVertex> l) {
+		mVertexStateListeners.remove(l);
+	}
+
+	@Override
+	public void fireVertexChanged(IfmapVertex vertex) {
+		for (VertexStateListener<IfmapVertex> l : mVertexStateListeners) {
+			l.vertexChanged(new GraphVertexModifyEvent<IfmapVertex>(this, GraphVertexModifyEvent.VERTEX_MODIFIED,
+					vertex));
+		}
+		if (!mChangeSetListeners.isEmpty()) {
+			mPendingVertices.add(vertex);
+			fireChangeSetIfIdle();
+		}
+	}
+
+	@Override
+	public void addChangeSetListener(GraphChangeSetListener<IfmapVertex, IfmapEdge> l) {
+		mChangeSetListeners.add(l);
+	}
+
+	@Override
+	public void removeChangeSetListener(GraphChangeSetListener<IfmapVertex, IfmapEdge> l) {
+		mChangeSetListeners.remove(l);
+	}
+
+	@Override
+	public void beginUpdate() {
+		mUpdateDepth++;
+	}
+
+	@Override
+	public void commitUpdate() {
+		if (mUpdateDepth > 0) {
+			mUpdateDepth--;
+		}
+		fireChangeSetIfIdle();
+	}
+
+	private void fireChangeSetIfIdle() {
+		if (mUpdateDepth > 0 || (mPendingEdges.isEmpty() && mPendingVertices.isEmpty())) {
+			return;
+		}
+		GraphChangeSetEvent<IfmapVertex, IfmapEdge> event = new GraphChangeSetEvent<>(this, mPendingEdges,
+				mPendingVertices);
+		mPendingEdges.clear();
+		mPendingVertices.clear();
+		for (GraphChangeSetListener<IfmapVertex, IfmapEdge> l : mChangeSetListeners) {
+			l.changeSetCommitted(event);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		if (edgeSet().isEmpty()) {
+			return vertexSet().hashCode();
+		} else {
+			int result = 1;
+			for (IfmapEdge e : edgeSet()) {
+				result += e.hashCodeNonIfmap();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Read-only set view on the vertex or edge array, in the order of the ids.
+	 */
+	private abstract static class ElementSet<T> extends AbstractSet<T> {
+
+		/**
+		 * @param id
+		 *            The id
+		 * @return The element with the id, null if the id is not in use
+		 */
+		abstract T element(int id);
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private int mId = advance(0);
+
+				private int advance(int from) {
+					int id = from;
+					while (id < highWater() && element(id) == null) {
+						id++;
+					}
+					return id;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return element(mId) != null;
+				}
+
+				@Override
+				public T next() {
+					T result = element(mId);
+					if (result == null) {
+						throw new NoSuchElementException();
+					}
+					mId = advance(mId + 1);
+					return result;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		/**
+		 * @return An upper bound of the ids in use
+		 */
+		abstract int highWater();
+	}
+}
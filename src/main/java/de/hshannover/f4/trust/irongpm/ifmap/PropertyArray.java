@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact storage of the properties of an element: the ids of the property paths in the {@link SymbolTable}, sorted
+ * ascending, and the values at the same positions. Elements have only a few properties, which are mostly added once,
+ * so the arrays are copied on each addition instead of keeping spare capacity. Not thread-safe for modifications.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class PropertyArray {
+
+	private static final int[] NOKEYS = new int[0];
+	private static final String[] NOVALUES = new String[0];
+
+	private int[] mKeys = NOKEYS;
+	private String[] mValues = NOVALUES;
+
+	/**
+	 * Creates empty properties.
+	 */
+	public PropertyArray() {
+	}
+
+	/**
+	 * Creates a copy of the properties.
+	 * 
+	 * @param properties
+	 *            The properties to copy
+	 */
+	public PropertyArray(PropertyArray properties) {
+		mKeys = properties.mKeys;
+		mValues = properties.mValues;
+	}
+
+	/**
+	 * Sets the value of a property.
+	 * 
+	 * @param key
+	 *            The path of the property
+	 * @param value
+	 *            The value
+	 * @return The previous value, null if there was none
+	 */
+	public String put(String key, String value) {
+		int id = SymbolTable.id(key);
+		int index = Arrays.binarySearch(mKeys, id);
+		if (index >= 0) {
+			String previous = mValues[index];
+			String[] values = mValues.clone();
+			values[index] = value;
+			mValues = values;
+			return previous;
+		}
+		int insert = -index - 1;
+		int[] keys = new int[mKeys.length + 1];
+		String[] values = new String[mValues.length + 1];
+		System.arraycopy(mKeys, 0, keys, 0, insert);
+		System.arraycopy(mValues, 0, values, 0, insert);
+		keys[insert] = id;
+		values[insert] = value;
+		System.arraycopy(mKeys, insert, keys, insert + 1, mKeys.length - insert);
+		System.arraycopy(mValues, insert, values, insert + 1, mValues.length - insert);
+		mKeys = keys;
+		mValues = values;
+		return null;
+	}
+
+	/**
+	 * Sets the values of all given properties.
+	 * 
+	 * @param properties
+	 *            The properties
+	 */
+	public void putAll(Map<String, String> properties) {
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			put(property.getKey(), property.getValue());
+		}
+	}
+
+	/**
+	 * @param key
+	 *            The path of the property
+	 * @return The value, null if the property is not set
+	 */
+	public String get(String key) {
+		int index = indexOf(key);
+		return index < 0 ? null : mValues[index];
+	}
+
+	/**
+	 * @param key
+	 *            The path of the property
+	 * @return Whether the property is set
+	 */
+	public boolean containsKey(String key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * @return The paths of the properties
+	 */
+	public List<String> keys() {
+		List<String> keys = new ArrayList<>(mKeys.length);
+		for (int id : mKeys) {
+			keys.add(SymbolTable.symbol(id));
+		}
+		return keys;
+	}
+
+	/**
+	 * @return The number of properties
+	 */
+	public int size() {
+		return mKeys.length;
+	}
+
+	/**
+	 * @return The 64 bit fingerprint of the properties, equal properties have equal fingerprints
+	 */
+	long fingerprint() {
+		long h = mKeys.length;
+		for (int i = 0; i < mKeys.length; i++) {
+			h = Fingerprints.mix(Fingerprints.mix(h, mKeys[i]), Fingerprints.hash(mValues[i]));
+		}
+		return h;
+	}
+
+	private int indexOf(String key) {
+		int id = SymbolTable.lookup(key);
+		return id < 0 ? -1 : Arrays.binarySearch(mKeys, id);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof PropertyArray)) {
+			return false;
+		}
+		// the keys are sorted by id, so equal properties have equal arrays
+		PropertyArray other = (PropertyArray) o;
+		return Arrays.equals(mKeys, other.mKeys) && Arrays.equals(mValues, other.mValues);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(mKeys) + Arrays.hashCode(mValues);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("{");
+		for (int i = 0; i < mKeys.length; i++) {
+			if (i > 0) {
+				result.append(", ");
+			}
+			result.append(SymbolTable.symbol(mKeys[i])).append('=').append(mValues[i]);
+		}
+		return result.append('}').toString();
+	}
+}
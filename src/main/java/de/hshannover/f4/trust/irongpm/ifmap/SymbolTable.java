@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global table of the type names and property paths of the graph model. Every symbol is stored once and identified
+ * by a small integer id, so the elements only store the ids (or the shared instance of the string) instead of their
+ * own copies. Symbols are never removed; their number is bounded by the IF-MAP schemas in use.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public final class SymbolTable {
+
+	private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+	private static volatile String[] symbols = new String[256];
+	private static int size = 0;
+
+	/**
+	 * Cause security.
+	 */
+	private SymbolTable() {
+	}
+
+	/**
+	 * @param symbol
+	 *            The symbol
+	 * @return The id of the symbol, it is added if it is not yet known
+	 */
+	public static int id(String symbol) {
+		Integer id = IDS.get(symbol);
+		if (id != null) {
+			return id;
+		}
+		return add(symbol);
+	}
+
+	/**
+	 * @param symbol
+	 *            The symbol
+	 * @return The id of the symbol, -1 if it is not known (it is not added)
+	 */
+	public static int lookup(String symbol) {
+		Integer id = IDS.get(symbol);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 *            The id of a symbol
+	 * @return The symbol
+	 */
+	public static String symbol(int id) {
+		return symbols[id];
+	}
+
+	/**
+	 * @param symbol
+	 *            The symbol, may be null
+	 * @return The shared instance of the symbol
+	 */
+	public static String intern(String symbol) {
+		return symbol == null ? null : symbol(id(symbol));
+	}
+
+	/**
+	 * @return The number of known symbols
+	 */
+	public static synchronized int size() {
+		return size;
+	}
+
+	private static synchronized int add(String symbol) {
+		Integer id = IDS.get(symbol);
+		if (id != null) {
+			return id;
+		}
+		String[] current = symbols;
+		if (size == current.length) {
+			current = Arrays.copyOf(current, size * 2);
+		}
+		current[size] = symbol;
+		// publish the array before the id, so every known id can be resolved
+		symbols = current;
+		IDS.put(symbol, size);
+		return size++;
+	}
+}
@@ -0,0 +1,524 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.ifmap;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+
+/**
+ * Multi-version mirror of an {@link IfmapGraphImpl} which backs the {@link IfmapGraphSnapshot}s of the graph. Every
+ * vertex and edge is mapped to a chain of immutable records (newest first), each tagged with the version it was
+ * written in. A snapshot only remembers the version it was taken at, so taking a snapshot is O(1) and readers never
+ * block the writer. Records which are not visible to any live snapshot anymore are pruned by the writer. Vertex
+ * records hold frozen copies of the vertex state (see {@link IfmapVertexImpl#freeze()}), never the vertex instance of
+ * the graph, since its metadata is changed by the writer.
+ * 
+ * All modifying methods must only be called by the thread modifying the graph, the lookup methods may be called
+ * concurrently.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+final class VersionedGraphStore {
+
+	private static final IfmapEdge[] NO_EDGES = new IfmapEdge[0];
+
+	private final ConcurrentMap<IfmapVertex, VertexRecord> mVertices = new ConcurrentHashMap<>();
+	private final ConcurrentMap<IfmapEdge, EdgeRecord> mEdges = new ConcurrentHashMap<>();
+	private final TreeMap<Long, Integer> mLiveVersions = new TreeMap<>();
+	private final List<Object> mTombstones = new ArrayList<>();
+	private final GraphIndex mIndex;
+	private volatile long mVersion = 0;
+	private boolean mDirty = false;
+
+	/**
+	 * Constructor. Initializes the store with the current content of the graph.
+	 * 
+	 * @param graph
+	 *            The graph to mirror
+	 */
+	VersionedGraphStore(IfmapGraphImpl graph) {
+		mIndex = new GraphIndex(graph.getIndexedProperties());
+		for (IfmapVertex v : graph.vertexSet()) {
+			mVertices.put(v, new VertexRecord(mVersion, freeze(v), graph.edgesOf(v).toArray(NO_EDGES), null));
+			mIndex.vertexAdded(v);
+		}
+		for (IfmapEdge e : graph.edgeSet()) {
+			mEdges.put(e, new EdgeRecord(mVersion, e, graph.getEdgeSource(e), graph.getEdgeTarget(e), null));
+			mIndex.edgeAdded(e);
+		}
+	}
+
+	/**
+	 * Publishes all changes made so far and registers a reader for the resulting version.
+	 * 
+	 * @return The version the reader has to use
+	 */
+	long acquire() {
+		if (mDirty) {
+			mVersion++;
+			mDirty = false;
+			purgeTombstones();
+		}
+		synchronized (mLiveVersions) {
+			Integer count = mLiveVersions.get(mVersion);
+			mLiveVersions.put(mVersion, count == null ? 1 : count + 1);
+		}
+		return mVersion;
+	}
+
+	/**
+	 * Unregisters a reader, so the records only visible to it can be pruned.
+	 * 
+	 * @param version
+	 *            The version acquired by the reader
+	 */
+	void release(long version) {
+		synchronized (mLiveVersions) {
+			Integer count = mLiveVersions.get(version);
+			if (count == null) {
+				return;
+			}
+			if (count > 1) {
+				mLiveVersions.put(version, count - 1);
+			} else {
+				mLiveVersions.remove(version);
+			}
+		}
+	}
+
+	/**
+	 * @return The oldest version which is still in use by a reader - or Long.MAX_VALUE if there is none
+	 */
+	private long oldestLiveVersion() {
+		synchronized (mLiveVersions) {
+			return mLiveVersions.isEmpty() ? Long.MAX_VALUE : mLiveVersions.firstKey();
+		}
+	}
+
+	void addVertex(IfmapVertex v) {
+		writeVertex(v, new VertexRecord(nextVersion(), freeze(v), NO_EDGES, null));
+	}
+
+	void removeVertex(IfmapVertex v) {
+		writeVertex(v, new VertexRecord(nextVersion(), null, NO_EDGES, null));
+		mTombstones.add(v);
+	}
+
+	/**
+	 * Has to be called after the metadata of a stored vertex was modified.
+	 * 
+	 * @param v
+	 *            The vertex instance stored in the graph
+	 */
+	void vertexChanged(IfmapVertex v) {
+		VertexRecord head = mVertices.get(v);
+		if (head == null || head.mVertex == null) {
+			return;
+		}
+		writeVertex(v, new VertexRecord(nextVersion(), freeze(v), head.mEdges, null));
+	}
+
+	void addEdge(IfmapEdge e, IfmapVertex source, IfmapVertex target) {
+		writeEdge(e, new EdgeRecord(nextVersion(), e, source, target, null));
+		linkEdge(source, e, true);
+		if (!source.equals(target)) {
+			linkEdge(target, e, true);
+		}
+	}
+
+	void removeEdge(IfmapEdge e) {
+		EdgeRecord head = mEdges.get(e);
+		if (head == null || head.mEdge == null) {
+			return;
+		}
+		writeEdge(e, new EdgeRecord(nextVersion(), null, head.mSource, head.mTarget, null));
+		mTombstones.add(e);
+		linkEdge(head.mSource, head.mEdge, false);
+		if (!head.mSource.equals(head.mTarget)) {
+			linkEdge(head.mTarget, head.mEdge, false);
+		}
+	}
+
+	private void linkEdge(IfmapVertex v, IfmapEdge e, boolean add) {
+		VertexRecord head = mVertices.get(v);
+		if (head == null || head.mVertex == null) {
+			return;
+		}
+		IfmapEdge[] edges;
+		if (add) {
+			edges = new IfmapEdge[head.mEdges.length + 1];
+			System.arraycopy(head.mEdges, 0, edges, 0, head.mEdges.length);
+			edges[head.mEdges.length] = e;
+		} else {
+			int index = -1;
+			for (int i = 0; i < head.mEdges.length && index < 0; i++) {
+				if (head.mEdges[i] == e) {
+					index = i;
+				}
+			}
+			if (index < 0) {
+				return;
+			}
+			edges = new IfmapEdge[head.mEdges.length - 1];
+			System.arraycopy(head.mEdges, 0, edges, 0, index);
+			System.arraycopy(head.mEdges, index + 1, edges, index, edges.length - index);
+		}
+		writeVertex(v, new VertexRecord(nextVersion(), head.mVertex, edges, null));
+	}
+
+	private long nextVersion() {
+		mDirty = true;
+		return mVersion + 1;
+	}
+
+	private void writeVertex(IfmapVertex key, VertexRecord record) {
+		VertexRecord head = mVertices.get(key);
+		if (head == null) {
+			mIndex.vertexAdded(key);
+		} else if (head.mVersion == record.mVersion) {
+			// not yet published, so it can be replaced
+			head = head.mPrevious;
+		}
+		record.mPrevious = head;
+		prune(record);
+		mVertices.put(key, record);
+	}
+
+	private void writeEdge(IfmapEdge key, EdgeRecord record) {
+		EdgeRecord head = mEdges.get(key);
+		if (head == null) {
+			mIndex.edgeAdded(key);
+		} else if (head.mVersion == record.mVersion) {
+			head = head.mPrevious;
+		}
+		record.mPrevious = head;
+		prune(record);
+		mEdges.put(key, record);
+	}
+
+	/**
+	 * Cuts off all records behind the first one which is visible to the oldest live reader.
+	 */
+	private void prune(Record record) {
+		long oldest = oldestLiveVersion();
+		for (Record r = record; r != null; r = r.previous()) {
+			if (r.mVersion <= oldest) {
+				r.cut();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes deleted vertices and edges which are not visible to any live reader anymore.
+	 */
+	private void purgeTombstones() {
+		long oldest = Math.min(oldestLiveVersion(), mVersion);
+		Iterator<Object> it = mTombstones.iterator();
+		while (it.hasNext()) {
+			Object key = it.next();
+			Record head = key instanceof IfmapEdge ? mEdges.get(key) : mVertices.get(key);
+			if (head == null || !head.isDeleted()) {
+				it.remove();
+			} else if (head.mVersion <= oldest) {
+				if (key instanceof IfmapEdge) {
+					if (mEdges.remove(key, head)) {
+						mIndex.edgeRemoved((IfmapEdge) key);
+					}
+				} else if (mVertices.remove(key, head)) {
+					mIndex.vertexRemoved((IfmapVertex) key);
+				}
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param v
+	 *            The vertex to look for
+	 * @param version
+	 *            The version of the reader
+	 * @return The record of the vertex visible in the given version - or null
+	 */
+	VertexRecord vertexAt(IfmapVertex v, long version) {
+		for (VertexRecord r = mVertices.get(v); r != null; r = r.mPrevious) {
+			if (r.mVersion <= version) {
+				return r.mVertex == null ? null : r;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param e
+	 *            The edge to look for
+	 * @param version
+	 *            The version of the reader
+	 * @return The record of the edge visible in the given version - or null
+	 */
+	EdgeRecord edgeAt(IfmapEdge e, long version) {
+		for (EdgeRecord r = mEdges.get(e); r != null; r = r.mPrevious) {
+			if (r.mVersion <= version) {
+				return r.mEdge == null ? null : r;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param version
+	 *            The version of the reader
+	 * @return All vertices visible in the given version
+	 */
+	List<IfmapVertex> verticesAt(long version) {
+		List<IfmapVertex> result = new ArrayList<>();
+		for (VertexRecord head : mVertices.values()) {
+			for (VertexRecord r = head; r != null; r = r.mPrevious) {
+				if (r.mVersion <= version) {
+					if (r.mVertex != null) {
+						result.add(r.mVertex);
+					}
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param version
+	 *            The version of the reader
+	 * @return All edges visible in the given version
+	 */
+	List<IfmapEdge> edgesAt(long version) {
+		List<IfmapEdge> result = new ArrayList<>();
+		for (EdgeRecord head : mEdges.values()) {
+			for (EdgeRecord r = head; r != null; r = r.mPrevious) {
+				if (r.mVersion <= version) {
+					if (r.mEdge != null) {
+						result.add(r.mEdge);
+					}
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the identifiers
+	 * @param version
+	 *            The version of the reader
+	 * @return All vertices of the given type visible in the given version
+	 */
+	Set<IfmapVertex> verticesOfTypeAt(String type, long version) {
+		return verticesAt(mIndex.verticesOfType(type), version);
+	}
+
+	/**
+	 * @param property
+	 *            The property path
+	 * @param value
+	 *            The value of the property
+	 * @param version
+	 *            The version of the reader
+	 * @return All vertices with the given property value visible in the given version - or null if the property is
+	 *         not indexed
+	 */
+	Set<IfmapVertex> verticesWithPropertyAt(String property, String value, long version) {
+		Set<IfmapVertex> keys = mIndex.verticesWithProperty(property, value);
+		return keys == null ? null : verticesAt(keys, version);
+	}
+
+	/**
+	 * @param type
+	 *            The type name of the metadata
+	 * @param version
+	 *            The version of the reader
+	 * @return All edges with metadata of the given type visible in the given version
+	 */
+	Set<IfmapEdge> edgesOfTypeAt(String type, long version) {
+		Set<IfmapEdge> result = new HashSet<>();
+		for (IfmapEdge key : mIndex.edgesOfType(type)) {
+			EdgeRecord r = edgeAt(key, version);
+			if (r != null) {
+				result.add(r.mEdge);
+			}
+		}
+		return result;
+	}
+
+	private Set<IfmapVertex> verticesAt(Set<IfmapVertex> keys, long version) {
+		Set<IfmapVertex> result = new HashSet<>();
+		for (IfmapVertex key : keys) {
+			VertexRecord r = vertexAt(key, version);
+			if (r != null) {
+				result.add(r.mVertex);
+			}
+		}
+		return result;
+	}
+
+	private static IfmapVertex freeze(IfmapVertex v) {
+		if (v instanceof IfmapVertexImpl) {
+			return ((IfmapVertexImpl) v).freeze();
+		}
+		IfmapVertexImpl copy = new IfmapVertexImpl(v);
+		for (Metadata m : v.getMetadata()) {
+			copy.addMetadata(m);
+		}
+		return copy;
+	}
+
+	/**
+	 * Common base of the version records.
+	 */
+	private abstract static class Record {
+
+		final long mVersion;
+
+		Record(long version) {
+			mVersion = version;
+		}
+
+		abstract Record previous();
+
+		abstract void cut();
+
+		abstract boolean isDeleted();
+	}
+
+	/**
+	 * State of one vertex in one version.
+	 */
+	static final class VertexRecord extends Record {
+
+		private final IfmapVertex mVertex;
+		private final IfmapEdge[] mEdges;
+		private volatile VertexRecord mPrevious;
+
+		VertexRecord(long version, IfmapVertex vertex, IfmapEdge[] edges, VertexRecord previous) {
+			super(version);
+			mVertex = vertex;
+			mEdges = edges;
+			mPrevious = previous;
+		}
+
+		IfmapVertex getVertex() {
+			return mVertex;
+		}
+
+		IfmapEdge[] getEdges() {
+			return mEdges;
+		}
+
+		@Override
+		Record previous() {
+			return mPrevious;
+		}
+
+		@Override
+		void cut() {
+			mPrevious = null;
+		}
+
+		@Override
+		boolean isDeleted() {
+			return mVertex == null;
+		}
+	}
+
+	/**
+	 * State of one edge in one version.
+	 */
+	static final class EdgeRecord extends Record {
+
+		private final IfmapEdge mEdge;
+		private final IfmapVertex mSource;
+		private final IfmapVertex mTarget;
+		private volatile EdgeRecord mPrevious;
+
+		EdgeRecord(long version, IfmapEdge edge, IfmapVertex source, IfmapVertex target, EdgeRecord previous) {
+			super(version);
+			mEdge = edge;
+			mSource = source;
+			mTarget = target;
+			mPrevious = previous;
+		}
+
+		IfmapEdge getEdge() {
+			return mEdge;
+		}
+
+		IfmapVertex getSource() {
+			return mSource;
+		}
+
+		IfmapVertex getTarget() {
+			return mTarget;
+		}
+
+		@Override
+		Record previous() {
+			return mPrevious;
+		}
+
+		@Override
+		void cut() {
+			mPrevious = null;
+		}
+
+		@Override
+		boolean isDeleted() {
+			return mEdge == null;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.listener;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.jgrapht.event.GraphChangeEvent;
+
+/**
+ * An event summarizing all changes of a graph between the begin and the commit of an update, e.g. one delta of the
+ * dataservice. Only additions of edges and modifications of vertices are contained, since these are the changes which
+ * can lead to new matches.
+ *
+ * @author Leonard Renners
+ *
+ * @param <V>
+ *            The class of the vertex.
+ * @param <E>
+ *            The class of the edge.
+ */
+public class GraphChangeSetEvent<V, E> extends GraphChangeEvent {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -1839572405128848541L;
+
+	/**
+	 * Change set event. This event is fired after an update of the graph has been committed.
+	 */
+	public static final int CHANGE_SET_COMMITTED = 22;
+
+	private Set<E> mAddedEdges;
+	private Set<V> mChangedVertices;
+
+	/**
+	 * Creates a new GraphChangeSetEvent object.
+	 *
+	 * @param eventSource
+	 *            the source of the event.
+	 * @param addedEdges
+	 *            the edges added within the update (and still present at the commit).
+	 * @param changedVertices
+	 *            the vertices modified within the update (and still present at the commit).
+	 */
+	public GraphChangeSetEvent(Object eventSource, Set<E> addedEdges, Set<V> changedVertices) {
+		super(eventSource, CHANGE_SET_COMMITTED);
+		mAddedEdges = Collections.unmodifiableSet(new LinkedHashSet<>(addedEdges));
+		mChangedVertices = Collections.unmodifiableSet(new LinkedHashSet<>(changedVertices));
+	}
+
+	public Set<E> getAddedEdges() {
+		return mAddedEdges;
+	}
+
+	public Set<V> getChangedVertices() {
+		return mChangedVertices;
+	}
+
+	/**
+	 * @return Whether the change set does not contain any change
+	 */
+	public boolean isEmpty() {
+		return mAddedEdges.isEmpty() && mChangedVertices.isEmpty();
+	}
+}
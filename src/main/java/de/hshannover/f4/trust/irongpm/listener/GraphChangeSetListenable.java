@@ -0,0 +1,79 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.listener;
+
+/**
+ * Interface to add a Listener functionality to react on a whole set of changes, which are collected between
+ * {@link #beginUpdate()} and {@link #commitUpdate()}. Changes outside of an update are delivered as a change set of
+ * their own.
+ *
+ * @author Leonard Renners
+ *
+ * @param <V>
+ *            The class of the vertex.
+ * @param <E>
+ *            The class of the edge.
+ */
+public interface GraphChangeSetListenable<V, E> {
+	/**
+	 * Adds the specified change set listener to this graph.
+	 *
+	 * @param l
+	 *            the listener to be added
+	 */
+	public void addChangeSetListener(GraphChangeSetListener<V, E> l);
+
+	/**
+	 * Removes the specified change set listener from this graph, if present.
+	 *
+	 * @param l
+	 *            the listener to be removed
+	 */
+	public void removeChangeSetListener(GraphChangeSetListener<V, E> l);
+
+	/**
+	 * Starts collecting changes. Updates may be nested, the change set is delivered with the outermost commit.
+	 */
+	public void beginUpdate();
+
+	/**
+	 * Ends collecting changes and notifies all listeners about the collected changes.
+	 */
+	public void commitUpdate();
+}
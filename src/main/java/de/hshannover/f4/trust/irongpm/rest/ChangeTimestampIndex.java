@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import com.google.gson.stream.JsonReader;
+
+import de.hshannover.f4.trust.irongpm.rest.VisitmetaResource.ResponseHandler;
+
+/**
+ * Sorted index of the change timestamps of the visitmeta dataservice. Each refresh only adds the changes newer than
+ * the newest known one (and asks the dataservice for just those), and timestamps older than the version of the graph
+ * are pruned, so the cost of a poll depends on the new changes instead of the whole history.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class ChangeTimestampIndex {
+
+	private final VisitmetaResource mResource;
+	private final IfmapGraphJsonReader mReader = new IfmapGraphJsonReader();
+	private final NavigableSet<Long> mTimestamps = new ConcurrentSkipListSet<>();
+	private Long mNewest;
+	private Long mPrunedBefore;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *            The REST interface of the visitmeta dataservice
+	 */
+	public ChangeTimestampIndex(VisitmetaResource resource) {
+		mResource = resource;
+	}
+
+	/**
+	 * Requests the changes newer than the newest known one and adds them to the index.
+	 * 
+	 * @return The number of new changes
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry of the request
+	 */
+	public synchronized int refresh() throws InterruptedException {
+		final Long newest = mNewest;
+		String path = newest == null ? "changes" : "changes?since=" + newest;
+		List<Long> timestamps = mResource.get(path, new ResponseHandler<List<Long>>() {
+			@Override
+			public List<Long> handle(JsonReader reader) throws IOException {
+				return mReader.readChangeTimestamps(reader, newest);
+			}
+		});
+		if (!timestamps.isEmpty()) {
+			mTimestamps.addAll(timestamps);
+			mNewest = timestamps.get(timestamps.size() - 1);
+		}
+		return timestamps.size();
+	}
+
+	/**
+	 * @param timestamp
+	 *            The version of the graph
+	 * @return The timestamp of the next newer change, null if no newer change is known
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while the index is requested again
+	 */
+	public synchronized Long next(Long timestamp) throws InterruptedException {
+		if (mPrunedBefore != null && timestamp < mPrunedBefore) {
+			// older versions were pruned, start over
+			mTimestamps.clear();
+			mNewest = null;
+			mPrunedBefore = null;
+			refresh();
+		}
+		return mTimestamps.higher(timestamp);
+	}
+
+	/**
+	 * @param timestamp
+	 *            The version of the graph
+	 * @param span
+	 *            The maximum number of changes to skip ahead
+	 * @return The timestamp of the change <i>span</i> changes newer than the version (or of the newest known change if
+	 *         there are less), null if no newer change is known
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while the index is requested again
+	 */
+	public synchronized Long ahead(Long timestamp, int span) throws InterruptedException {
+		Long target = next(timestamp);
+		if (target == null) {
+			return null;
+		}
+		Iterator<Long> newer = mTimestamps.tailSet(target, false).iterator();
+		for (int i = 1; i < span && newer.hasNext(); i++) {
+			target = newer.next();
+		}
+		return target;
+	}
+
+	/**
+	 * @param timestamp
+	 *            The version of the graph
+	 * @return The timestamps of all known newer changes in ascending order
+	 */
+	public NavigableSet<Long> newerThan(Long timestamp) {
+		return mTimestamps.tailSet(timestamp, false);
+	}
+
+	/**
+	 * @return The timestamp of the newest known change, null if none is known
+	 */
+	public synchronized Long getNewest() {
+		return mNewest;
+	}
+
+	/**
+	 * Forgets the changes older than the given version of the graph.
+	 * 
+	 * @param timestamp
+	 *            The version of the graph
+	 */
+	public synchronized void prune(Long timestamp) {
+		if (mPrunedBefore == null || timestamp > mPrunedBefore) {
+			mTimestamps.headSet(timestamp, false).clear();
+			mPrunedBefore = timestamp;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+/**
+ * Source of the changes of the graph. Delivers the deltas leading from one version of the graph to the next, either
+ * by requesting them from the visitmeta dataservice ({@link PollingGraphFeed}) or by receiving them as they are
+ * pushed ({@link StreamingGraphFeed}).
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public interface GraphFeed {
+
+	/**
+	 * Waits for the next change of the graph.
+	 * 
+	 * @param lastUpdated
+	 *            The timestamp of the version of the graph the delta has to be applied to
+	 * @param timeout
+	 *            The maximum time to wait in ms
+	 * @return The delta leading to the next newer version of the graph (its timestamp is set), or null if there was no
+	 *         change within the timeout
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting
+	 */
+	IfmapGraphDelta nextUpdate(Long lastUpdated, long timeout) throws InterruptedException;
+
+	/**
+	 * Stops the feed and releases its connections.
+	 */
+	void close();
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+import java.util.List;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+
+/**
+ * The changes of the graph between two timestamps as reported by the visitmeta dataservice.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class IfmapGraphDelta {
+
+	private final Long mTimestamp;
+	private final List<IfmapGraphImpl> mUpdates;
+	private final List<IfmapGraphImpl> mDeletes;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param timestamp
+	 *            The timestamp of the version the delta leads to, null if unknown
+	 * @param updates
+	 *            The graph parts which were added
+	 * @param deletes
+	 *            The graph parts which were removed
+	 */
+	public IfmapGraphDelta(Long timestamp, List<IfmapGraphImpl> updates, List<IfmapGraphImpl> deletes) {
+		mTimestamp = timestamp;
+		mUpdates = updates;
+		mDeletes = deletes;
+	}
+
+	/**
+	 * Constructor for a delta without timestamp.
+	 * 
+	 * @param updates
+	 *            The graph parts which were added
+	 * @param deletes
+	 *            The graph parts which were removed
+	 */
+	public IfmapGraphDelta(List<IfmapGraphImpl> updates, List<IfmapGraphImpl> deletes) {
+		this(null, updates, deletes);
+	}
+
+	/**
+	 * Creates a copy of this delta leading to the given timestamp.
+	 * 
+	 * @param timestamp
+	 *            The timestamp of the version the delta leads to
+	 * @return The delta with the timestamp
+	 */
+	public IfmapGraphDelta withTimestamp(Long timestamp) {
+		return new IfmapGraphDelta(timestamp, mUpdates, mDeletes);
+	}
+
+	public Long getTimestamp() {
+		return mTimestamp;
+	}
+
+	public List<IfmapGraphImpl> getUpdates() {
+		return mUpdates;
+	}
+
+	public List<IfmapGraphImpl> getDeletes() {
+		return mDeletes;
+	}
+}
@@ -0,0 +1,365 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphBinaryCodec;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+
+/**
+ * Append-only log of the deltas applied to the graph, so a time window can be replayed (e.g. onto a checkpoint)
+ * without the dataservice. Each record also holds the version the delta was applied to, so a replay can tell whether
+ * the deltas continue the version of the graph. The log is a directory of segment files, each named after the
+ * timestamp of its first delta and written through a memory mapping. A full segment is truncated to its content and a
+ * new one is started; only the newest segments are retained. Records are only appended with increasing timestamps,
+ * deltas which are not newer than the last one (e.g. applied again after a restart from an older checkpoint) are
+ * skipped.
+ * 
+ * <pre>
+ * segment := record* 0:int
+ * record  := length:int crc32:int timestamp:long previous:long payload
+ *            (previous: the version the delta was applied to, payload: length bytes)
+ * payload := updateCount:int graph* deleteCount:int graph*  (graphs encoded by the IfmapGraphBinaryCodec)
+ * </pre>
+ * 
+ * The mapped pages are written back by the operating system, so the log survives a crash of the process; it is
+ * forced to the disk when a segment is finished and on close.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class IfmapGraphDeltaLog {
+
+	private static final Logger LOGGER = Logger.getLogger(IfmapGraphDeltaLog.class);
+
+	private static final String SUFFIX = ".deltas";
+	private static final int HEADER = 24;
+	private static final FileFilter SEGMENTS = new FileFilter() {
+		@Override
+		public boolean accept(File file) {
+			return file.isFile() && file.getName().endsWith(SUFFIX);
+		}
+	};
+
+	private final File mDirectory;
+	private final int mSegmentSize;
+	private final int mRetainedSegments;
+	private FileChannel mChannel;
+	private MappedByteBuffer mSegment;
+	private int mPosition;
+	private long mLastTimestamp = Long.MIN_VALUE;
+
+	/**
+	 * Handles the deltas read from the log.
+	 */
+	public interface DeltaHandler {
+		/**
+		 * @param delta
+		 *            The next delta, with its timestamp
+		 * @param previous
+		 *            The version of the graph the delta was applied to
+		 * @return Whether the following deltas should be read
+		 */
+		boolean handle(IfmapGraphDelta delta, long previous);
+	}
+
+	/**
+	 * Opens the log for appending, after the last complete record of the newest segment.
+	 * 
+	 * @param directory
+	 *            The directory of the segments, created if necessary
+	 * @param segmentSize
+	 *            The size of a segment in bytes (larger for a single delta which does not fit)
+	 * @param retainedSegments
+	 *            The number of segments kept, older ones are deleted
+	 * @throws IOException
+	 *             If the directory or the newest segment cannot be opened
+	 */
+	public IfmapGraphDeltaLog(File directory, int segmentSize, int retainedSegments) throws IOException {
+		mDirectory = directory;
+		mSegmentSize = segmentSize;
+		mRetainedSegments = Math.max(retainedSegments, 1);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the delta log directory " + directory);
+		}
+		File[] segments = segments(directory);
+		if (segments.length > 0) {
+			File newest = segments[segments.length - 1];
+			open(newest, Math.max(mSegmentSize, (int) newest.length()));
+			mLastTimestamp = first(newest) - 1;
+			while (payload(mSegment, mPosition) != null) {
+				mLastTimestamp = mSegment.getLong(mPosition + 8);
+				mPosition += HEADER + mSegment.getInt(mPosition);
+			}
+		}
+	}
+
+	/**
+	 * Appends a delta to the log.
+	 * 
+	 * @param delta
+	 *            The delta, it must have a timestamp
+	 * @param previous
+	 *            The version of the graph the delta was applied to
+	 * @return Whether the delta was appended, false if it is not newer than the last one
+	 * @throws IOException
+	 *             If the delta cannot be written
+	 */
+	public synchronized boolean append(IfmapGraphDelta delta, long previous) throws IOException {
+		if (delta.getTimestamp() == null) {
+			throw new IllegalArgumentException("Only deltas with a timestamp can be logged");
+		}
+		if (delta.getTimestamp() <= mLastTimestamp) {
+			return false;
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		writeGraphs(out, delta.getUpdates());
+		writeGraphs(out, delta.getDeletes());
+		byte[] payload = buffer.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		int size = HEADER + payload.length;
+		if (mSegment == null || mPosition + size + 4 > mSegment.capacity()) {
+			roll(delta.getTimestamp(), size + 4);
+		}
+		mSegment.putInt(mPosition + 4, (int) crc.getValue());
+		mSegment.putLong(mPosition + 8, delta.getTimestamp());
+		mSegment.putLong(mPosition + 16, previous);
+		ByteBuffer target = mSegment.duplicate();
+		target.position(mPosition + HEADER);
+		target.put(payload);
+		// the end mark behind the record and then the length, so a record is only visible when it is complete
+		mSegment.putInt(mPosition + size, 0);
+		mSegment.putInt(mPosition, payload.length);
+		mPosition += size;
+		mLastTimestamp = delta.getTimestamp();
+		return true;
+	}
+
+	/**
+	 * @return The timestamp of the newest delta in the log, null if it is empty
+	 */
+	public synchronized Long getLastTimestamp() {
+		return mLastTimestamp == Long.MIN_VALUE ? null : mLastTimestamp;
+	}
+
+	/**
+	 * @return The directory of the segments
+	 */
+	public File getDirectory() {
+		return mDirectory;
+	}
+
+	/**
+	 * Finishes the current segment and closes the log.
+	 * 
+	 * @throws IOException
+	 *             If the segment cannot be finished
+	 */
+	public synchronized void close() throws IOException {
+		finish();
+	}
+
+	private void roll(long timestamp, int size) throws IOException {
+		finish();
+		open(new File(mDirectory, String.format("%019d%s", timestamp, SUFFIX)), Math.max(mSegmentSize, size));
+		mPosition = 0;
+		File[] segments = segments(mDirectory);
+		for (int i = 0; i < segments.length - mRetainedSegments; i++) {
+			if (!segments[i].delete()) {
+				LOGGER.warn("Could not delete the old delta log segment " + segments[i]);
+			}
+		}
+	}
+
+	private void open(File file, int size) throws IOException {
+		mChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		mSegment = mChannel.map(MapMode.READ_WRITE, 0, size);
+	}
+
+	private void finish() throws IOException {
+		if (mSegment == null) {
+			return;
+		}
+		mSegment.force();
+		// keeps the end mark, the mapping is not used afterwards
+		mChannel.truncate(mPosition + 4);
+		mChannel.close();
+		mSegment = null;
+		mChannel = null;
+	}
+
+	private static void writeGraphs(DataOutputStream out, List<IfmapGraphImpl> graphs) throws IOException {
+		out.writeInt(graphs.size());
+		for (IfmapGraphImpl graph : graphs) {
+			IfmapGraphBinaryCodec.write(graph, out);
+		}
+	}
+
+	/**
+	 * Reads the deltas of a time range from the log, in the order they were appended.
+	 * 
+	 * @param directory
+	 *            The directory of the segments
+	 * @param after
+	 *            Only deltas with a newer timestamp are read, null for all
+	 * @param until
+	 *            Only deltas up to this timestamp (inclusive) are read, null for all
+	 * @param handler
+	 *            Receives the deltas, reading stops when it returns false
+	 * @return The number of deltas the handler accepted
+	 * @throws IOException
+	 *             If a segment cannot be read or a record cannot be decoded
+	 */
+	public static int read(File directory, Long after, Long until, DeltaHandler handler) throws IOException {
+		File[] segments = segments(directory);
+		int count = 0;
+		for (int s = 0; s < segments.length; s++) {
+			if (until != null && first(segments[s]) > until) {
+				break;
+			}
+			// the next segment starts at or before the range, so this one only contains older deltas
+			if (after != null && s + 1 < segments.length && first(segments[s + 1]) <= after) {
+				continue;
+			}
+			int read = readSegment(segments[s], after, until, handler);
+			if (read < 0) {
+				return count - read - 1;
+			}
+			count += read;
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of deltas accepted by the handler - or -(number + 1) if the handler stopped the reading
+	 */
+	private static int readSegment(File file, Long after, Long until, DeltaHandler handler) throws IOException {
+		MappedByteBuffer segment;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			segment = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		int count = 0;
+		int position = 0;
+		for (byte[] payload = payload(segment, position); payload != null; payload = payload(segment, position)) {
+			long timestamp = segment.getLong(position + 8);
+			if (until != null && timestamp > until) {
+				break;
+			}
+			if (after == null || timestamp > after) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+				List<IfmapGraphImpl> updates = readGraphs(in);
+				List<IfmapGraphImpl> deletes = readGraphs(in);
+				long previous = segment.getLong(position + 16);
+				if (!handler.handle(new IfmapGraphDelta(timestamp, updates, deletes), previous)) {
+					return -count - 1;
+				}
+				count++;
+			}
+			position += HEADER + payload.length;
+		}
+		return count;
+	}
+
+	private static List<IfmapGraphImpl> readGraphs(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<IfmapGraphImpl> graphs = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			graphs.add(IfmapGraphBinaryCodec.read(in));
+		}
+		return graphs;
+	}
+
+	/**
+	 * @return The payload of the record at the position, null if there is no complete record with a matching checksum
+	 *         (the end of the segment)
+	 */
+	private static byte[] payload(MappedByteBuffer segment, int position) {
+		if (position + HEADER > segment.capacity()) {
+			return null;
+		}
+		int length = segment.getInt(position);
+		if (length <= 0 || length > segment.capacity() - position - HEADER) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		ByteBuffer source = segment.duplicate();
+		source.position(position + HEADER);
+		source.get(payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue() == segment.getInt(position + 4) ? payload : null;
+	}
+
+	private static long first(File segment) {
+		String name = segment.getName();
+		return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+	}
+
+	private static File[] segments(File directory) {
+		File[] segments = directory.listFiles(SEGMENTS);
+		if (segments == null) {
+			return new File[0];
+		}
+		// the names are zero-padded timestamps, so they sort by time
+		Arrays.sort(segments);
+		return segments;
+	}
+}
@@ -224,8 +224,8 @@ public class IfmapGraphJsonAdapter implements JsonDeserializer<IfmapGraphImpl>,
 				JsonArray jsonIdentifierList = jsonItem.get("identifiers").getAsJsonArray();
 				IfmapVertex identifierOne = ifmapVertexFromJson(jsonIdentifierList.get(0));
 				IfmapVertex identifierTwo = ifmapVertexFromJson(jsonIdentifierList.get(1));
-				IfmapVertex existingIdentifierOne = findVertex(identifierOne, graph);
-				IfmapVertex existingIdentifierTwo = findVertex(identifierTwo, graph);
+				IfmapVertex existingIdentifierOne = graph.findVertex(identifierOne);
+				IfmapVertex existingIdentifierTwo = graph.findVertex(identifierTwo);
 				if (existingIdentifierOne == null) {
 					graph.addVertex(identifierOne);
 				} else {
@@ -258,7 +258,7 @@ public class IfmapGraphJsonAdapter implements JsonDeserializer<IfmapGraphImpl>,
 				// ... or we have a single identifier with metadata attached to
 			} else {
 				IfmapVertex identifier = ifmapVertexFromJson(jsonItem.get("identifiers"));
-				IfmapVertex existingIdentifier = findVertex(identifier, graph);
+				IfmapVertex existingIdentifier = graph.findVertex(identifier);
 				if (existingIdentifier == null) {
 					graph.addVertex(identifier);
 				} else {
@@ -300,16 +300,4 @@ public class IfmapGraphJsonAdapter implements JsonDeserializer<IfmapGraphImpl>,
 		return new IfmapVertexImpl(identifierJson.typename, identifierJson.properties, identifierJson.rawData);
 	}
 
-	private IfmapVertex findVertex(IfmapVertex other, IfmapGraphImpl graph) {
-		if (!graph.containsVertex(other)) {
-			return null;
-		}
-		for (IfmapVertex v : graph.vertexSet()) {
-			if (v.equals(other)) {
-				return v;
-			}
-		}
-		return null;
-	}
-
 }
@@ -0,0 +1,298 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapEdgeImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+
+/**
+ * Streaming counterpart of the deserialization of the {@link IfmapGraphJsonAdapter}. Decodes the identifiers, links
+ * and metadata directly from the tokens of a {@link JsonReader} into the graph datamodel, so neither the JSON tree nor
+ * the response string has to be kept in memory. Only one link item is buffered at a time.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class IfmapGraphJsonReader {
+
+	/**
+	 * Reads a graph object ({"timestamp": ..., "links": [...]}).
+	 * 
+	 * @param in
+	 *            The reader positioned before the graph object
+	 * @return The graph
+	 * @throws IOException
+	 *             If the JSON is malformed or cannot be read
+	 */
+	public IfmapGraphImpl readGraph(JsonReader in) throws IOException {
+		IfmapGraphImpl graph = new IfmapGraphImpl();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (IfmapGraphJsonAdapter.KEY_TIMESTAMP.equals(name)) {
+				graph.setLastUpdated(in.nextLong());
+			} else if (IfmapGraphJsonAdapter.KEY_LINKS.equals(name)) {
+				in.beginArray();
+				while (in.hasNext()) {
+					readLink(in, graph);
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return graph;
+	}
+
+	/**
+	 * Reads a delta ({"updates": [graphs...], "deletes": [graphs...]}). Pushed deltas additionally carry the
+	 * "timestamp" of the version they lead to.
+	 * 
+	 * @param in
+	 *            The reader positioned before the delta object
+	 * @return The delta
+	 * @throws IOException
+	 *             If the JSON is malformed or cannot be read
+	 */
+	public IfmapGraphDelta readDelta(JsonReader in) throws IOException {
+		List<IfmapGraphImpl> updates = new ArrayList<>();
+		List<IfmapGraphImpl> deletes = new ArrayList<>();
+		Long timestamp = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (IfmapGraphJsonAdapter.KEY_TIMESTAMP.equals(name) && in.peek() != JsonToken.NULL) {
+				timestamp = in.nextLong();
+			} else if (IfmapGraphJsonAdapter.KEY_UPDATES.equals(name)) {
+				readGraphs(in, updates);
+			} else if (IfmapGraphJsonAdapter.KEY_DELETES.equals(name)) {
+				readGraphs(in, deletes);
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new IfmapGraphDelta(timestamp, updates, deletes);
+	}
+
+	/**
+	 * Reads the change map of the dataservice ({"timestamp": changes, ...}).
+	 * 
+	 * @param in
+	 *            The reader positioned before the change map
+	 * @param after
+	 *            Only timestamps newer than this one are returned, null for all
+	 * @return The timestamps of the changes in ascending order
+	 * @throws IOException
+	 *             If the JSON is malformed or cannot be read
+	 */
+	public List<Long> readChangeTimestamps(JsonReader in, Long after) throws IOException {
+		List<Long> timestamps = new ArrayList<>();
+		in.beginObject();
+		while (in.hasNext()) {
+			Long timestamp = Long.valueOf(in.nextName());
+			if (after == null || timestamp > after) {
+				timestamps.add(timestamp);
+			}
+			in.skipValue();
+		}
+		in.endObject();
+		Collections.sort(timestamps);
+		return timestamps;
+	}
+
+	private void readGraphs(JsonReader in, List<IfmapGraphImpl> graphs) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return;
+		}
+		in.beginArray();
+		while (in.hasNext()) {
+			graphs.add(readGraph(in));
+		}
+		in.endArray();
+	}
+
+	/**
+	 * Reads one link item - either two identifiers with the metadata of their link or one identifier with its
+	 * metadata - and adds it to the graph.
+	 */
+	private void readLink(JsonReader in, IfmapGraphImpl graph) throws IOException {
+		List<IfmapVertex> identifiers = new ArrayList<>(2);
+		List<Metadata> metadata = new ArrayList<>();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (IfmapGraphJsonAdapter.KEY_IDENTIFIERS.equals(name)) {
+				if (in.peek() == JsonToken.BEGIN_ARRAY) {
+					in.beginArray();
+					while (in.hasNext()) {
+						identifiers.add(readIdentifier(in));
+					}
+					in.endArray();
+				} else {
+					identifiers.add(readIdentifier(in));
+				}
+			} else if (IfmapGraphJsonAdapter.KEY_METADATA.equals(name)) {
+				if (in.peek() == JsonToken.BEGIN_ARRAY) {
+					in.beginArray();
+					while (in.hasNext()) {
+						metadata.add(readMetadata(in));
+					}
+					in.endArray();
+				} else if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+				} else {
+					metadata.add(readMetadata(in));
+				}
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		if (identifiers.size() == 2) {
+			IfmapVertex identifierOne = addOrFind(graph, identifiers.get(0));
+			IfmapVertex identifierTwo = addOrFind(graph, identifiers.get(1));
+			for (Metadata meta : metadata) {
+				graph.addEdgeSensitive(identifierOne, identifierTwo, new IfmapEdgeImpl(identifierOne, identifierTwo,
+						meta));
+			}
+		} else if (identifiers.size() == 1) {
+			IfmapVertex identifier = addOrFind(graph, identifiers.get(0));
+			for (Metadata meta : metadata) {
+				graph.addMetadataToVertex(identifier, meta);
+			}
+		}
+		// ... otherwise we have broken data
+	}
+
+	private IfmapVertex addOrFind(IfmapGraphImpl graph, IfmapVertex identifier) {
+		IfmapVertex existing = graph.findVertex(identifier);
+		if (existing != null) {
+			return existing;
+		}
+		graph.addVertex(identifier);
+		return identifier;
+	}
+
+	/**
+	 * Reads an identifier object ({"typename": ..., "properties": {...}, "rawData": ...}).
+	 * 
+	 * @param in
+	 *            The reader positioned before the identifier object
+	 * @return The identifier
+	 * @throws IOException
+	 *             If the JSON is malformed or cannot be read
+	 */
+	public IfmapVertexImpl readIdentifier(JsonReader in) throws IOException {
+		Element element = readElement(in);
+		return new IfmapVertexImpl(element.mTypename, element.mProperties, element.mRawData);
+	}
+
+	/**
+	 * Reads a metadata object ({"typename": ..., "properties": {...}, "rawData": ...}).
+	 * 
+	 * @param in
+	 *            The reader positioned before the metadata object
+	 * @return The metadata
+	 * @throws IOException
+	 *             If the JSON is malformed or cannot be read
+	 */
+	public MetadataImpl readMetadata(JsonReader in) throws IOException {
+		Element element = readElement(in);
+		return new MetadataImpl(element.mTypename, element.mProperties, element.mRawData);
+	}
+
+	private Element readElement(JsonReader in) throws IOException {
+		Element element = new Element();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (IfmapGraphJsonAdapter.KEY_TYPENAME.equals(name)) {
+				element.mTypename = nextString(in);
+			} else if (IfmapGraphJsonAdapter.KEY_RAWDATA.equals(name)) {
+				element.mRawData = nextString(in);
+			} else if (IfmapGraphJsonAdapter.KEY_PROPERTIES.equals(name) && in.peek() != JsonToken.NULL) {
+				in.beginObject();
+				while (in.hasNext()) {
+					element.mProperties.put(in.nextName(), nextString(in));
+				}
+				in.endObject();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return element;
+	}
+
+	private static String nextString(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	/**
+	 * Fields of an identifier or a metadata object.
+	 */
+	private static final class Element {
+
+		private String mTypename;
+		private Map<String, String> mProperties = new HashMap<>();
+		private String mRawData;
+	}
+}
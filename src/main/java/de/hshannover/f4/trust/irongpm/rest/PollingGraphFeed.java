@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+
+import de.hshannover.f4.trust.irongpm.rest.VisitmetaResource.ResponseHandler;
+
+/**
+ * {@link GraphFeed} requesting the changes from the visitmeta dataservice. The change map is requested once per poll
+ * and all newer timestamps are remembered in a {@link ChangeTimestampIndex}, so catching up on several changes needs
+ * only the delta requests. If the graph is behind by several changes, one consolidated delta spanning up to
+ * <i>maxSpan</i> changes is requested (the dataservice merges the changes between the two versions) and applied at
+ * once; the rules then see the resulting version only, not the versions in between. Several such deltas are requested
+ * concurrently (up to the parallelism of the {@link VisitmetaResource}) and applied one after another.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class PollingGraphFeed implements GraphFeed {
+
+	private final VisitmetaResource mResource;
+	private final IfmapGraphJsonReader mReader = new IfmapGraphJsonReader();
+	private final ChangeTimestampIndex mChanges;
+	private final int mMaxSpan;
+	private final Deque<IfmapGraphDelta> mPrefetched = new ArrayDeque<>();
+	private final ResponseHandler<IfmapGraphDelta> mDeltaHandler = new ResponseHandler<IfmapGraphDelta>() {
+		@Override
+		public IfmapGraphDelta handle(JsonReader reader) throws IOException {
+			return mReader.readDelta(reader);
+		}
+	};
+	private Long mPrefetchedFrom;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param resource
+	 *            The REST interface of the visitmeta dataservice
+	 * @param maxSpan
+	 *            The maximum number of changes merged into one delta (1 = every version is applied)
+	 */
+	public PollingGraphFeed(VisitmetaResource resource, int maxSpan) {
+		mResource = resource;
+		mChanges = new ChangeTimestampIndex(resource);
+		mMaxSpan = Math.max(1, maxSpan);
+	}
+
+	/**
+	 * Constructor applying every version.
+	 * 
+	 * @param resource
+	 *            The REST interface of the visitmeta dataservice
+	 */
+	public PollingGraphFeed(VisitmetaResource resource) {
+		this(resource, 1);
+	}
+
+	@Override
+	public synchronized IfmapGraphDelta nextUpdate(Long lastUpdated, long timeout) throws InterruptedException {
+		if (!lastUpdated.equals(mPrefetchedFrom)) {
+			mPrefetched.clear();
+		}
+		if (mPrefetched.isEmpty()) {
+			mChanges.prune(lastUpdated);
+			if (mChanges.next(lastUpdated) == null) {
+				mChanges.refresh();
+			}
+			if (!prefetch(lastUpdated)) {
+				Thread.sleep(timeout);
+				return null;
+			}
+		}
+		IfmapGraphDelta delta = mPrefetched.pollFirst();
+		mPrefetchedFrom = delta.getTimestamp();
+		return delta;
+	}
+
+	/**
+	 * Requests the consecutive deltas following the given version, as many concurrently as the resource allows.
+	 * 
+	 * @return Whether there was any newer change
+	 */
+	private boolean prefetch(Long lastUpdated) throws InterruptedException {
+		List<String> paths = new ArrayList<>();
+		List<Long> targets = new ArrayList<>();
+		Long from = lastUpdated;
+		while (targets.size() < mResource.getParallelism()) {
+			Long to = mChanges.ahead(from, mMaxSpan);
+			if (to == null) {
+				break;
+			}
+			paths.add(from + "/" + to);
+			targets.add(to);
+			from = to;
+		}
+		List<IfmapGraphDelta> deltas = mResource.getAll(paths, mDeltaHandler);
+		for (int i = 0; i < deltas.size(); i++) {
+			mPrefetched.addLast(deltas.get(i).withTimestamp(targets.get(i)));
+		}
+		mPrefetchedFrom = lastUpdated;
+		return !targets.isEmpty();
+	}
+
+	@Override
+	public synchronized void close() {
+		// the requests are not kept open, only the prefetched deltas are released
+		mPrefetched.clear();
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.rest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * {@link GraphFeed} receiving the deltas pushed by the dataservice as server-sent events. The stream is requested
+ * with <b>?since=&lt;timestamp&gt;</b>, so the dataservice first sends every delta newer than the given version and
+ * then each new one as soon as it happens. The data of an event is a delta object ({"timestamp": ..., "updates":
+ * [...], "deletes": [...]}). A lost connection is re-established from the last received version after a delay which
+ * grows exponentially with each failed attempt (like the retries of {@link VisitmetaResource}) and starts over once
+ * connected; a stream without any data or heartbeat for the read timeout is re-established immediately.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class StreamingGraphFeed implements GraphFeed {
+
+	private static final Logger LOGGER = Logger.getLogger(StreamingGraphFeed.class);
+
+	private static final int QUEUESIZE = 1000;
+
+	private final String mUrl;
+	private final boolean mRawXml;
+	private int mConnectTimeout = 2000;
+	private int mReadTimeout = 30000;
+	private long mInitialRetryDelay = 500;
+	private long mMaxRetryDelay = 30000;
+	private final IfmapGraphJsonReader mReader = new IfmapGraphJsonReader();
+	private final BlockingQueue<IfmapGraphDelta> mQueue = new LinkedBlockingQueue<>(QUEUESIZE);
+	private volatile boolean mIsDone = false;
+	private Thread mThread;
+	private Long mLastReceived;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param url
+	 *            URL of the event stream of the visitmeta dataservice
+	 * @param rawXml
+	 *            Whether rawXML should be requested or not
+	 */
+	public StreamingGraphFeed(String url, boolean rawXml) {
+		mUrl = url;
+		mRawXml = rawXml;
+	}
+
+	/**
+	 * Sets the timeouts of the connection. Has to be called before the first update is requested.
+	 * 
+	 * @param connectTimeout
+	 *            The timeout in ms for establishing a connection
+	 * @param readTimeout
+	 *            The time in ms without data or heartbeat after which the stream is re-established (0 = never)
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout) {
+		mConnectTimeout = connectTimeout;
+		mReadTimeout = readTimeout;
+	}
+
+	/**
+	 * Sets the delays between the attempts to re-establish a failed connection. The delay starts at the initial one
+	 * and is doubled after each failed attempt up to the maximum. Has to be called before the first update is
+	 * requested.
+	 * 
+	 * @param initialDelay
+	 *            The delay in ms before the first attempt
+	 * @param maxDelay
+	 *            The maximum delay in ms
+	 */
+	public void setRetryDelays(long initialDelay, long maxDelay) {
+		mInitialRetryDelay = Math.max(1, initialDelay);
+		mMaxRetryDelay = Math.max(mInitialRetryDelay, maxDelay);
+	}
+
+	@Override
+	public IfmapGraphDelta nextUpdate(Long lastUpdated, long timeout) throws InterruptedException {
+		start(lastUpdated);
+		long deadline = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+		while (remaining > 0) {
+			IfmapGraphDelta delta = mQueue.poll(remaining, TimeUnit.MILLISECONDS);
+			if (delta == null) {
+				return null;
+			}
+			if (delta.getTimestamp() > lastUpdated) {
+				return delta;
+			}
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return null;
+	}
+
+	/**
+	 * Starts receiving the stream beginning after the given version, if not yet done.
+	 */
+	private synchronized void start(Long lastUpdated) {
+		if (mThread != null || mIsDone) {
+			return;
+		}
+		mLastReceived = lastUpdated;
+		mThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				receive();
+			}
+		}, "irongpm-feed");
+		mThread.setDaemon(true);
+		mThread.start();
+	}
+
+	/**
+	 * Receives the stream until the feed is closed, reconnecting after failures.
+	 */
+	private void receive() {
+		int attempt = 0;
+		while (!mIsDone) {
+			try {
+				HttpURLConnection conn = (HttpURLConnection) new URL(mUrl + "?rawData=" + mRawXml + "&since="
+						+ mLastReceived).openConnection();
+				conn.setConnectTimeout(mConnectTimeout);
+				conn.setReadTimeout(mReadTimeout);
+				conn.setRequestProperty("Accept", "text/event-stream");
+				conn.connect();
+				try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"))) {
+					LOGGER.info("Receiving graph changes from " + mUrl);
+					attempt = 0;
+					readEvents(in);
+				}
+				if (!mIsDone) {
+					LOGGER.warn("Stream of graph changes ended. Reconnecting.");
+				}
+			} catch (SocketTimeoutException e) {
+				LOGGER.debug("Stream of graph changes is idle. Reconnecting.");
+			} catch (IOException e) {
+				if (mIsDone) {
+					break;
+				}
+				long delay = VisitmetaResource.backoff(attempt++, mInitialRetryDelay, mMaxRetryDelay);
+				LOGGER.warn("Stream of graph changes failed on " + mUrl + ". Trying again in " + delay
+						+ " ms. Reason: [" + e + "]");
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e1) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads the events of the stream. Lines starting with "data:" form the event, an empty line ends it; comments
+	 * (heartbeats) and other fields are ignored.
+	 */
+	private void readEvents(BufferedReader in) throws IOException, InterruptedException {
+		StringBuilder data = new StringBuilder();
+		String line;
+		while (!mIsDone && (line = in.readLine()) != null) {
+			if (line.isEmpty()) {
+				if (data.length() > 0) {
+					dispatch(data.toString());
+					data.setLength(0);
+				}
+			} else if (line.startsWith("data:")) {
+				if (data.length() > 0) {
+					data.append('\n');
+				}
+				data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+			}
+		}
+	}
+
+	private void dispatch(String data) throws InterruptedException {
+		IfmapGraphDelta delta;
+		try (JsonReader reader = new JsonReader(new StringReader(data))) {
+			delta = mReader.readDelta(reader);
+		} catch (IOException | IllegalStateException | NumberFormatException e) {
+			LOGGER.warn("Ignoring malformed graph change: " + e);
+			return;
+		}
+		if (delta.getTimestamp() == null) {
+			LOGGER.warn("Ignoring pushed graph change without timestamp");
+			return;
+		}
+		if (delta.getTimestamp() <= mLastReceived) {
+			return;
+		}
+		// blocks while the graph is behind, which slows down the stream instead of buffering it
+		mQueue.put(delta);
+		mLastReceived = delta.getTimestamp();
+	}
+
+	@Override
+	public void close() {
+		// a receiving thread blocked on the connection ends with the next event, heartbeat or read timeout
+		mIsDone = true;
+		synchronized (this) {
+			if (mThread != null) {
+				mThread.interrupt();
+			}
+		}
+		mQueue.clear();
+	}
+}
@@ -38,9 +38,21 @@
  */
 package de.hshannover.f4.trust.irongpm.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.log4j.Logger;
 
@@ -51,6 +63,9 @@ import com.google.gson.stream.JsonReader;
 import de.hshannover.f4.trust.irongpm.Pulldozer;
 
 /**
+ * Client of the REST interface of the visitmeta dataservice. The responses are read completely, so the connections
+ * are kept alive and reused through the connection cache of {@link HttpURLConnection} (at most
+ * <i>http.maxConnections</i> per host, 5 by default). Responses may be gzip compressed.
  * 
  * @author Leonard Renners
  * 
@@ -58,6 +73,13 @@ import de.hshannover.f4.trust.irongpm.Pulldozer;
 public class VisitmetaResource {
 	private boolean mRawXml;
 	private String mBaseUrl;
+	private int mConnectTimeout = 2000;
+	private int mReadTimeout = 30000;
+	private long mInitialRetryDelay = 500;
+	private long mMaxRetryDelay = 30000;
+	private boolean mGzip = true;
+	private int mParallelism = 1;
+	private ExecutorService mExecutor;
 	private static final Logger LOGGER = Logger.getLogger(Pulldozer.class);
 
 	/**
@@ -91,41 +113,264 @@ public class VisitmetaResource {
 		this(resource, true);
 	}
 
+	/**
+	 * Handles the JSON response of a request while it is read from the connection.
+	 * 
+	 * @param <T>
+	 *            The type of the result
+	 */
+	public interface ResponseHandler<T> {
+
+		/**
+		 * Reads the response. May be called again with a new response if the connection fails, so it must not have
+		 * side effects.
+		 * 
+		 * @param reader
+		 *            The reader positioned at the beginning of the response
+		 * @return The result
+		 * @throws IOException
+		 *             If the response cannot be read
+		 */
+		T handle(JsonReader reader) throws IOException;
+	}
+
 	/**
 	 * Requests the REST interface for the given path, e.g. "current" or "changes"
 	 * 
 	 * @param path
 	 *            The path for the HTTP request
 	 * @return The JSON response string
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry
 	 */
-	public String get(String path) {
-		String json = null;
+	public String get(String path) throws InterruptedException {
+		return get(path, new ResponseHandler<String>() {
+			@Override
+			public String handle(JsonReader reader) throws IOException {
+				JsonParser parser = new JsonParser();
+				JsonElement rootElement = parser.parse(reader);
+				return rootElement.toString();
+			}
+		});
+	}
+
+	/**
+	 * Requests the REST interface for the given path and streams the response into the handler. Retries with an
+	 * exponentially growing delay until the response could be read completely.
+	 * 
+	 * @param path
+	 *            The path for the HTTP request, may contain query parameters
+	 * @param handler
+	 *            The handler reading the response
+	 * @param <T>
+	 *            The type of the result
+	 * @return The result of the handler
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for a retry
+	 */
+	public <T> T get(String path, ResponseHandler<T> handler) throws InterruptedException {
+		T result = null;
 		boolean connected = true;
+		int attempt = 0;
 		do {
 			try {
-				URLConnection conn = new URL(mBaseUrl + path + "?rawData=" + mRawXml).openConnection();
-				conn.setConnectTimeout(2000);
-				conn.connect();
-				JsonReader reader = new JsonReader(new InputStreamReader(conn.getInputStream()));
-				JsonParser parser = new JsonParser();
-				JsonElement rootElement = parser.parse(reader);
-				json = rootElement.toString();
+				result = request(path, handler);
 				if (!connected) {
 					LOGGER.info("VisitmetaResource connection (re-)established");
 				}
 				connected = true;
 			} catch (Exception e) {
-				try {
-					LOGGER.warn("VisitmetaResource connection failed on " + mBaseUrl
-							+ ". Trying again in 5 seconds. Reason: [" + e + "]");
-					Thread.sleep(5000);
-				} catch (InterruptedException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
-				}
+				long delay = backoff(attempt++);
+				LOGGER.warn("VisitmetaResource connection failed on " + mBaseUrl + ". Trying again in " + delay
+						+ " ms. Reason: [" + e + "]");
+				// stops retrying if interrupted, e.g. when a concurrent request of getAll is cancelled
+				Thread.sleep(delay);
 				connected = false;
 			}
 		} while (!connected);
-		return json;
+		return result;
+	}
+
+	/**
+	 * Requests several paths concurrently, e.g. consecutive timestamp ranges while catching up. Each request is
+	 * retried like {@link #get(String, ResponseHandler)}.
+	 * 
+	 * @param paths
+	 *            The paths for the HTTP requests
+	 * @param handler
+	 *            The handler reading the responses
+	 * @param <T>
+	 *            The type of the results
+	 * @return The results of the handler in the order of the paths
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for the results
+	 */
+	public <T> List<T> getAll(List<String> paths, final ResponseHandler<T> handler) throws InterruptedException {
+		List<T> results = new ArrayList<>(paths.size());
+		if (paths.size() < 2 || mParallelism < 2) {
+			for (String path : paths) {
+				results.add(get(path, handler));
+			}
+			return results;
+		}
+		List<Future<T>> futures = new ArrayList<>(paths.size());
+		for (final String path : paths) {
+			futures.add(getExecutor().submit(new Callable<T>() {
+				@Override
+				public T call() throws InterruptedException {
+					return get(path, handler);
+				}
+			}));
+		}
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InterruptedException) {
+				throw (InterruptedException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Performs one request. The response is read completely and closed, so the connection is kept alive and reused by
+	 * the next request to the dataservice.
+	 */
+	private <T> T request(String path, ResponseHandler<T> handler) throws IOException {
+		String separator = path.indexOf('?') < 0 ? "?" : "&";
+		HttpURLConnection conn = (HttpURLConnection) new URL(mBaseUrl + path + separator + "rawData=" + mRawXml)
+				.openConnection();
+		conn.setConnectTimeout(mConnectTimeout);
+		conn.setReadTimeout(mReadTimeout);
+		conn.setRequestProperty("Accept", "application/json");
+		if (mGzip) {
+			conn.setRequestProperty("Accept-Encoding", "gzip");
+		}
+		conn.connect();
+		if (conn.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+			discard(conn.getErrorStream());
+			throw new IOException("HTTP " + conn.getResponseCode() + " for " + path);
+		}
+		InputStream in = conn.getInputStream();
+		try {
+			if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+				in = new GZIPInputStream(in);
+			}
+			T result = handler.handle(new JsonReader(new InputStreamReader(in, "UTF-8")));
+			discard(in);
+			return result;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the rest of a response, a connection can only be reused when its response was read completely.
+	 */
+	private static void discard(InputStream in) throws IOException {
+		if (in == null) {
+			return;
+		}
+		byte[] buffer = new byte[4096];
+		while (in.read(buffer) >= 0) {
+			// skip
+		}
+		in.close();
+	}
+
+	/**
+	 * @return The delay before the given retry: exponentially growing up to the maximum, randomly shortened by up to
+	 *         one half so that several clients do not retry in lockstep
+	 */
+	private long backoff(int attempt) {
+		return backoff(attempt, mInitialRetryDelay, mMaxRetryDelay);
+	}
+
+	/**
+	 * @param attempt
+	 *            The number of the retry, starting at 0
+	 * @param initialDelay
+	 *            The delay in ms before the first retry
+	 * @param maxDelay
+	 *            The maximum delay in ms
+	 * @return The delay before the given retry: exponentially growing up to the maximum, randomly shortened by up to
+	 *         one half so that several clients do not retry in lockstep
+	 */
+	static long backoff(int attempt, long initialDelay, long maxDelay) {
+		long delay = maxDelay;
+		if (attempt < 31 && initialDelay << attempt < maxDelay) {
+			delay = initialDelay << attempt;
+		}
+		return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (mExecutor == null) {
+			mExecutor = Executors.newFixedThreadPool(mParallelism, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "irongpm-http");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return mExecutor;
+	}
+
+	/**
+	 * Sets the timeouts of the requests.
+	 * 
+	 * @param connectTimeout
+	 *            The timeout in ms for establishing a connection
+	 * @param readTimeout
+	 *            The timeout in ms for waiting on data of the response (0 = no timeout)
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout) {
+		mConnectTimeout = connectTimeout;
+		mReadTimeout = readTimeout;
+	}
+
+	/**
+	 * Sets the delays between the retries of a failed request. The delay starts at the initial one and is doubled
+	 * after each failed retry up to the maximum.
+	 * 
+	 * @param initialDelay
+	 *            The delay in ms before the first retry
+	 * @param maxDelay
+	 *            The maximum delay in ms
+	 */
+	public void setRetryDelays(long initialDelay, long maxDelay) {
+		mInitialRetryDelay = Math.max(1, initialDelay);
+		mMaxRetryDelay = Math.max(mInitialRetryDelay, maxDelay);
+	}
+
+	public void setGzip(boolean gzip) {
+		mGzip = gzip;
+	}
+
+	/**
+	 * Sets the number of requests performed concurrently by {@link #getAll(List, ResponseHandler)}.
+	 * 
+	 * @param parallelism
+	 *            The number of concurrent requests
+	 */
+	public synchronized void setParallelism(int parallelism) {
+		mParallelism = Math.max(1, parallelism);
+		if (mExecutor != null) {
+			mExecutor.shutdown();
+			mExecutor = null;
+		}
+	}
+
+	public int getParallelism() {
+		return mParallelism;
 	}
 }
@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm.util;
+
+/**
+ * Hash key identifying a singleValue link, i.e. the unordered pair of its two vertices together with the type name of
+ * its metadata. Two links with equal keys replace each other in the IF-MAP understanding of equality.
+ *
+ * @author Leonard Renners
+ *
+ */
+public final class LinkKey {
+
+	private final Object mV1;
+	private final Object mV2;
+	private final String mTypeName;
+	private final int mHash;
+
+	/**
+	 * Constructor. The order of the two vertices does not matter.
+	 *
+	 * @param v1
+	 *            The first vertex of the link
+	 * @param v2
+	 *            The second vertex of the link
+	 * @param typeName
+	 *            The type name of the link metadata
+	 */
+	public LinkKey(Object v1, Object v2, String typeName) {
+		mV1 = v1;
+		mV2 = v2;
+		mTypeName = typeName;
+		mHash = 31 * typeName.hashCode() + v1.hashCode() + v2.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof LinkKey)) {
+			return false;
+		}
+		LinkKey other = (LinkKey) o;
+		if (mHash != other.mHash || !mTypeName.equals(other.mTypeName)) {
+			return false;
+		}
+		if (mV1.equals(other.mV1) && mV2.equals(other.mV2)) {
+			return true;
+		}
+		return mV1.equals(other.mV2) && mV2.equals(other.mV1);
+	}
+
+	@Override
+	public int hashCode() {
+		return mHash;
+	}
+
+	@Override
+	public String toString() {
+		return mTypeName + "[" + mV1 + " - " + mV2 + "]";
+	}
+}
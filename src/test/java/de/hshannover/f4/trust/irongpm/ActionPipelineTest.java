@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.hshannover.f4.trust.irongpm.algorithm.BasicPatternRule;
+import de.hshannover.f4.trust.irongpm.algorithm.RuleMatch;
+import de.hshannover.f4.trust.irongpm.algorithm.action.ActionPipeline;
+import de.hshannover.f4.trust.irongpm.algorithm.action.RuleAction;
+import de.hshannover.f4.trust.irongpm.algorithm.interfaces.PatternRule;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+
+/**
+ * Tests the retries, timeouts and ordering of the {@link ActionPipeline}.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class ActionPipelineTest {
+
+	/**
+	 * Tests that a failing action is retried with a doubled delay until it succeeds.
+	 */
+	@Test(timeout = 10000)
+	public void testRetryWithBackoff() throws InterruptedException {
+		final List<Long> attempts = Collections.synchronizedList(new ArrayList<Long>());
+		BasicPatternRule rule = new BasicPatternRule();
+		rule.addAction(new RuleAction() {
+			@Override
+			public void performAction(PatternRule rule, RuleMatch result) {
+				attempts.add(System.nanoTime());
+				if (attempts.size() < 3) {
+					throw new IllegalStateException("attempt " + attempts.size());
+				}
+			}
+		});
+		ActionPipeline pipeline = new ActionPipeline(1, 10, 0, 3, 50);
+		pipeline.submit(rule, match(rule));
+		awaitIdle(pipeline, 10);
+
+		assertEquals(3, attempts.size());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(attempts.get(1) - attempts.get(0)) >= 49);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(attempts.get(2) - attempts.get(1)) >= 99);
+		assertEquals(2, pipeline.getRetriedCount());
+		assertEquals(1, pipeline.getSucceededCount());
+		assertEquals(0, pipeline.getFailedCount());
+		pipeline.shutdown();
+	}
+
+	/**
+	 * Tests that an action which returns after its timeout is not performed again, while an action aborted by the
+	 * timeout is retried.
+	 */
+	@Test(timeout = 10000)
+	public void testTimeout() throws InterruptedException {
+		final AtomicInteger slow = new AtomicInteger();
+		BasicPatternRule rule = new BasicPatternRule();
+		rule.addAction(new RuleAction() {
+			@Override
+			public void performAction(PatternRule rule, RuleMatch result) {
+				slow.incrementAndGet();
+				// ignores the interrupt like most actions do
+				long end = System.currentTimeMillis() + 200;
+				while (System.currentTimeMillis() < end) {
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						// continue
+					}
+				}
+			}
+		});
+		ActionPipeline pipeline = new ActionPipeline(1, 10, 50, 2, 10);
+		pipeline.submit(rule, match(rule));
+		awaitIdle(pipeline, 10);
+		assertEquals(1, slow.get());
+		assertEquals(1, pipeline.getTimedOutCount());
+		assertEquals(1, pipeline.getSucceededCount());
+		assertEquals(0, pipeline.getRetriedCount());
+
+		final AtomicInteger aborted = new AtomicInteger();
+		rule = new BasicPatternRule();
+		rule.addAction(new RuleAction() {
+			@Override
+			public void performAction(PatternRule rule, RuleMatch result) {
+				if (aborted.incrementAndGet() == 1) {
+					try {
+						Thread.sleep(5000);
+					} catch (InterruptedException e) {
+						throw new IllegalStateException("aborted", e);
+					}
+				}
+			}
+		});
+		pipeline.submit(rule, match(rule));
+		awaitIdle(pipeline, 10);
+		assertEquals(2, aborted.get());
+		assertEquals(2, pipeline.getTimedOutCount());
+		assertEquals(2, pipeline.getSucceededCount());
+		assertEquals(1, pipeline.getRetriedCount());
+		pipeline.shutdown();
+	}
+
+	/**
+	 * Tests that the actions of one match are performed in their order, also if one of them is retried.
+	 */
+	@Test(timeout = 10000)
+	public void testOrderPerMatch() throws InterruptedException {
+		final List<String> performed = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger failures = new AtomicInteger();
+		BasicPatternRule rule = new BasicPatternRule();
+		for (final String name : new String[] { "a", "b", "c" }) {
+			rule.addAction(new RuleAction() {
+				@Override
+				public void performAction(PatternRule rule, RuleMatch result) {
+					String match = result.getNamedProperties().get("match");
+					// the second action of every other match fails once
+					if (name.equals("b") && Integer.parseInt(match) % 2 == 0 && !performed.contains(match + "b!")) {
+						failures.incrementAndGet();
+						performed.add(match + "b!");
+						throw new IllegalStateException("first attempt");
+					}
+					performed.add(match + name);
+				}
+			});
+		}
+		ActionPipeline pipeline = new ActionPipeline(4, 100, 0, 1, 5);
+		for (int i = 0; i < 20; i++) {
+			HashMap<String, String> properties = new HashMap<>();
+			properties.put("match", Integer.toString(i));
+			pipeline.submit(rule, new RuleMatch(rule.getId(), new IfmapGraphImpl(), null, properties));
+		}
+		awaitIdle(pipeline, 100);
+
+		assertEquals(10, failures.get());
+		assertEquals(60, pipeline.getSucceededCount());
+		synchronized (performed) {
+			for (int i = 0; i < 20; i++) {
+				String m = Integer.toString(i);
+				int a = performed.indexOf(m + "a");
+				int b = performed.indexOf(m + "b");
+				int c = performed.indexOf(m + "c");
+				assertTrue(a >= 0 && a < b && b < c);
+				if (i % 2 == 0) {
+					int failed = performed.indexOf(m + "b!");
+					assertTrue(a < failed && failed < b);
+				}
+			}
+		}
+		pipeline.shutdown();
+	}
+
+	/**
+	 * Tests that the capacity of a match is released when its actions failed after the last retry, when no retry is
+	 * configured and when an action throws an error.
+	 */
+	@Test(timeout = 10000)
+	public void testCapacityReleasedOnFailure() throws InterruptedException {
+		final AtomicInteger attempts = new AtomicInteger();
+		BasicPatternRule rule = new BasicPatternRule();
+		rule.addAction(new RuleAction() {
+			@Override
+			public void performAction(PatternRule rule, RuleMatch result) {
+				attempts.incrementAndGet();
+				throw new IllegalStateException("always");
+			}
+		});
+		ActionPipeline pipeline = new ActionPipeline(1, 1, 0, 2, 5);
+		// with a capacity of one, every submit waits until the previous match released its capacity
+		for (int i = 0; i < 3; i++) {
+			pipeline.submit(rule, match(rule));
+		}
+		awaitIdle(pipeline, 1);
+		assertEquals(9, attempts.get());
+		assertEquals(3, pipeline.getFailedCount());
+		assertEquals(6, pipeline.getRetriedCount());
+		pipeline.shutdown();
+
+		pipeline = new ActionPipeline(1, 1, 0, 0, 5);
+		pipeline.submit(rule, match(rule));
+		awaitIdle(pipeline, 1);
+		assertEquals(10, attempts.get());
+		assertEquals(1, pipeline.getFailedCount());
+
+		rule = new BasicPatternRule();
+		rule.addAction(new RuleAction() {
+			@Override
+			public void performAction(PatternRule rule, RuleMatch result) {
+				throw new AssertionError("error");
+			}
+		});
+		pipeline.submit(rule, match(rule));
+		awaitIdle(pipeline, 1);
+		pipeline.shutdown();
+	}
+
+	private static RuleMatch match(PatternRule rule) {
+		return new RuleMatch(rule.getId(), new IfmapGraphImpl(), null, new HashMap<String, String>());
+	}
+
+	private static void awaitIdle(ActionPipeline pipeline, int capacity) throws InterruptedException {
+		while (pipeline.getAvailableCapacity() < capacity) {
+			Thread.sleep(5);
+		}
+	}
+}
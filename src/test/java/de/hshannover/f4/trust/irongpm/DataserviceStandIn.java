@@ -0,0 +1,276 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the REST interface of the visitmeta dataservice. Serves the change map, the deltas between
+ * versions and the stream of pushed deltas for the changes added by the test.
+ *
+ * @author Leonard Renners
+ *
+ */
+public class DataserviceStandIn {
+
+	private static final String PATH = "/graph/";
+	private static final String ENDOFSTREAM = "";
+
+	private final HttpServer mServer;
+	private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+	private final NavigableMap<Long, String> mChanges = new ConcurrentSkipListMap<>();
+	private final List<BlockingQueue<String>> mStreams = new CopyOnWriteArrayList<>();
+	private final Map<String, AtomicInteger> mRequests = new ConcurrentHashMap<>();
+	private volatile String mLastChangesSince;
+	private final Set<Integer> mClientPorts = new ConcurrentSkipListSet<>();
+	private final AtomicInteger mCompressed = new AtomicInteger();
+
+	/**
+	 * Starts the server on a free local port.
+	 *
+	 * @throws IOException
+	 *             If the server cannot be started
+	 */
+	public DataserviceStandIn() throws IOException {
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext(PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					serve(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		mServer.setExecutor(mExecutor);
+		mServer.start();
+	}
+
+	/**
+	 * @return The base URL of the REST interface
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + mServer.getAddress().getPort() + PATH;
+	}
+
+	/**
+	 * Adds a change and pushes it to the open streams.
+	 *
+	 * @param timestamp
+	 *            The timestamp of the new version
+	 * @param delta
+	 *            The delta object ({"updates": [...], "deletes": [...]}) leading to the new version
+	 */
+	public void addChange(long timestamp, String delta) {
+		mChanges.put(timestamp, delta);
+		for (BlockingQueue<String> stream : mStreams) {
+			stream.add(event(timestamp, delta));
+		}
+	}
+
+	/**
+	 * @param path
+	 *            The path relative to the base URL, e.g. "changes"
+	 * @return How often the path was requested
+	 */
+	public int getRequests(String path) {
+		AtomicInteger count = mRequests.get(path);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @return The "since" parameter of the last request of the change map, null if there was none
+	 */
+	public String getLastChangesSince() {
+		return mLastChangesSince;
+	}
+
+	/**
+	 * @return The number of distinct client connections used for the requests
+	 */
+	public int getConnections() {
+		return mClientPorts.size();
+	}
+
+	/**
+	 * @return The number of gzip compressed responses
+	 */
+	public int getCompressedResponses() {
+		return mCompressed.get();
+	}
+
+	/**
+	 * Ends the open streams and stops the server.
+	 */
+	public void stop() {
+		for (BlockingQueue<String> stream : mStreams) {
+			stream.add(ENDOFSTREAM);
+		}
+		mServer.stop(0);
+		mExecutor.shutdownNow();
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath().substring(PATH.length());
+		mRequests.putIfAbsent(path, new AtomicInteger());
+		mRequests.get(path).incrementAndGet();
+		mClientPorts.add(exchange.getRemoteAddress().getPort());
+
+		if ("changes".equals(path)) {
+			String since = query(exchange, "since");
+			mLastChangesSince = since;
+			StringBuilder json = new StringBuilder("{");
+			for (Long timestamp : (since == null ? mChanges : mChanges.tailMap(Long.valueOf(since), false)).keySet()) {
+				json.append(json.length() > 1 ? "," : "").append('"').append(timestamp).append("\":1");
+			}
+			send(exchange, json.append('}').toString());
+		} else if ("stream".equals(path)) {
+			stream(exchange, Long.valueOf(query(exchange, "since")));
+		} else if (path.matches("\\d+/\\d+")) {
+			Long from = Long.valueOf(path.substring(0, path.indexOf('/')));
+			Long to = Long.valueOf(path.substring(path.indexOf('/') + 1));
+			if (!mChanges.containsKey(to)) {
+				exchange.sendResponseHeaders(404, -1);
+			} else {
+				send(exchange, merge(mChanges.subMap(from, false, to, true).values()));
+			}
+		} else {
+			exchange.sendResponseHeaders(404, -1);
+		}
+	}
+
+	private void stream(HttpExchange exchange, long since) throws IOException {
+		BlockingQueue<String> stream = new LinkedBlockingQueue<>();
+		mStreams.add(stream);
+		try {
+			for (Map.Entry<Long, String> change : mChanges.tailMap(since, false).entrySet()) {
+				stream.add(event(change.getKey(), change.getValue()));
+			}
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write(": connected\n\n".getBytes("UTF-8"));
+			out.flush();
+			String event;
+			while ((event = stream.take()) != ENDOFSTREAM) {
+				out.write(("data: " + event + "\n\n").getBytes("UTF-8"));
+				out.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			mStreams.remove(stream);
+		}
+	}
+
+	/**
+	 * Merges consecutive deltas by concatenating their updates and deletes.
+	 */
+	private static String merge(Collection<String> deltas) {
+		JsonObject merged = new JsonObject();
+		merged.add("updates", new JsonArray());
+		merged.add("deletes", new JsonArray());
+		for (String delta : deltas) {
+			JsonObject object = new JsonParser().parse(delta).getAsJsonObject();
+			merged.getAsJsonArray("updates").addAll(object.getAsJsonArray("updates"));
+			merged.getAsJsonArray("deletes").addAll(object.getAsJsonArray("deletes"));
+		}
+		return merged.toString();
+	}
+
+	private static String event(long timestamp, String delta) {
+		return "{\"timestamp\":" + timestamp + "," + delta.substring(1);
+	}
+
+	private static String query(HttpExchange exchange, String name) {
+		String query = exchange.getRequestURI().getQuery();
+		if (query == null) {
+			return null;
+		}
+		for (String parameter : query.split("&")) {
+			if (parameter.startsWith(name + "=")) {
+				return parameter.substring(name.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	private void send(HttpExchange exchange, String json) throws IOException {
+		byte[] body = json.getBytes("UTF-8");
+		String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (encoding != null && encoding.contains("gzip")) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+				out.write(body);
+			}
+			body = compressed.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			mCompressed.incrementAndGet();
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		exchange.getResponseBody().write(body);
+	}
+}
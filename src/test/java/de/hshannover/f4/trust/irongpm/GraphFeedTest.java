@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+import de.hshannover.f4.trust.irongpm.rest.ChangeTimestampIndex;
+import de.hshannover.f4.trust.irongpm.rest.GraphFeed;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDelta;
+import de.hshannover.f4.trust.irongpm.rest.PollingGraphFeed;
+import de.hshannover.f4.trust.irongpm.rest.StreamingGraphFeed;
+import de.hshannover.f4.trust.irongpm.rest.VisitmetaResource;
+
+/**
+ * Test class for receiving the changes of an IF-MAP Graph from a local stand-in of the dataservice.
+ *
+ * @author Leonard Renners
+ *
+ */
+public class GraphFeedTest {
+
+	private DataserviceStandIn dataservice;
+	private IfmapGraphImpl graph;
+
+	/**
+	 * Sets up the test environment.
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setUp() throws IOException {
+		dataservice = new DataserviceStandIn();
+		dataservice.addChange(100, delta(100, "192.168.0.1"));
+		graph = new IfmapGraphImpl();
+		graph.setLastUpdated(1L);
+	}
+
+	/**
+	 * Tests that polling requests the change map once for several changes
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testPollingFeed() throws InterruptedException {
+		dataservice.addChange(200, delta(200, "192.168.0.2"));
+		GraphFeed feed = new PollingGraphFeed(new VisitmetaResource(dataservice.getUrl(), false));
+		try {
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 100L);
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 200L);
+			assertEquals(1, dataservice.getRequests("changes"));
+			assertEquals(1, dataservice.getRequests("1/100"));
+			assertEquals(1, dataservice.getRequests("100/200"));
+
+			assertNull(feed.nextUpdate(graph.getLastUpdated(), 10));
+			assertEquals(2, dataservice.getRequests("changes"));
+			assertEquals(3, graph.vertexSet().size());
+			assertEquals(2, graph.edgeSet().size());
+		} finally {
+			feed.close();
+		}
+	}
+
+	/**
+	 * Tests that a graph behind by several changes catches up with merged deltas
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testPollingCatchUp() throws InterruptedException {
+		dataservice.addChange(200, delta(200, "192.168.0.2"));
+		dataservice.addChange(300, delta(300, "192.168.0.3"));
+		GraphFeed feed = new PollingGraphFeed(new VisitmetaResource(dataservice.getUrl(), false), 2);
+		try {
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 200L);
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 300L);
+			assertEquals(1, dataservice.getRequests("1/200"));
+			assertEquals(1, dataservice.getRequests("200/300"));
+			assertEquals(1, dataservice.getRequests("changes"));
+			assertEquals(4, graph.vertexSet().size());
+			assertEquals(3, graph.edgeSet().size());
+		} finally {
+			feed.close();
+		}
+	}
+
+	/**
+	 * Tests that consecutive deltas are requested concurrently over kept alive, compressed connections
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrentCatchUp() throws InterruptedException {
+		dataservice.addChange(200, delta(200, "192.168.0.2"));
+		dataservice.addChange(300, delta(300, "192.168.0.3"));
+		VisitmetaResource resource = new VisitmetaResource(dataservice.getUrl(), false);
+		resource.setParallelism(2);
+		GraphFeed feed = new PollingGraphFeed(resource, 1);
+		try {
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 100L);
+			assertEquals(1, dataservice.getRequests("1/100"));
+			assertEquals(1, dataservice.getRequests("100/200"));
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 200L);
+			assertEquals(0, dataservice.getRequests("200/300"));
+			apply(feed.nextUpdate(graph.getLastUpdated(), 10), 300L);
+			assertEquals(1, dataservice.getRequests("200/300"));
+			assertEquals(1, dataservice.getRequests("changes"));
+			assertEquals(4, dataservice.getCompressedResponses());
+			assertTrue(dataservice.getConnections() <= 2);
+		} finally {
+			feed.close();
+		}
+	}
+
+	/**
+	 * Tests that pushed changes arrive without requesting the change map
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testStreamingFeed() throws InterruptedException {
+		GraphFeed feed = new StreamingGraphFeed(dataservice.getUrl() + "stream", false);
+		try {
+			// changes missed before connecting are sent first
+			apply(feed.nextUpdate(graph.getLastUpdated(), 5000), 100L);
+			assertNull(feed.nextUpdate(graph.getLastUpdated(), 50));
+
+			dataservice.addChange(200, delta(200, "192.168.0.2"));
+			apply(feed.nextUpdate(graph.getLastUpdated(), 5000), 200L);
+			assertEquals(1, dataservice.getRequests("stream"));
+			assertEquals(0, dataservice.getRequests("changes"));
+			assertEquals(3, graph.vertexSet().size());
+			assertEquals(2, graph.edgeSet().size());
+		} finally {
+			feed.close();
+		}
+	}
+
+	/**
+	 * Tests that the change index only requests and adds the new changes
+	 */
+	@Test
+	public void testChangeTimestampIndex() throws InterruptedException {
+		ChangeTimestampIndex changes = new ChangeTimestampIndex(new VisitmetaResource(dataservice.getUrl(), false));
+		assertEquals(1, changes.refresh());
+		assertNull(dataservice.getLastChangesSince());
+		assertEquals(Long.valueOf(100), changes.next(1L));
+		assertNull(changes.next(100L));
+
+		dataservice.addChange(200, delta(200, "192.168.0.2"));
+		dataservice.addChange(300, delta(300, "192.168.0.3"));
+		assertEquals(2, changes.refresh());
+		assertEquals("100", dataservice.getLastChangesSince());
+		assertEquals(0, changes.refresh());
+		assertEquals("300", dataservice.getLastChangesSince());
+		assertEquals(Long.valueOf(300), changes.getNewest());
+		assertEquals(Long.valueOf(200), changes.next(100L));
+
+		changes.prune(200L);
+		assertEquals(2, changes.newerThan(1L).size());
+		assertEquals(Long.valueOf(300), changes.next(200L));
+		// an older version than the pruned ones is answered from a fresh index
+		assertEquals(Long.valueOf(100), changes.next(1L));
+		assertTrue(changes.newerThan(1L).contains(300L));
+	}
+
+	/**
+	 * Tests that an interrupted request stops retrying with an InterruptedException instead of returning no result
+	 */
+	@Test(timeout = 10000)
+	public void testInterruptedRequest() {
+		VisitmetaResource resource = new VisitmetaResource("http://localhost:1/", false);
+		resource.setRetryDelays(5000, 5000);
+		Thread.currentThread().interrupt();
+		try {
+			resource.get("current");
+			fail("interrupted request returned");
+		} catch (InterruptedException e) {
+			assertFalse(Thread.interrupted());
+		}
+	}
+
+	private void apply(IfmapGraphDelta delta, Long timestamp) {
+		assertNotNull(delta);
+		assertEquals(timestamp, delta.getTimestamp());
+		DataReciever.applyDelta(graph, delta);
+		assertEquals(timestamp, graph.getLastUpdated());
+	}
+
+	private static String delta(long timestamp, String ip) {
+		return "{\"updates\":[{\"timestamp\":" + timestamp + ",\"links\":[{\"identifiers\":[{\"typename\":\"device\","
+				+ "\"properties\":{\"/device/name\":\"bronko\"}},{\"typename\":\"ip-address\",\"properties\":"
+				+ "{\"/ip-address[@type]\":\"IPv4\",\"/ip-address[@value]\":\"" + ip + "\"}}],\"metadata\":"
+				+ "{\"typename\":\"device-ip\",\"properties\":{\"/meta:device-ip[@ifmap-publisher-id]\":\"test-"
+				+ timestamp + "\"}}}]}],\"deletes\":[]}";
+	}
+
+	/**
+	 * Tears down the test environment.
+	 */
+	@After
+	public void tearDown() {
+		dataservice.stop();
+	}
+}
@@ -38,12 +38,477 @@
  */
 package de.hshannover.f4.trust.irongpm;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapEdgeImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphCheckpoint;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphSnapshot;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.OffHeapIfmapGraph;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.Metadata;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetEvent;
+import de.hshannover.f4.trust.irongpm.listener.GraphChangeSetListener;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDelta;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDeltaLog;
+
 /**
- * Test class for JSON parsing of an IF-MAP Graph using gson.
+ * Test class for updates on an IF-MAP Graph.
  *
  * @author Leonard Renners
  *
  */
 public class GraphUpdateTest {
 
+	private IfmapGraphImpl graph;
+	private IfmapVertexImpl ip;
+	private IfmapVertexImpl dev;
+
+	/**
+	 * Sets up the test environment.
+	 */
+	@Before
+	public void setUp() {
+		graph = new IfmapGraphImpl();
+
+		ip = new IfmapVertexImpl("ip-address");
+		ip.addProperty("/ip-address[@type]", "IPv4");
+		ip.addProperty("/ip-address[@value]", "127.0.0.1");
+
+		dev = new IfmapVertexImpl("device");
+		dev.addProperty("/device/name", "device1");
+
+		graph.addVertex(ip);
+		graph.addVertex(dev);
+		MetadataImpl devIp = new MetadataImpl("device-ip");
+		devIp.addProperty("/meta:device-ip[@ifmap-cardinality]", "singleValue");
+		graph.addEdgeSensitive(dev, ip, new IfmapEdgeImpl(dev, ip, devIp));
+	}
+
+	/**
+	 * Tests that equal vertices are resolved to the instance stored in the graph.
+	 */
+	@Test
+	public void testFindVertex() {
+		IfmapVertexImpl otherIp = new IfmapVertexImpl("ip-address");
+		otherIp.addProperty("/ip-address[@type]", "IPv4");
+		otherIp.addProperty("/ip-address[@value]", "127.0.0.1");
+
+		assertSame(ip, graph.findVertex(otherIp));
+		assertSame(dev, graph.findVertex(dev));
+
+		IfmapVertexImpl unknown = new IfmapVertexImpl("device");
+		unknown.addProperty("/device/name", "device2");
+		assertNull(graph.findVertex(unknown));
+
+		graph.removeVertex(otherIp);
+		assertNull(graph.findVertex(ip));
+		assertFalse(graph.containsVertex(ip));
+	}
+
+	/**
+	 * Tests that metadata is attached to the stored instance when an equal vertex is passed.
+	 */
+	@Test
+	public void testMetadataOnEqualVertex() {
+		IfmapVertexImpl otherDev = new IfmapVertexImpl("device");
+		otherDev.addProperty("/device/name", "device1");
+		MetadataImpl event = new MetadataImpl("event");
+		event.addProperty("/meta:event[@ifmap-cardinality]", "multiValue");
+
+		assertTrue(graph.addMetadataToVertex(otherDev, event));
+		assertEquals(1, dev.getMetadata().size());
+		assertTrue(otherDev.getMetadata().isEmpty());
+
+		assertTrue(graph.removeMetadataFromVertex(otherDev, event));
+		assertTrue(dev.getMetadata().isEmpty());
+	}
+
+	/**
+	 * Tests that a singleValue link replaces the existing link of the same type and can be removed by an equal link.
+	 */
+	@Test
+	public void testSingleValueLinkReplacement() {
+		MetadataImpl newDevIp = new MetadataImpl("device-ip");
+		newDevIp.addProperty("/meta:device-ip[@ifmap-cardinality]", "singleValue");
+		newDevIp.addProperty("/meta:device-ip[@ifmap-publisher-id]", "other");
+		IfmapEdgeImpl newEdge = new IfmapEdgeImpl(ip, dev, newDevIp);
+
+		assertTrue(graph.addEdgeSensitive(ip, dev, newEdge));
+		assertEquals(1, graph.edgeSet().size());
+		assertTrue(graph.edgeSet().iterator().next().equalsNonIfmap(newEdge));
+
+		MetadataImpl multi = new MetadataImpl("device-ip");
+		multi.addProperty("/meta:device-ip[@ifmap-cardinality]", "multiValue");
+		assertTrue(graph.addEdgeSensitive(dev, ip, new IfmapEdgeImpl(dev, ip, multi)));
+		assertEquals(2, graph.edgeSet().size());
+
+		MetadataImpl toRemove = new MetadataImpl("device-ip");
+		toRemove.addProperty("/meta:device-ip[@ifmap-cardinality]", "singleValue");
+		assertTrue(graph.removeEdgeSensitive(new IfmapEdgeImpl(dev, ip, toRemove)));
+		assertEquals(1, graph.edgeSet().size());
+		assertFalse(graph.removeEdgeSensitive(new IfmapEdgeImpl(dev, ip, toRemove)));
+	}
+
+	/**
+	 * Tests that all changes between beginUpdate and commitUpdate are reported as one change set.
+	 */
+	@Test
+	public void testChangeSetCoalescing() {
+		final List<GraphChangeSetEvent<IfmapVertex, IfmapEdge>> events = new ArrayList<>();
+		graph.addChangeSetListener(new GraphChangeSetListener<IfmapVertex, IfmapEdge>() {
+			@Override
+			public void changeSetCommitted(GraphChangeSetEvent<IfmapVertex, IfmapEdge> e) {
+				events.add(e);
+			}
+		});
+
+		IfmapVertexImpl mac = new IfmapVertexImpl("mac-address");
+		mac.addProperty("/mac-address[@value]", "aa:bb:cc:dd:ee:ff");
+		MetadataImpl ipMac = new MetadataImpl("ip-mac");
+		ipMac.addProperty("/meta:ip-mac[@ifmap-cardinality]", "multiValue");
+		MetadataImpl event = new MetadataImpl("event");
+		event.addProperty("/meta:event[@ifmap-cardinality]", "multiValue");
+
+		graph.beginUpdate();
+		graph.addVertex(mac);
+		graph.addEdgeSensitive(ip, mac, new IfmapEdgeImpl(ip, mac, ipMac));
+		graph.addMetadataToVertex(dev, event);
+		assertTrue(events.isEmpty());
+		graph.commitUpdate();
+
+		assertEquals(1, events.size());
+		assertEquals(1, events.get(0).getAddedEdges().size());
+		assertEquals(1, events.get(0).getChangedVertices().size());
+		assertTrue(events.get(0).getChangedVertices().contains(dev));
+
+		events.clear();
+		graph.removeVertex(mac);
+		assertTrue(events.isEmpty());
+		graph.addVertex(mac);
+		graph.addEdgeSensitive(ip, mac, new IfmapEdgeImpl(ip, mac, ipMac));
+		assertEquals(1, events.size());
+		assertEquals(1, events.get(0).getAddedEdges().size());
+	}
+
+	/**
+	 * Tests that a snapshot is not affected by later modifications of the graph.
+	 */
+	@Test
+	public void testSnapshotIsolation() {
+		IfmapGraphSnapshot before = graph.snapshot();
+
+		IfmapVertexImpl mac = new IfmapVertexImpl("mac-address");
+		mac.addProperty("/mac-address[@value]", "aa:bb:cc:dd:ee:ff");
+		MetadataImpl ipMac = new MetadataImpl("ip-mac");
+		ipMac.addProperty("/meta:ip-mac[@ifmap-cardinality]", "multiValue");
+		MetadataImpl event = new MetadataImpl("event");
+		event.addProperty("/meta:event[@ifmap-cardinality]", "multiValue");
+		IfmapEdgeImpl ipMacEdge = new IfmapEdgeImpl(ip, mac, ipMac);
+
+		graph.addVertex(mac);
+		graph.addEdgeSensitive(ip, mac, ipMacEdge);
+		graph.addMetadataToVertex(dev, event);
+		IfmapGraphSnapshot after = graph.snapshot();
+		graph.removeVertex(dev);
+
+		assertEquals(2, before.vertexSet().size());
+		assertEquals(1, before.edgeSet().size());
+		assertFalse(before.containsVertex(mac));
+		assertEquals(1, before.edgesOf(ip).size());
+		assertTrue(before.findVertex(dev).getMetadata().isEmpty());
+
+		assertEquals(3, after.vertexSet().size());
+		assertEquals(2, after.edgeSet().size());
+		assertEquals(2, after.edgesOf(ip).size());
+		assertEquals(mac, after.getEdgeTarget(ipMacEdge));
+		assertEquals(1, after.findVertex(dev).getMetadata().size());
+
+		before.release();
+		after.release();
+		IfmapGraphSnapshot current = graph.snapshot();
+		assertEquals(2, current.vertexSet().size());
+		assertFalse(current.containsVertex(dev));
+		assertEquals(1, current.edgesOf(ip).size());
+		current.release();
+	}
+
+	/**
+	 * Tests that the vertices handed out by a snapshot keep their metadata when the graph changes them later.
+	 */
+	@Test
+	public void testSnapshotVertexState() {
+		MetadataImpl event = new MetadataImpl("event");
+		event.addProperty("/meta:event/name", "first");
+		graph.addMetadataToVertex(dev, event);
+		IfmapGraphSnapshot before = graph.snapshot();
+		IfmapVertex device = before.findVertex(dev);
+		IfmapVertex source = before.getEdgeSource(before.edgeSet().iterator().next());
+		assertNotSame(dev, device);
+		List<Metadata> metadata = device.getMetadata();
+
+		MetadataImpl second = new MetadataImpl("event");
+		second.addProperty("/meta:event/name", "second");
+		graph.addMetadataToVertex(dev, second);
+		graph.removeMetadataFromVertex(dev, event);
+
+		assertEquals(metadata, device.getMetadata());
+		assertEquals(metadata, source.getMetadata());
+		assertEquals(1, before.findVertex(dev).getMetadata().size());
+		assertEquals("first", before.findVertex(dev).getMetadata().get(0).valueFor("/meta:event/name"));
+		IfmapGraphSnapshot after = graph.snapshot();
+		assertEquals("second", after.findVertex(dev).getMetadata().get(0).valueFor("/meta:event/name"));
+		assertEquals(1, dev.getMetadata().size());
+		before.release();
+		after.release();
+	}
+
+	/**
+	 * Tests the type and property value indexes of the graph and its snapshots.
+	 */
+	@Test
+	public void testSecondaryIndexes() {
+		graph.setIndexedProperties(Arrays.asList("/ip-address[@value]", "/device/name"));
+		IfmapGraphSnapshot before = graph.snapshot();
+
+		IfmapVertexImpl ip2 = new IfmapVertexImpl("ip-address");
+		ip2.addProperty("/ip-address[@type]", "IPv4");
+		ip2.addProperty("/ip-address[@value]", "127.0.0.2");
+		MetadataImpl devIp = new MetadataImpl("device-ip");
+		devIp.addProperty("/meta:device-ip[@ifmap-cardinality]", "singleValue");
+		graph.addVertex(ip2);
+		graph.addEdgeSensitive(dev, ip2, new IfmapEdgeImpl(dev, ip2, devIp));
+		graph.removeVertex(ip);
+
+		assertEquals(1, graph.getVerticesOfType("ip-address").size());
+		assertTrue(graph.getVerticesOfType("ip-address").contains(ip2));
+		assertTrue(graph.getVerticesWithProperty("/ip-address[@value]", "127.0.0.1").isEmpty());
+		assertEquals(1, graph.getVerticesWithProperty("/ip-address[@value]", "127.0.0.2").size());
+		assertSame(dev, graph.getVerticesWithProperty("/device/name", "device1").iterator().next());
+		assertNull(graph.getVerticesWithProperty("/ip-address[@type]", "IPv4"));
+		assertEquals(1, graph.getEdgesOfType("device-ip").size());
+		assertTrue(graph.getEdgesOfType("ip-mac").isEmpty());
+
+		assertEquals(ip, before.getVerticesOfType("ip-address").iterator().next());
+		assertEquals(1, before.getVerticesWithProperty("/ip-address[@value]", "127.0.0.1").size());
+		assertTrue(before.getVerticesWithProperty("/ip-address[@value]", "127.0.0.2").isEmpty());
+		assertEquals(1, before.getEdgesOfType("device-ip").size());
+		before.release();
+
+		IfmapGraphSnapshot after = graph.snapshot();
+		assertTrue(after.getVerticesWithProperty("/ip-address[@value]", "127.0.0.1").isEmpty());
+		assertTrue(after.getVerticesOfType("ip-address").contains(ip2));
+		after.release();
+	}
+
+	/**
+	 * Tests that a graph is restored completely from its checkpoint.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testCheckpoint() throws IOException {
+		graph.setLastUpdated(42L);
+		MetadataImpl event = new MetadataImpl("event", new HashMap<String, String>(), "<event>\u00e4</event>");
+		event.addProperty("/meta:event/name", "scan");
+		graph.addMetadataToVertex(ip, event);
+
+		File file = File.createTempFile("irongpm", ".checkpoint");
+		try {
+			IfmapGraphCheckpoint.write(graph, file);
+			IfmapGraphImpl restored = IfmapGraphCheckpoint.read(file);
+			assertEquals(graph, restored);
+			assertEquals(Long.valueOf(42), restored.getLastUpdated());
+			assertEquals(ip.getMetadata(), restored.findVertex(ip).getMetadata());
+			assertEquals("<event>\u00e4</event>", restored.findVertex(ip).getMetadata().get(0).getRawData());
+			assertEquals(1, restored.getVerticesOfType("device").size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Tests that the off-heap graph behaves like the heap graph, including link replacement, removal and events.
+	 */
+	@Test
+	public void testOffHeapGraph() {
+		OffHeapIfmapGraph offHeap = new OffHeapIfmapGraph(graph);
+		assertEquals(graph.vertexSet(), offHeap.vertexSet());
+		assertEquals(1, offHeap.edgesOf(ip).size());
+		final int[] events = new int[4];
+		offHeap.addGraphListener(new GraphListener<IfmapVertex, IfmapEdge>() {
+			@Override
+			public void vertexAdded(GraphVertexChangeEvent<IfmapVertex> e) {
+				events[0]++;
+			}
+
+			@Override
+			public void vertexRemoved(GraphVertexChangeEvent<IfmapVertex> e) {
+				events[1]++;
+			}
+
+			@Override
+			public void edgeAdded(GraphEdgeChangeEvent<IfmapVertex, IfmapEdge> e) {
+				events[2]++;
+			}
+
+			@Override
+			public void edgeRemoved(GraphEdgeChangeEvent<IfmapVertex, IfmapEdge> e) {
+				events[3]++;
+			}
+		});
+
+		MetadataImpl newDevIp = new MetadataImpl("device-ip");
+		newDevIp.addProperty("/meta:device-ip[@ifmap-cardinality]", "singleValue");
+		newDevIp.addProperty("/meta:device-ip[@ifmap-publisher-id]", "other");
+		IfmapEdgeImpl newEdge = new IfmapEdgeImpl(ip, dev, newDevIp);
+		assertTrue(offHeap.addEdgeSensitive(ip, dev, newEdge));
+		assertEquals(1, offHeap.edgeSet().size());
+		assertTrue(offHeap.edgeSet().iterator().next().equalsNonIfmap(newEdge));
+		MetadataImpl multi = new MetadataImpl("device-ip");
+		multi.addProperty("/meta:device-ip[@ifmap-cardinality]", "multiValue");
+		assertTrue(offHeap.addEdgeSensitive(dev, ip, new IfmapEdgeImpl(dev, ip, multi)));
+		assertFalse(offHeap.addEdgeSensitive(dev, ip, new IfmapEdgeImpl(dev, ip, new MetadataImpl(multi))));
+		assertEquals(2, offHeap.getAllEdges(ip, dev).size());
+		assertEquals(2, offHeap.degreeOf(dev));
+
+		// enough vertices and edges to grow the buffers and tables, then remove every other one again
+		List<IfmapVertexImpl> macs = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			IfmapVertexImpl mac = new IfmapVertexImpl("mac-address");
+			mac.addProperty("/mac-address[@value]", "mac" + i);
+			macs.add(mac);
+			offHeap.addVertex(mac);
+			MetadataImpl ipMac = new MetadataImpl("ip-mac");
+			ipMac.addProperty("/meta:ip-mac[@ifmap-cardinality]", "multiValue");
+			offHeap.addEdge(ip, mac, new IfmapEdgeImpl(ip, mac, ipMac));
+		}
+		for (int i = 0; i < macs.size(); i += 2) {
+			assertTrue(offHeap.removeVertex(macs.get(i)));
+		}
+		assertEquals(1502, offHeap.vertexSet().size());
+		assertEquals(1502, offHeap.edgeSet().size());
+		assertEquals(1502, offHeap.edgesOf(ip).size());
+		for (int i = 0; i < macs.size(); i++) {
+			assertEquals(i % 2 == 1, offHeap.containsVertex(macs.get(i)));
+		}
+		assertSame(ip, offHeap.getEdgeSource(offHeap.getEdge(ip, macs.get(1))));
+		assertEquals(1500, offHeap.getEdgesOfType("ip-mac").size());
+
+		assertTrue(offHeap.removeEdgeSensitive(new IfmapEdgeImpl(dev, ip, newDevIp)));
+		assertTrue(offHeap.removeVertex(dev));
+		assertEquals(1500, offHeap.edgeSet().size());
+		assertEquals(3000, events[0]);
+		assertEquals(1501, events[1]);
+		assertEquals(3002, events[2]);
+		assertEquals(1503, events[3]);
+	}
+
+	/**
+	 * Tests appending to the delta log, reopening it, rolling and retention of segments, reading a time range and
+	 * replaying the deltas which continue the version of a graph.
+	 */
+	@Test
+	public void testDeltaLog() throws IOException {
+		File directory = File.createTempFile("irongpm", ".deltas");
+		directory.delete();
+		try {
+			IfmapGraphDeltaLog log = new IfmapGraphDeltaLog(directory, 1024 * 1024, 4);
+			for (long timestamp = 1; timestamp <= 5; timestamp++) {
+				assertTrue(log.append(deviceDelta(timestamp), timestamp - 1));
+			}
+			log.close();
+			log = new IfmapGraphDeltaLog(directory, 1024 * 1024, 4);
+			assertEquals(Long.valueOf(5), log.getLastTimestamp());
+			assertFalse(log.append(deviceDelta(5), 4));
+			assertTrue(log.append(deviceDelta(6), 5));
+			log.close();
+			assertEquals(1, directory.listFiles().length);
+
+			final List<Long> read = new ArrayList<>();
+			assertEquals(3, IfmapGraphDeltaLog.read(directory, 2L, 5L, new IfmapGraphDeltaLog.DeltaHandler() {
+				@Override
+				public boolean handle(IfmapGraphDelta delta, long previous) {
+					assertEquals(delta.getTimestamp() - 1, previous);
+					read.add(delta.getTimestamp());
+					return true;
+				}
+			}));
+			assertEquals(Arrays.asList(3L, 4L, 5L), read);
+
+			IfmapGraphImpl replayed = new IfmapGraphImpl();
+			replayed.setLastUpdated(2L);
+			assertEquals(3, DataReciever.replay(directory, replayed, 5L));
+			assertEquals(Long.valueOf(5), replayed.getLastUpdated());
+			assertEquals(3, replayed.getVerticesOfType("device").size());
+			assertTrue(replayed.containsVertex(device(3)));
+			assertFalse(replayed.containsVertex(device(6)));
+			assertEquals(1, DataReciever.replay(directory, replayed, null));
+			assertEquals(Long.valueOf(6), replayed.getLastUpdated());
+
+			// every delta is larger than a segment, so each gets its own and only the newest two are kept
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			log = new IfmapGraphDeltaLog(directory, 64, 2);
+			for (long timestamp = 1; timestamp <= 5; timestamp++) {
+				log.append(deviceDelta(timestamp), timestamp - 1);
+			}
+			log.close();
+			assertEquals(2, directory.listFiles().length);
+			replayed = new IfmapGraphImpl();
+			replayed.setLastUpdated(3L);
+			assertEquals(2, DataReciever.replay(directory, replayed, null));
+			assertTrue(replayed.containsVertex(device(4)));
+			assertTrue(replayed.containsVertex(device(5)));
+			// the deltas following version 1 are not retained, so nothing is replayed
+			replayed = new IfmapGraphImpl();
+			replayed.setLastUpdated(1L);
+			assertEquals(0, DataReciever.replay(directory, replayed, null));
+			assertEquals(Long.valueOf(1), replayed.getLastUpdated());
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private static IfmapVertexImpl device(long i) {
+		IfmapVertexImpl device = new IfmapVertexImpl("device");
+		device.addProperty("/device/name", "device" + i);
+		return device;
+	}
+
+	private static IfmapGraphDelta deviceDelta(long timestamp) {
+		IfmapGraphImpl part = new IfmapGraphImpl();
+		IfmapVertexImpl device = device(timestamp);
+		MetadataImpl event = new MetadataImpl("event");
+		event.addProperty("/meta:event/name", "event" + timestamp);
+		device.addMetadata(event);
+		part.addVertex(device);
+		return new IfmapGraphDelta(timestamp, Arrays.asList(part), Collections.<IfmapGraphImpl> emptyList());
+	}
 }
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapEdgeImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphBinaryCodec;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphJsonAdapter;
+
+/**
+ * Compares size and speed of the gson adapter and the binary codec on a synthetic graph of devices with ip and mac
+ * addresses. Not run by the tests, start it with the number of devices as argument (default 10000).
+ *
+ * @author Leonard Renners
+ *
+ */
+public final class IfmapGraphCodecBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	/**
+	 * Cause security.
+	 */
+	private IfmapGraphCodecBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            The number of devices (optional)
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int devices = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		IfmapGraphImpl graph = createGraph(devices);
+		Gson gson = new GsonBuilder().disableHtmlEscaping()
+				.registerTypeAdapter(IfmapGraphImpl.class, new IfmapGraphJsonAdapter()).create();
+		JsonParser parser = new JsonParser();
+		System.out.println("Graph: " + graph.vertexSet().size() + " vertices, " + graph.edgeSet().size() + " edges");
+
+		String json = null;
+		byte[] binary = null;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			json = gson.toJson(new IfmapGraphImpl[] { graph });
+			long jsonWrite = System.nanoTime() - start;
+			start = System.nanoTime();
+			gson.fromJson(parser.parse(json).getAsJsonArray().get(0), IfmapGraphImpl.class);
+			long jsonRead = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			IfmapGraphBinaryCodec.write(graph, out);
+			binary = out.toByteArray();
+			long binaryWrite = System.nanoTime() - start;
+			start = System.nanoTime();
+			IfmapGraphBinaryCodec.read(new ByteArrayInputStream(binary));
+			long binaryRead = System.nanoTime() - start;
+
+			System.out.println(String.format("Round %d: json write %d ms, read %d ms | binary write %d ms, read %d ms",
+					round, jsonWrite / 1000000, jsonRead / 1000000, binaryWrite / 1000000, binaryRead / 1000000));
+		}
+		System.out.println(String.format("Size: json %d bytes (utf-16 chars), binary %d bytes (%.1f%%)",
+				json.length(), binary.length, 100.0 * binary.length / json.length()));
+	}
+
+	private static IfmapGraphImpl createGraph(int devices) {
+		IfmapGraphImpl graph = new IfmapGraphImpl();
+		graph.setLastUpdated(System.currentTimeMillis());
+		for (int i = 0; i < devices; i++) {
+			IfmapVertexImpl dev = new IfmapVertexImpl("device");
+			dev.addProperty("/device/name", "device" + i);
+			IfmapVertexImpl ip = new IfmapVertexImpl("ip-address");
+			ip.addProperty("/ip-address[@type]", "IPv4");
+			ip.addProperty("/ip-address[@value]", "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+			IfmapVertexImpl mac = new IfmapVertexImpl("mac-address");
+			mac.addProperty("/mac-address[@value]", String.format("aa:bb:cc:%02x:%02x:%02x", i >> 16 & 0xff,
+					i >> 8 & 0xff, i & 0xff));
+			graph.addVertex(dev);
+			graph.addVertex(ip);
+			graph.addVertex(mac);
+			graph.addEdgeSensitive(dev, ip, new IfmapEdgeImpl(dev, ip, metadata("device-ip", "singleValue", i)));
+			MetadataImpl ipMac = metadata("ip-mac", "multiValue", i);
+			ipMac.addProperty("/meta:ip-mac/dhcp-server", "dhcp1");
+			graph.addEdgeSensitive(ip, mac, new IfmapEdgeImpl(ip, mac, ipMac));
+		}
+		return graph;
+	}
+
+	private static MetadataImpl metadata(String type, String cardinality, int i) {
+		MetadataImpl m = new MetadataImpl(type);
+		m.addProperty("/meta:" + type + "[@ifmap-cardinality]", cardinality);
+		m.addProperty("/meta:" + type + "[@ifmap-publisher-id]", "publisher-" + (i % 4));
+		m.addProperty("/meta:" + type + "[@xmlns:meta]", "http://www.trustedcomputinggroup.org/2010/IFMAP-METADATA/2");
+		return m;
+	}
+}
@@ -40,7 +40,12 @@
 package de.hshannover.f4.trust.irongpm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Iterator;
 
@@ -54,13 +59,18 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapEdgeImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphBinaryCodec;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphDelta;
 import de.hshannover.f4.trust.irongpm.rest.IfmapGraphJsonAdapter;
+import de.hshannover.f4.trust.irongpm.rest.IfmapGraphJsonReader;
 
 /**
  * Test class for JSON parsing of an IF-MAP Graph using gson.
@@ -223,6 +233,62 @@ public class JsonParserTest {
 				gson.fromJson(parser.parse(gson.toJson(binky)).getAsJsonArray().get(0), IfmapGraphImpl.class));
 	}
 
+	/**
+	 * Tests that the streaming reader produces the same graphs as the gson adapter
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testJsonStreamingRead() throws IOException {
+		String graphJson = "{\"timestamp\":1409833398907,\"links\":[{\"identifiers\":[{\"typename\":\"device\",\"properties\":{\"/device/name\":\"bronko\"}},{\"typename\":\"ip-address\",\"properties\":{\"/ip-address[@type]\":\"IPv4\",\"/ip-address[@value]\":\"192.168.0.1\"}}],\"metadata\":{\"typename\":\"device-ip\",\"properties\":{\"/meta:device-ip[@ifmap-cardinality]\":\"singleValue\"}}},{\"identifiers\":{\"typename\":\"ip-address\",\"properties\":{\"/ip-address[@type]\":\"IPv4\",\"/ip-address[@value]\":\"192.168.0.1\"},\"rawData\":null},\"metadata\":[{\"typename\":\"event\",\"properties\":{\"/meta:event/name\":\"scan\"},\"rawData\":\"<event/>\"}]}]}";
+		String deltaJson = "{\"updates\":[" + graphJson + "],\"deletes\":[]}";
+		IfmapGraphJsonReader reader = new IfmapGraphJsonReader();
+
+		IfmapGraphImpl expected = gson.fromJson(parser.parse(graphJson), IfmapGraphImpl.class);
+		IfmapGraphImpl streamed = reader.readGraph(new JsonReader(new StringReader(graphJson)));
+		assertEquals(expected, streamed);
+		assertEquals(expected.getLastUpdated(), streamed.getLastUpdated());
+		for (IfmapVertex v : expected.vertexSet()) {
+			assertEquals(v.getMetadata(), streamed.findVertex(v).getMetadata());
+		}
+
+		IfmapGraphDelta delta = reader.readDelta(new JsonReader(new StringReader(deltaJson)));
+		assertEquals(1, delta.getUpdates().size());
+		assertEquals(expected, delta.getUpdates().get(0));
+		assertTrue(delta.getDeletes().isEmpty());
+	}
+
+	/**
+	 * Tests that the binary codec restores the graph parsed by the gson adapter
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testBinaryRoundTrip() throws IOException {
+		String json = "[{\"timestamp\":1409833398907,\"links\":[{\"identifiers\":[{\"typename\":\"device\",\"properties\":{\"/device/name\":\"bronko\"}},{\"typename\":\"ip-address\",\"properties\":{\"/ip-address[@type]\":\"IPv4\",\"/ip-address[@value]\":\"192.168.0.1\"}}],\"metadata\":{\"typename\":\"device-ip\",\"properties\":{\"/meta:device-ip[@ifmap-cardinality]\":\"singleValue\"},\"rawData\":\"<meta:device-ip/>\"}},{\"identifiers\":[{\"typename\":\"device\",\"properties\":{\"/device/name\":\"freeradius-pdp\"}},{\"typename\":\"ip-address\",\"properties\":{\"/ip-address[@type]\":\"IPv4\",\"/ip-address[@value]\":\"192.168.0.1\"}}],\"metadata\":{\"typename\":\"device-ip\",\"properties\":{\"/meta:device-ip[@ifmap-cardinality]\":\"singleValue\"}}},{\"identifiers\":{\"typename\":\"ip-address\",\"properties\":{\"/ip-address[@type]\":\"IPv4\",\"/ip-address[@value]\":\"192.168.0.1\"}},\"metadata\":[{\"typename\":\"event\",\"properties\":{\"/meta:event/name\":\"sc\u00e4n\"},\"rawData\":\"<event/>\"}]}]}]";
+		IfmapGraphImpl expected = gson.fromJson(parser.parse(json).getAsJsonArray().get(0), IfmapGraphImpl.class);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IfmapGraphBinaryCodec.write(expected, out);
+		IfmapGraphImpl restored = IfmapGraphBinaryCodec.read(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(expected, restored);
+		assertEquals(expected.getLastUpdated(), restored.getLastUpdated());
+		for (IfmapVertex v : expected.vertexSet()) {
+			assertEquals(v.getMetadata(), restored.findVertex(v).getMetadata());
+		}
+		for (IfmapEdge e : restored.edgeSet()) {
+			if (restored.getEdgeSource(e).valueFor("/device/name").equals("bronko")) {
+				assertEquals("<meta:device-ip/>", e.getMetadata().getRawData());
+			}
+		}
+		// the restored graph converts back to the same graph through the adapter
+		IfmapGraphImpl[] array = new IfmapGraphImpl[] { restored };
+		assertEquals(expected,
+				gson.fromJson(parser.parse(gson.toJson(array)).getAsJsonArray().get(0), IfmapGraphImpl.class));
+		assertTrue(out.size() < json.length());
+	}
+
 	/**
 	 * Tears down the test environment.
 	 */
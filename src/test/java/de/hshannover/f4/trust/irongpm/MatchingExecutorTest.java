@@ -0,0 +1,276 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.hshannover.f4.trust.irongpm.algorithm.MatchingExecutor;
+import de.hshannover.f4.trust.irongpm.algorithm.MatchingExecutor.CoalescingTask;
+import de.hshannover.f4.trust.irongpm.algorithm.MatchingExecutor.OverflowPolicy;
+
+/**
+ * Tests the overflow policies of the {@link MatchingExecutor}.
+ * 
+ * @author Leonard Renners
+ * 
+ */
+public class MatchingExecutorTest {
+
+	private final CountDownLatch mGate = new CountDownLatch(1);
+
+	/**
+	 * Tests that a submission waits while the queue is full and the task is executed afterwards.
+	 */
+	@Test(timeout = 10000)
+	public void testBlock() throws InterruptedException {
+		MatchingExecutor executor = fullExecutor(OverflowPolicy.BLOCK);
+		CountingTask task = new CountingTask("a");
+		Thread submitter = submit(executor, task, null);
+		submitter.join(200);
+		assertTrue(submitter.isAlive());
+		assertEquals(1, executor.getBlockedCount());
+
+		mGate.countDown();
+		submitter.join();
+		awaitRun(task);
+		assertEquals(0, executor.getDroppedCount());
+		assertEquals(2, executor.getMaxQueueDepth());
+		executor.shutdown();
+	}
+
+	/**
+	 * Tests that a blocked submission is rejected and its task discarded if the executor is shut down meanwhile.
+	 */
+	@Test(timeout = 10000)
+	public void testBlockShutdown() throws InterruptedException {
+		MatchingExecutor executor = fullExecutor(OverflowPolicy.BLOCK);
+		CountingTask task = new CountingTask("a");
+		AtomicBoolean rejected = new AtomicBoolean();
+		Thread submitter = submit(executor, task, rejected);
+		submitter.join(200);
+		assertTrue(submitter.isAlive());
+
+		executor.shutdown();
+		submitter.join();
+		assertTrue(rejected.get());
+		assertEquals(1, task.mDiscarded.get());
+		assertEquals(1, executor.getDroppedCount());
+		mGate.countDown();
+		Thread.sleep(100);
+		assertEquals(0, task.mRuns.get());
+	}
+
+	/**
+	 * Tests that a task is merged into a queued task with the same key, while a task without a match waits.
+	 */
+	@Test(timeout = 10000)
+	public void testCoalesce() throws InterruptedException {
+		MatchingExecutor executor = new MatchingExecutor(1, 2, OverflowPolicy.COALESCE);
+		CountingTask first = new CountingTask("a");
+		CountingTask second = new CountingTask("b");
+		fill(executor, first, second);
+
+		CountingTask merged = new CountingTask("a");
+		executor.execute(merged);
+		assertEquals(1, executor.getCoalescedCount());
+		assertEquals(1, first.mAbsorbed.get());
+
+		CountingTask other = new CountingTask("c");
+		Thread submitter = submit(executor, other, null);
+		submitter.join(200);
+		assertTrue(submitter.isAlive());
+		assertEquals(1, executor.getBlockedCount());
+
+		mGate.countDown();
+		submitter.join();
+		awaitRun(first);
+		awaitRun(second);
+		awaitRun(other);
+		assertEquals(0, merged.mRuns.get());
+		assertEquals(0, merged.mDiscarded.get());
+		assertEquals(0, executor.getDroppedCount());
+		executor.shutdown();
+	}
+
+	/**
+	 * Tests that a waiting coalescing submission is discarded on shutdown.
+	 */
+	@Test(timeout = 10000)
+	public void testCoalesceShutdown() throws InterruptedException {
+		MatchingExecutor executor = fullExecutor(OverflowPolicy.COALESCE);
+		CountingTask task = new CountingTask("c");
+		AtomicBoolean rejected = new AtomicBoolean();
+		Thread submitter = submit(executor, task, rejected);
+		submitter.join(200);
+		executor.shutdown();
+		submitter.join();
+		assertTrue(rejected.get());
+		assertEquals(1, task.mDiscarded.get());
+		mGate.countDown();
+	}
+
+	/**
+	 * Tests that the oldest queued task is discarded (releasing its resources) to make room for a new one.
+	 */
+	@Test(timeout = 10000)
+	public void testDropOldest() throws InterruptedException {
+		MatchingExecutor executor = new MatchingExecutor(1, 2, OverflowPolicy.DROP_OLDEST);
+		CountingTask first = new CountingTask("a");
+		CountingTask second = new CountingTask("b");
+		fill(executor, first, second);
+
+		CountingTask third = new CountingTask("c");
+		executor.execute(third);
+		assertEquals(1, executor.getDroppedCount());
+		assertEquals(1, first.mDiscarded.get());
+		assertEquals(0, executor.getBlockedCount());
+
+		mGate.countDown();
+		awaitRun(second);
+		awaitRun(third);
+		assertEquals(0, first.mRuns.get());
+		executor.shutdown();
+	}
+
+	private MatchingExecutor fullExecutor(OverflowPolicy policy) throws InterruptedException {
+		MatchingExecutor executor = new MatchingExecutor(1, 2, policy);
+		fill(executor, new CountingTask("x"), new CountingTask("y"));
+		return executor;
+	}
+
+	/**
+	 * Occupies the only worker with a task waiting for the gate and fills the queue with the given tasks.
+	 */
+	private void fill(MatchingExecutor executor, CountingTask first, CountingTask second) throws InterruptedException {
+		CountingTask blocker = new CountingTask("blocker");
+		executor.execute(blocker);
+		while (!blocker.mStarted) {
+			Thread.sleep(5);
+		}
+		executor.execute(first);
+		executor.execute(second);
+		assertEquals(2, executor.getQueueDepth());
+	}
+
+	private static Thread submit(final MatchingExecutor executor, final Runnable task, final AtomicBoolean rejected) {
+		Thread submitter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					if (rejected == null) {
+						throw e;
+					}
+					rejected.set(true);
+				}
+			}
+		});
+		submitter.start();
+		return submitter;
+	}
+
+	private static void awaitRun(CountingTask task) throws InterruptedException {
+		while (task.mRuns.get() == 0) {
+			Thread.sleep(5);
+		}
+		assertFalse(task.mDiscarded.get() > 0);
+	}
+
+	/**
+	 * Task waiting for the gate of the test, counting its executions, merges and discards.
+	 */
+	private class CountingTask implements CoalescingTask {
+
+		private final Object mKey;
+		private final AtomicInteger mRuns = new AtomicInteger();
+		private final AtomicInteger mAbsorbed = new AtomicInteger();
+		private final AtomicInteger mDiscarded = new AtomicInteger();
+		private volatile boolean mStarted = false;
+
+		CountingTask(Object key) {
+			mKey = key;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				mStarted = true;
+			}
+			try {
+				if (!mGate.await(10, TimeUnit.SECONDS)) {
+					fail("gate not opened");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			mRuns.incrementAndGet();
+		}
+
+		@Override
+		public Object getCoalescingKey() {
+			return mKey;
+		}
+
+		@Override
+		public synchronized boolean absorb(CoalescingTask newer) {
+			if (mStarted) {
+				return false;
+			}
+			mAbsorbed.incrementAndGet();
+			return true;
+		}
+
+		@Override
+		public void discard() {
+			mDiscarded.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * =====================================================
+ *   _____                _     ____  _   _       _   _
+ *  |_   _|_ __ _   _ ___| |_  / __ \| | | | ___ | | | |
+ *    | | | '__| | | / __| __|/ / _` | |_| |/ __|| |_| |
+ *    | | | |  | |_| \__ \ |_| | (_| |  _  |\__ \|  _  |
+ *    |_| |_|   \__,_|___/\__|\ \__,_|_| |_||___/|_| |_|
+ *                             \____/
+ * 
+ * =====================================================
+ * 
+ * Hochschule Hannover
+ * (University of Applied Sciences and Arts, Hannover)
+ * Faculty IV, Dept. of Computer Science
+ * Ricklinger Stadtweg 118, 30459 Hannover, Germany
+ * 
+ * Email: trust@f4-i.fh-hannover.de
+ * Website: http://trust.f4.hs-hannover.de/
+ * 
+ * This file is part of irongpm, version 0.3.1,
+ * implemented by the Trust@HsH research group at the Hochschule Hannover.
+ * %%
+ * Copyright (C) 2014 - 2016 Trust@HsH
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package de.hshannover.f4.trust.irongpm;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
+
+/**
+ * Measures the heap used per event metadatum, as a plain map with the raw XML (the former representation) and as
+ * {@link MetadataImpl} with and without raw XML. Not run by the tests, start it with the number of metadata as
+ * argument (default 200000).
+ *
+ * @author Leonard Renners
+ *
+ */
+public final class MetadataHeapBenchmark {
+
+	private static final String[] SIGNIFICANCE = { "critical", "important", "informational" };
+
+	/**
+	 * Cause security.
+	 */
+	private MetadataHeapBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            The number of metadata (optional)
+	 */
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		Object[] keep = new Object[count];
+
+		long before = usedHeap();
+		for (int i = 0; i < count; i++) {
+			Map<String, String> properties = properties(i);
+			keep[i] = new Object[] { "event", new HashMap<>(properties), rawData(properties) };
+		}
+		report("map and raw XML", before, usedHeap(), count);
+		clear(keep);
+
+		MetadataImpl.setRawDataDropped(Collections.<String> emptySet());
+		before = usedHeap();
+		for (int i = 0; i < count; i++) {
+			Map<String, String> properties = properties(i);
+			keep[i] = new MetadataImpl("event", properties, rawData(properties));
+		}
+		report("MetadataImpl with raw XML", before, usedHeap(), count);
+		clear(keep);
+
+		MetadataImpl.setRawDataDropped(Collections.singleton("event"));
+		before = usedHeap();
+		for (int i = 0; i < count; i++) {
+			Map<String, String> properties = properties(i);
+			keep[i] = new MetadataImpl("event", properties, rawData(properties));
+		}
+		report("MetadataImpl without raw XML", before, usedHeap(), count);
+		clear(keep);
+	}
+
+	private static Map<String, String> properties(int i) {
+		Map<String, String> properties = new HashMap<>();
+		// new instances of the paths, as they arrive from the dataservice
+		properties.put(new String("/meta:event[@ifmap-cardinality]"), "multiValue");
+		properties.put(new String("/meta:event[@ifmap-publisher-id]"), "publisher-" + (i % 4));
+		properties.put(new String("/meta:event[@ifmap-timestamp]"), "2014-06-0" + (1 + i % 9) + "T10:00:00Z");
+		properties.put(new String("/meta:event/name"), "event " + i);
+		properties.put(new String("/meta:event/discovered-time"), "2014-06-01T09:59:" + (10 + i % 50) + "Z");
+		properties.put(new String("/meta:event/discoverer-id"), "ids-" + (i % 16));
+		properties.put(new String("/meta:event/magnitude"), Integer.toString(i % 100));
+		properties.put(new String("/meta:event/confidence"), Integer.toString(i % 100));
+		properties.put(new String("/meta:event/significance"), SIGNIFICANCE[i % 3]);
+		properties.put(new String("/meta:event/type"), "p2p");
+		return properties;
+	}
+
+	private static String rawData(Map<String, String> properties) {
+		StringBuilder xml = new StringBuilder("<meta:event ifmap-cardinality=\"multiValue\">");
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			xml.append("<p>").append(property.getValue()).append("</p>");
+		}
+		return xml.append("</meta:event>").toString();
+	}
+
+	private static void report(String name, long before, long after, int count) {
+		System.out.println(String.format("%s: %d bytes per metadatum", name, (after - before) / count));
+	}
+
+	private static void clear(Object[] keep) {
+		for (int i = 0; i < keep.length; i++) {
+			keep[i] = null;
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
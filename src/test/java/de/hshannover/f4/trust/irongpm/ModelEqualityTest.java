@@ -40,18 +40,26 @@ package de.hshannover.f4.trust.irongpm;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
 import java.util.HashMap;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.hshannover.f4.trust.irongpm.algorithm.FiredMatchStore;
+import de.hshannover.f4.trust.irongpm.algorithm.MatchFingerprint;
+import de.hshannover.f4.trust.irongpm.ifmap.ExtendedIdentifierEncapsulation;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapEdgeImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.PropertyArray;
+import de.hshannover.f4.trust.irongpm.ifmap.SymbolTable;
 
 /**
  * Test class for the equality between IF-MAP Edges, Vertices and Metadata
@@ -233,6 +241,49 @@ public class ModelEqualityTest {
 
 	}
 
+	/**
+	 * Tests that the match fingerprint only depends on the content of a graph and is used for the dedup of matches.
+	 */
+	@Test
+	public void testMatchFingerprint() {
+		IfmapVertexImpl ip = new IfmapVertexImpl("ip-address");
+		ip.addProperty("/ip-address[@value]", "10.0.0.1");
+		IfmapVertexImpl mac = new IfmapVertexImpl("mac-address");
+		mac.addProperty("/mac-address[@value]", "aa:bb:cc:dd:ee:ff");
+		MetadataImpl ipMac = new MetadataImpl("ip-mac");
+		ipMac.addProperty("/meta:ip-mac[@ifmap-cardinality]", "multiValue");
+		ipMac.addProperty("/meta:ip-mac/start-time", "2014-01-01T00:00:00Z");
+
+		IfmapGraphImpl graph = new IfmapGraphImpl();
+		graph.addVertex(ip);
+		graph.addVertex(mac);
+		graph.addEdge(ip, mac, new IfmapEdgeImpl(ip, mac, ipMac));
+		IfmapGraphImpl graph2 = new IfmapGraphImpl();
+		graph2.addVertex(new IfmapVertexImpl(mac));
+		graph2.addVertex(new IfmapVertexImpl(ip));
+		graph2.addEdge(mac, ip, new IfmapEdgeImpl(mac, ip, new MetadataImpl(ipMac)));
+		MatchFingerprint fingerprint = MatchFingerprint.of(graph);
+		assertEquals(fingerprint, MatchFingerprint.of(graph2));
+
+		MetadataImpl otherIpMac = new MetadataImpl(ipMac);
+		otherIpMac.addProperty("/meta:ip-mac/start-time", "2014-01-02T00:00:00Z");
+		IfmapGraphImpl graph3 = new IfmapGraphImpl();
+		graph3.addVertex(ip);
+		graph3.addVertex(mac);
+		graph3.addEdge(ip, mac, new IfmapEdgeImpl(ip, mac, otherIpMac));
+		MatchFingerprint otherFingerprint = MatchFingerprint.of(graph3);
+		assertFalse(fingerprint.equals(otherFingerprint));
+
+		FiredMatchStore store = new FiredMatchStore(2, 0);
+		assertTrue(store.markFired(1, fingerprint));
+		assertFalse(store.markFired(1, MatchFingerprint.of(graph2)));
+		assertTrue(store.markFired(2, fingerprint));
+		assertTrue(store.markFired(1, otherFingerprint));
+		assertTrue(store.markFired(1, MatchFingerprint.of(new IfmapGraphImpl())));
+		assertEquals(2, store.size(1));
+		assertTrue(store.markFired(1, fingerprint));
+	}
+
 	/**
 	 * Tears down the test environment.
 	 */
@@ -246,4 +297,122 @@ public class ModelEqualityTest {
 		id2.addProperty("beta", "zwei");
 		assertEquals(id1, id2);
 	}
+
+	/**
+	 * Tests that the nested XML of an extended identifier is parsed once and kept by copies of the vertex.
+	 */
+	@Test
+	public void testExtendedIdentifierCache() {
+		IfmapVertexImpl network = new IfmapVertexImpl("identity");
+		network.addProperty("/identity[@type]", "other");
+		network.addProperty("/identity[@other-type-definition]", "extended");
+		network.addProperty("/identity[@name]",
+				"&lt;network xmlns=&quot;http://www.example.com/extended&quot; address=&quot;10.0.0.0&quot;/&gt;");
+
+		ExtendedIdentifierEncapsulation encapsulation = ExtendedIdentifierEncapsulation.of(network);
+		assertEquals("network", encapsulation.getTypeName());
+		assertEquals("10.0.0.0", encapsulation.valueFor("/network[@address]"));
+		assertSame(encapsulation, ExtendedIdentifierEncapsulation.of(network));
+		assertSame(encapsulation, ExtendedIdentifierEncapsulation.of(encapsulation));
+
+		IfmapVertexImpl copy = new IfmapVertexImpl(network);
+		copy.addMetadata(new MetadataImpl("event"));
+		ExtendedIdentifierEncapsulation copied = ExtendedIdentifierEncapsulation.of(copy);
+		assertEquals("10.0.0.0", copied.valueFor("/network[@address]"));
+		assertEquals(1, copied.getMetadata().size());
+		assertTrue(encapsulation.getMetadata().isEmpty());
+
+		assertNull(new IfmapVertexImpl("ip-address").getExtendedIdentifier());
+	}
+
+	/**
+	 * Tests that property paths and type names are shared through the symbol table.
+	 */
+	@Test
+	public void testSymbolTable() {
+		int id = SymbolTable.id("/ip-address[@value]");
+		assertEquals(id, SymbolTable.id(new String("/ip-address[@value]")));
+		assertEquals("/ip-address[@value]", SymbolTable.symbol(id));
+		assertEquals(-1, SymbolTable.lookup("/unknown-" + System.nanoTime()));
+
+		IfmapVertexImpl ip1 = new IfmapVertexImpl(new String("ip-address"));
+		IfmapVertexImpl ip2 = new IfmapVertexImpl(new String("ip-address"));
+		assertSame(ip1.getTypeName(), ip2.getTypeName());
+
+		PropertyArray properties = new PropertyArray();
+		assertNull(properties.put("/ip-address[@value]", "10.0.0.1"));
+		properties.put("/ip-address[@type]", "IPv4");
+		assertEquals("10.0.0.1", properties.put("/ip-address[@value]", "10.0.0.2"));
+		PropertyArray copy = new PropertyArray(properties);
+		properties.put("/ip-address[@administrative-domain]", "");
+		assertEquals(3, properties.size());
+		assertEquals(2, copy.size());
+		assertEquals("10.0.0.2", copy.get("/ip-address[@value]"));
+		assertTrue(copy.containsKey("/ip-address[@type]"));
+		assertFalse(copy.containsKey("/ip-address[@administrative-domain]"));
+		assertNull(copy.get("/mac-address[@value]"));
+	}
+
+	/**
+	 * Tests the compact metadata: raw XML kept or dropped per type, hash code stable after changes.
+	 */
+	@Test
+	public void testCompactMetadata() {
+		HashMap<String, String> properties = new HashMap<>();
+		properties.put("/meta:event[@ifmap-cardinality]", "multiValue");
+		properties.put("/meta:event/name", "p2p");
+		MetadataImpl kept = new MetadataImpl("event", properties, "<meta:event>\u00e4</meta:event>");
+		assertEquals("<meta:event>\u00e4</meta:event>", kept.getRawData());
+		try {
+			MetadataImpl.setRawDataDropped(Collections.singleton("event"));
+			MetadataImpl dropped = new MetadataImpl("event", properties, "<meta:event>\u00e4</meta:event>");
+			assertNull(dropped.getRawData());
+			assertEquals(kept, dropped);
+			assertEquals("<x/>", new MetadataImpl("ip-mac", properties, "<x/>").getRawData());
+		} finally {
+			MetadataImpl.setRawDataDropped(Collections.<String> emptySet());
+		}
+
+		MetadataImpl copy = new MetadataImpl(kept);
+		assertEquals(kept.hashCode(), copy.hashCode());
+		copy.addProperty("/meta:event/magnitude", "10");
+		assertFalse(kept.equals(copy));
+		assertEquals(new MetadataImpl(copy).hashCode(), copy.hashCode());
+	}
+
+	/**
+	 * Tests that the cached hash codes follow changes and the IF-MAP equality of edges.
+	 */
+	@Test
+	public void testCachedHashCodes() {
+		IfmapVertexImpl ip = new IfmapVertexImpl("ip-address");
+		ip.addProperty("/ip-address[@value]", "10.0.0.1");
+		IfmapVertexImpl mac = new IfmapVertexImpl("mac-address");
+		mac.addProperty("/mac-address[@value]", "aa:bb:cc:dd:ee:ff");
+		IfmapVertexImpl ipCopy = new IfmapVertexImpl(ip);
+		assertEquals(ip.hashCode(), ipCopy.hashCode());
+		ipCopy.addProperty("/ip-address[@type]", "IPv4");
+		assertFalse(ip.equals(ipCopy));
+		ip.addProperty("/ip-address[@type]", "IPv4");
+		assertEquals(ip, ipCopy);
+		assertEquals(ip.hashCode(), ipCopy.hashCode());
+
+		MetadataImpl single = new MetadataImpl("ip-mac");
+		single.addProperty("/meta:ip-mac[@ifmap-cardinality]", "singleValue");
+		MetadataImpl other = new MetadataImpl(single);
+		other.addProperty("/meta:ip-mac/dhcp-server", "dhcp1");
+		IfmapEdgeImpl edge = new IfmapEdgeImpl(ip, mac, single);
+		IfmapEdgeImpl reversed = new IfmapEdgeImpl(mac, ipCopy, other);
+		assertEquals(edge, reversed);
+		assertEquals(edge.hashCode(), reversed.hashCode());
+
+		single.addProperty("/meta:ip-mac[@ifmap-cardinality]", "multiValue");
+		other.addProperty("/meta:ip-mac[@ifmap-cardinality]", "multiValue");
+		edge.setMetadata(single);
+		reversed.setMetadata(other);
+		assertFalse(edge.equals(reversed));
+		reversed.setMetadata(new MetadataImpl(single));
+		assertEquals(edge, reversed);
+		assertEquals(edge.hashCode(), reversed.hashCode());
+	}
 }
@@ -40,10 +40,13 @@ package de.hshannover.f4.trust.irongpm;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Before;
@@ -53,7 +56,9 @@ import de.hshannover.f4.trust.irongpm.algorithm.BasicPatternEdge;
 import de.hshannover.f4.trust.irongpm.algorithm.BasicPatternMetadata;
 import de.hshannover.f4.trust.irongpm.algorithm.BasicPatternRule;
 import de.hshannover.f4.trust.irongpm.algorithm.BasicPatternVertex;
+import de.hshannover.f4.trust.irongpm.algorithm.MatchPlan;
 import de.hshannover.f4.trust.irongpm.algorithm.PatternGraphImpl;
+import de.hshannover.f4.trust.irongpm.algorithm.QueryPlanner;
 import de.hshannover.f4.trust.irongpm.algorithm.RuleComparison;
 import de.hshannover.f4.trust.irongpm.algorithm.RuleMatch;
 import de.hshannover.f4.trust.irongpm.algorithm.util.ComparatorUtil;
@@ -62,6 +67,7 @@ import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraph;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapGraphImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.IfmapVertexImpl;
 import de.hshannover.f4.trust.irongpm.ifmap.MetadataImpl;
+import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapEdge;
 import de.hshannover.f4.trust.irongpm.ifmap.interfaces.IfmapVertex;
 
 /**
@@ -484,6 +490,50 @@ public class PatternComparisonTest {
 		}
 	}
 
+	/**
+	 * Tests the incremental comparison anchored on a changed vertex or edge within its neighbourhood
+	 */
+	@Test
+	public void testAnchoredPattern() {
+		PatternGraphImpl pattern = new PatternGraphImpl();
+		BasicPatternVertex dev = new BasicPatternVertex("device");
+		BasicPatternVertex ip = new BasicPatternVertex("ip-address");
+		BasicPatternVertex mac = new BasicPatternVertex("mac-address");
+
+		BasicPatternEdge devIpEdge = new BasicPatternEdge(dev, ip, new BasicPatternMetadata("device-ip"));
+		BasicPatternEdge ipMacEdge = new BasicPatternEdge(ip, mac, new BasicPatternMetadata("ip-mac"));
+
+		pattern.addVertex(dev);
+		pattern.addVertex(ip);
+		pattern.addVertex(mac);
+
+		pattern.addEdgeSensitive(dev, ip, devIpEdge);
+		pattern.addEdgeSensitive(ip, mac, ipMacEdge);
+
+		BasicPatternRule rule = new BasicPatternRule(pattern);
+
+		Set<RuleMatch> resultSet = new RuleComparison(rule, realGraph, devIpEdge1).getResult();
+		assertEquals(2, resultSet.size());
+		for (RuleMatch res : resultSet) {
+			assertTrue(res.getResultGraph().containsEdge(devIpEdge1));
+		}
+
+		assertEquals(0, new RuleComparison(rule, realGraph, loopEdge1).getResult().size());
+		assertEquals(0, new RuleComparison(rule, realGraph, dev3).getResult().size());
+
+		IfmapGraphImpl neighbourhood = ((IfmapGraphImpl) realGraph).neighbourhood(Arrays.<IfmapVertex> asList(mac1), 2);
+		resultSet = new RuleComparison(rule, neighbourhood, mac1).getResult();
+		assertEquals(2, resultSet.size());
+		for (RuleMatch res : resultSet) {
+			assertTrue(res.getResultGraph().containsVertex(mac1));
+			assertTrue(res.getResultGraph().containsEdge(ipMacEdge1));
+		}
+
+		// dev1 and dev2 are two edges away from mac2
+		neighbourhood = ((IfmapGraphImpl) realGraph).neighbourhood(Arrays.<IfmapVertex> asList(mac2), 1);
+		assertEquals(0, new RuleComparison(rule, neighbourhood, mac2).getResult().size());
+	}
+
 	private IfmapVertex findVertexInGraph(IfmapGraph result, IfmapVertex vertex) {
 		for (IfmapVertex v : result.vertexSet()) {
 			if (vertex.equals(v)) {
@@ -493,4 +543,88 @@ public class PatternComparisonTest {
 		return null;
 	}
 
+	/**
+	 * Tests that the most selective pattern vertex is chosen as the starting point.
+	 */
+	@Test
+	public void testQueryPlanner() {
+		PatternGraphImpl pattern = new PatternGraphImpl();
+		BasicPatternVertex dev = new BasicPatternVertex("device");
+		BasicPatternVertex mac = new BasicPatternVertex("mac-address");
+		mac.addProperty("/mac-address[@value]", "aa:bb:cc:dd:ee:ff", false, false);
+		pattern.addVertex(dev);
+		pattern.addVertex(mac);
+		pattern.addEdgeSensitive(dev, mac, new BasicPatternEdge(dev, mac, new BasicPatternMetadata("loop")));
+
+		assertEquals(3.0, QueryPlanner.estimateCandidates(dev, realGraph.getStatistics()), 0.0);
+		assertEquals(1.0, QueryPlanner.estimateCandidates(mac, realGraph.getStatistics()), 0.0);
+		assertEquals(mac, QueryPlanner.chooseStart(pattern, realGraph.getStatistics()));
+		assertEquals(mac, QueryPlanner.orderBySelectivity(pattern, realGraph.getStatistics()).get(0));
+
+		BasicPatternVertex unknown = new BasicPatternVertex("device");
+		unknown.addProperty("/device/name", "device4", false, false);
+		assertEquals(0.0, QueryPlanner.estimateCandidates(unknown, realGraph.getStatistics()), 0.0);
+
+		Set<RuleMatch> resultSet = new RuleComparison(new BasicPatternRule(pattern), realGraph).getResult();
+		assertEquals(1, resultSet.size());
+		assertTrue(resultSet.iterator().next().getResultGraph().containsEdge(loopEdge1));
+	}
+
+	/**
+	 * Tests that a related property assigned in a failed branch of the matching does not affect the other branches.
+	 */
+	@Test
+	public void testRelatedPropertyBacktracking() {
+		PatternGraphImpl pattern = new PatternGraphImpl();
+		BasicPatternVertex ip = new BasicPatternVertex("ip-address");
+		ip.addProperty("/ip-address[@value]", "127.0.0.1", false, false);
+		BasicPatternVertex dev = new BasicPatternVertex("device");
+		BasicPatternMetadata event = new BasicPatternMetadata("event");
+		event.addProperty("related", "id", false, true);
+		dev.addMetadata(event);
+		pattern.addVertex(ip);
+		pattern.addVertex(dev);
+		pattern.addEdgeSensitive(dev, ip, new BasicPatternEdge(dev, ip, new BasicPatternMetadata("device-ip")));
+
+		Set<RuleMatch> resultSet = new RuleComparison(new BasicPatternRule(pattern), realGraph).getResult();
+		assertEquals(2, resultSet.size());
+		Set<String> ids = new HashSet<>();
+		for (RuleMatch res : resultSet) {
+			ids.add(res.getNamedProperties().get("id"));
+		}
+		assertEquals(new HashSet<>(Arrays.asList("12345", "67890")), ids);
+	}
+
+	/**
+	 * Tests the compilation of a pattern into a match plan.
+	 */
+	@Test
+	public void testMatchPlan() {
+		PatternGraphImpl pattern = new PatternGraphImpl();
+		BasicPatternVertex dev = new BasicPatternVertex("device");
+		BasicPatternVertex ip = new BasicPatternVertex("ip-address");
+		BasicPatternVertex mac = new BasicPatternVertex("mac-address");
+		pattern.addVertex(dev);
+		pattern.addVertex(ip);
+		pattern.addVertex(mac);
+		pattern.addEdgeSensitive(dev, ip, new BasicPatternEdge(dev, ip, new BasicPatternMetadata("device-ip")));
+
+		MatchPlan plan = new MatchPlan(pattern);
+		assertEquals(3, plan.getVertexCount());
+		assertEquals(1, plan.getEdgeCount());
+		assertSame(mac, plan.getVertex(plan.getOrdinal(mac)));
+		assertTrue(plan.mayContain(devIpEdge1));
+		assertFalse(plan.mayContain(loopEdge1));
+		assertTrue(plan.mayContain(mac1));
+
+		// the mac address is not connected, so the pattern can never be matched
+		BasicPatternRule rule = new BasicPatternRule(pattern);
+		assertEquals(0, new RuleComparison(rule, plan, realGraph).getResult().size());
+
+		pattern.addEdgeSensitive(ip, mac, new BasicPatternEdge(ip, mac, new BasicPatternMetadata("ip-mac")));
+		plan = new MatchPlan(pattern);
+		assertEquals(4, new RuleComparison(rule, plan, realGraph).getResult().size());
+		assertEquals(2, new RuleComparison(rule, plan, realGraph, Arrays.<IfmapEdge> asList(devIpEdge1),
+				Arrays.<IfmapVertex> asList()).getResult().size());
+	}
 }